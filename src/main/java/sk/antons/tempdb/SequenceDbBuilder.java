@@ -16,10 +16,29 @@
 package sk.antons.tempdb;
 
 import java.io.File;
+import java.util.Comparator;
 import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.DbStorage;
+import sk.antons.tempdb.compression.BlockCodec;
+import sk.antons.tempdb.compression.DeflateCodec;
+import sk.antons.tempdb.sequence.AsyncSequenceDbWriter;
+import sk.antons.tempdb.sequence.BlockSequenceDbReader;
+import sk.antons.tempdb.sequence.BlockSequenceDbWriter;
+import sk.antons.tempdb.sequence.FramedSequenceDbIndex;
+import sk.antons.tempdb.sequence.FramedSequenceDbReader;
+import sk.antons.tempdb.sequence.FramedSequenceDbWriter;
+import sk.antons.tempdb.sequence.KeyExtractor;
+import sk.antons.tempdb.sequence.PartitionedSequenceDbReader;
+import sk.antons.tempdb.sequence.PartitionedSequenceDbWriter;
+import sk.antons.tempdb.sequence.PriorityDb;
 import sk.antons.tempdb.sequence.SequenceDb;
+import sk.antons.tempdb.sequence.SequenceDbDistinct;
 import sk.antons.tempdb.sequence.SequenceDbReader;
+import sk.antons.tempdb.sequence.SequenceDbSorter;
 import sk.antons.tempdb.sequence.SequenceDbWriter;
+import sk.antons.tempdb.serialization.BufferDeserializer;
+import sk.antons.tempdb.serialization.BufferSerialization;
+import sk.antons.tempdb.serialization.BufferSerializer;
 import sk.antons.tempdb.serialization.BytesDeserializer;
 import sk.antons.tempdb.serialization.BytesSerializer;
 
@@ -32,6 +51,15 @@ public class SequenceDbBuilder<V> {
     private DbFile dbfile;
     private BytesDeserializer<V> deserializer;
     private BytesSerializer<V> serializer;
+    private BufferDeserializer<V> bufferdeserializer;
+    private BufferSerializer<V> bufferserializer;
+    private int indexStep = FramedSequenceDbWriter.DEFAULT_INDEX_STEP;
+    private BlockCodec codec = DeflateCodec.instance();
+    private int blockSize = BlockSequenceDbWriter.DEFAULT_BLOCK_SIZE;
+    private int asyncBufferSize = 0;
+    private int asyncBuffers = 0;
+    private int partitions = 16;
+    private int memorySize = PriorityDb.DEFAULT_MEMORY_SIZE;
 
     private SequenceDbBuilder(Class<V> clazz) {}
 
@@ -84,6 +112,39 @@ public class SequenceDbBuilder<V> {
         return this;
     }
     
+    /**
+     * Sets db file living in memory only
+     * @param direct true for off heap memory
+     * @return this
+     */
+    public SequenceDbBuilder<V> memory(boolean direct) {
+        this.dbfile = DbFile.memory(direct);
+        return this;
+    }
+    
+    /**
+     * Sets storage type of db file defined so far
+     * @param storage storage type
+     * @return this
+     */
+    public SequenceDbBuilder<V> storage(DbStorage.Type storage) {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo storage");
+        dbfile.storage(storage);
+        return this;
+    }
+    
+    /**
+     * Sets hybrid storage of db file defined so far. Data are kept in 
+     * memory until they exceed budget and then they are moved to db file.
+     * @param budget max number of bytes kept in memory
+     * @return this
+     */
+    public SequenceDbBuilder<V> hybrid(long budget) {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo storage");
+        dbfile.hybrid(budget);
+        return this;
+    }
+    
     /**
      * Sets serializer for valius
      * @param serializer
@@ -104,6 +165,94 @@ public class SequenceDbBuilder<V> {
         return this;
     }
 
+    /**
+     * Sets buffer serializer for values. It is used instead of serializer 
+     * by databases supporting buffer serialization (SequenceDb).
+     * @param bufferserializer
+     * @return this
+     */
+    public SequenceDbBuilder<V> bufferserializer(BufferSerializer<V> bufferserializer) {
+        this.bufferserializer = bufferserializer;
+        return this;
+    }
+    
+    /**
+     * Sets buffer deserializer for values. It is used instead of deserializer 
+     * by databases supporting buffer serialization (SequenceDb).
+     * @param bufferdeserializer
+     * @return this
+     */
+    public SequenceDbBuilder<V> bufferdeserializer(BufferDeserializer<V> bufferdeserializer) {
+        this.bufferdeserializer = bufferdeserializer;
+        return this;
+    }
+
+    /**
+     * Sets number of values between two sparse index entries of framed 
+     * db file. (default 1000)
+     * @param indexStep
+     * @return this
+     */
+    public SequenceDbBuilder<V> indexStep(int indexStep) {
+        this.indexStep = indexStep;
+        return this;
+    }
+
+    /**
+     * Sets codec for compressed (block) db file. (default DeflateCodec)
+     * @param codec
+     * @return this
+     */
+    public SequenceDbBuilder<V> codec(BlockCodec codec) {
+        this.codec = codec;
+        return this;
+    }
+
+    /**
+     * Sets size of uncompressed block of compressed (block) db file. 
+     * (default 64kB)
+     * @param blockSize
+     * @return this
+     */
+    public SequenceDbBuilder<V> blockSize(int blockSize) {
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    /**
+     * Sequence db writer will write data to file in background thread. 
+     * Values are collected in memory buffers and full buffers are written 
+     * by background thread.
+     * @param bufferSize size of one buffer
+     * @param buffers number of buffers (at least 2)
+     * @return this
+     */
+    public SequenceDbBuilder<V> async(int bufferSize, int buffers) {
+        this.asyncBufferSize = bufferSize;
+        this.asyncBuffers = buffers;
+        return this;
+    }
+
+    /**
+     * Sets number of partitions of partitioned db. (default 16)
+     * @param partitions
+     * @return this
+     */
+    public SequenceDbBuilder<V> partitions(int partitions) {
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * Sets number of values held in memory by priority db and distinct. (default 100000)
+     * @param memorySize
+     * @return this
+     */
+    public SequenceDbBuilder<V> memorySize(int memorySize) {
+        this.memorySize = memorySize;
+        return this;
+    }
+
     /**
      * Create sequence db reader using dbfile and deserializer.
      * @return this
@@ -115,23 +264,154 @@ public class SequenceDbBuilder<V> {
     }
     
     /**
-     * Create sequence db writer using dbfile and serializer.
+     * Create sequence db writer using dbfile and serializer. (Writer is 
+     * asynchronous if async() was called.)
      * @return database
      */
     public SequenceDbWriter<V> sequenceDbWriter() {
         if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
         if(serializer == null) throw new TempDbException("No serializer defined fo new database");
+        if(asyncBufferSize > 0) return new AsyncSequenceDbWriter(dbfile, serializer, asyncBufferSize, asyncBuffers);
         return new SequenceDbWriter(dbfile, serializer);
     }
     
     /**
      * Create sequence db using dbfile, serializer and deserializer.
+     * (Buffer serializer and deserializer are used if defined.)
      * @return databese
      */
     public SequenceDb<V> sequenceDb() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        BufferSerializer<V> ser = bufferserializer != null ? bufferserializer : BufferSerialization.serializer(serializer);
+        BufferDeserializer<V> deser = bufferdeserializer != null ? bufferdeserializer : BufferSerialization.deserializer(deserializer);
+        if(ser == null) throw new TempDbException("No serializer defined fo new database");
+        if(deser == null) throw new TempDbException("No deserializer defined fo new database");
+        return new SequenceDb(dbfile, ser, deser);
+    }
+    
+    /**
+     * Create framed sequence db writer using dbfile, serializer and index step.
+     * @return database
+     */
+    public FramedSequenceDbWriter<V> framedSequenceDbWriter() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        if(serializer == null) throw new TempDbException("No serializer defined fo new database");
+        return new FramedSequenceDbWriter(dbfile, serializer, indexStep);
+    }
+    
+    /**
+     * Create framed sequence db reader using dbfile and deserializer.
+     * @return database
+     */
+    public FramedSequenceDbReader<V> framedSequenceDbReader() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        if(deserializer == null) throw new TempDbException("No deserializer defined fo new database");
+        return new FramedSequenceDbReader(dbfile, deserializer);
+    }
+    
+    /**
+     * Create compressed sequence db writer using dbfile, serializer, codec 
+     * and block size.
+     * @return database
+     */
+    public BlockSequenceDbWriter<V> blockSequenceDbWriter() {
         if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
         if(serializer == null) throw new TempDbException("No serializer defined fo new database");
+        if(codec == null) throw new TempDbException("No codec defined fo new database");
+        return new BlockSequenceDbWriter(dbfile, serializer, codec, blockSize);
+    }
+    
+    /**
+     * Create compressed sequence db reader using dbfile, deserializer and codec.
+     * @return database
+     */
+    public BlockSequenceDbReader<V> blockSequenceDbReader() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
         if(deserializer == null) throw new TempDbException("No deserializer defined fo new database");
-        return new SequenceDb(dbfile, serializer, deserializer);
+        if(codec == null) throw new TempDbException("No codec defined fo new database");
+        return new BlockSequenceDbReader(dbfile, deserializer, codec);
+    }
+    
+    /**
+     * Create external sorter of values using serializer and deserializer 
+     * (for temporary files) and given comparator.
+     * @param comparator comparator of values
+     * @return sorter
+     */
+    public SequenceDbSorter<V> sequenceDbSorter(Comparator<V> comparator) {
+        if(serializer == null) throw new TempDbException("No serializer defined fo new sorter");
+        if(deserializer == null) throw new TempDbException("No deserializer defined fo new sorter");
+        if(comparator == null) throw new TempDbException("No comparator defined fo new sorter");
+        return new SequenceDbSorter(serializer, deserializer, comparator);
+    }
+    
+    /**
+     * Create partitioned sequence db writer using dbfile, serializer and 
+     * number of partitions. 
+     * @param extractor extractor of key used for partitioning
+     * @return database
+     */
+    public PartitionedSequenceDbWriter<V> partitionedSequenceDbWriter(KeyExtractor<V, ?> extractor) {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        if(serializer == null) throw new TempDbException("No serializer defined fo new database");
+        if(extractor == null) throw new TempDbException("No key extractor defined fo new database");
+        return new PartitionedSequenceDbWriter(dbfile, serializer, extractor, partitions);
+    }
+    
+    /**
+     * Create partitioned sequence db reader using dbfile and deserializer.
+     * @return database
+     */
+    public PartitionedSequenceDbReader<V> partitionedSequenceDbReader() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        if(deserializer == null) throw new TempDbException("No deserializer defined fo new database");
+        return new PartitionedSequenceDbReader(dbfile, deserializer);
+    }
+    
+    /**
+     * Create secondary index over framed sequence db file using dbfile 
+     * and deserializer. Index is stored in sibling file with suffix '.idx'.
+     * @param extractor extractor of index key
+     * @param keyserializer serializer of index keys
+     * @param keydeserializer deserializer of index keys
+     * @param keycomparator comparator of index keys (natural order is used if null)
+     * @return index
+     */
+    public <K> FramedSequenceDbIndex<V, K> framedSequenceDbIndex(KeyExtractor<V, K> extractor
+            , BytesSerializer<K> keyserializer, BytesDeserializer<K> keydeserializer
+            , Comparator<K> keycomparator
+            ) {
+        if(extractor == null) throw new TempDbException("No key extractor defined fo new index");
+        if(keyserializer == null) throw new TempDbException("No key serializer defined fo new index");
+        if(keydeserializer == null) throw new TempDbException("No key deserializer defined fo new index");
+        FramedSequenceDbReader<V> reader = framedSequenceDbReader();
+        return new FramedSequenceDbIndex<V, K>(reader, extractor, dbfile.sibling(".idx"), keyserializer, keydeserializer, keycomparator);
+    }
+    
+    /**
+     * Create priority db using dbfile, serializer, deserializer and memory size. 
+     * Values are read in order given by comparator.
+     * @param comparator comparator of values
+     * @return database
+     */
+    public PriorityDb<V> priorityDb(Comparator<V> comparator) {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        if(serializer == null) throw new TempDbException("No serializer defined fo new database");
+        if(deserializer == null) throw new TempDbException("No deserializer defined fo new database");
+        if(comparator == null) throw new TempDbException("No comparator defined fo new database");
+        return new PriorityDb(dbfile, serializer, deserializer, comparator, memorySize);
+    }
+    
+    /**
+     * Create distinct operation using serializer and deserializer (for 
+     * temporary files), number of partitions and memory size.
+     * @param extractor extractor of key 
+     * @return distinct operation
+     */
+    public <K> SequenceDbDistinct<V, K> sequenceDbDistinct(KeyExtractor<V, K> extractor) {
+        if(serializer == null) throw new TempDbException("No serializer defined fo new distinct");
+        if(deserializer == null) throw new TempDbException("No deserializer defined fo new distinct");
+        if(extractor == null) throw new TempDbException("No key extractor defined fo new distinct");
+        return new SequenceDbDistinct<V, K>(serializer, deserializer, extractor).partitions(partitions).memorySize(memorySize);
     }
 }
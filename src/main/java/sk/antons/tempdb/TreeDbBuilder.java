@@ -16,11 +16,24 @@
 package sk.antons.tempdb;
 
 import java.io.File;
+import java.util.Comparator;
 import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.DbStorage;
+import sk.antons.tempdb.compression.BlockCodec;
+import sk.antons.tempdb.compression.DeflateCodec;
+import sk.antons.tempdb.serialization.BufferDeserializer;
+import sk.antons.tempdb.serialization.BufferSerialization;
+import sk.antons.tempdb.serialization.BufferSerializer;
 import sk.antons.tempdb.serialization.BytesDeserializer;
 import sk.antons.tempdb.serialization.BytesSerializer;
 import sk.antons.tempdb.tree.AvlTreeDb;
+import sk.antons.tempdb.tree.ConstantHashDb;
+import sk.antons.tempdb.tree.ConstantHashDbWriter;
+import sk.antons.tempdb.tree.ImmutableSortedDb;
+import sk.antons.tempdb.tree.ImmutableSortedDbWriter;
+import sk.antons.tempdb.tree.LongKeyTreeDb;
 import sk.antons.tempdb.tree.MapTreeDb;
+import sk.antons.tempdb.tree.ValueCompression;
 
 /**
  * Map like database builder
@@ -32,6 +45,16 @@ public class TreeDbBuilder<K, V> {
     private BytesSerializer<K> keyserializer;
     private BytesDeserializer<V> deserializer;
     private BytesSerializer<V> serializer;
+    private BufferDeserializer<K> bufferkeydeserializer;
+    private BufferSerializer<K> bufferkeyserializer;
+    private BufferDeserializer<V> bufferdeserializer;
+    private BufferSerializer<V> bufferserializer;
+    private Comparator<K> keycomparator;
+    private int blockSize = ImmutableSortedDbWriter.DEFAULT_BLOCK_SIZE;
+    private boolean memoryMapped = false;
+    private int dictionarySamples = 0;
+    private int compressionThreshold = -1;
+    private BlockCodec codec = DeflateCodec.instance();
 
     private TreeDbBuilder(Class<K> clazz, Class<V> clazz2) {}
 
@@ -85,6 +108,39 @@ public class TreeDbBuilder<K, V> {
         return this;
     }
     
+    /**
+     * Sets db file living in memory only
+     * @param direct true for off heap memory
+     * @return this
+     */
+    public TreeDbBuilder<K, V> memory(boolean direct) {
+        this.dbfile = DbFile.memory(direct);
+        return this;
+    }
+    
+    /**
+     * Sets storage type of db file defined so far
+     * @param storage storage type
+     * @return this
+     */
+    public TreeDbBuilder<K, V> storage(DbStorage.Type storage) {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo storage");
+        dbfile.storage(storage);
+        return this;
+    }
+    
+    /**
+     * Sets hybrid storage of db file defined so far. Data are kept in 
+     * memory until they exceed budget and then they are moved to db file.
+     * @param budget max number of bytes kept in memory
+     * @return this
+     */
+    public TreeDbBuilder<K, V> hybrid(long budget) {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo storage");
+        dbfile.hybrid(budget);
+        return this;
+    }
+    
     /**
      * Sets ket serializer
      * @param keyserializer
@@ -125,27 +181,214 @@ public class TreeDbBuilder<K, V> {
         return this;
     }
 
+    /**
+     * Sets buffer key serializer. It is used instead of key serializer 
+     * by databases supporting buffer serialization (AvlTreeDb).
+     * @param bufferkeyserializer
+     * @return this
+     */
+    public TreeDbBuilder<K, V> bufferkeyserializer(BufferSerializer<K> bufferkeyserializer) {
+        this.bufferkeyserializer = bufferkeyserializer;
+        return this;
+    }
+
+    /**
+     * Sets buffer key deserializer. It is used instead of key deserializer 
+     * by databases supporting buffer serialization (AvlTreeDb).
+     * @param bufferkeydeserializer
+     * @return this
+     */
+    public TreeDbBuilder<K, V> bufferkeydeserializer(BufferDeserializer<K> bufferkeydeserializer) {
+        this.bufferkeydeserializer = bufferkeydeserializer;
+        return this;
+    }
+    
+    /**
+     * Sets buffer value serializer. It is used instead of value serializer 
+     * by databases supporting buffer serialization (AvlTreeDb, MapTreeDb).
+     * @param bufferserializer
+     * @return this
+     */
+    public TreeDbBuilder<K, V> bufferserializer(BufferSerializer<V> bufferserializer) {
+        this.bufferserializer = bufferserializer;
+        return this;
+    }
+
+    /**
+     * Sets buffer value deserializer. It is used instead of value deserializer 
+     * by databases supporting buffer serialization (AvlTreeDb, MapTreeDb).
+     * @param bufferdeserializer
+     * @return this
+     */
+    public TreeDbBuilder<K, V> bufferdeserializer(BufferDeserializer<V> bufferdeserializer) {
+        this.bufferdeserializer = bufferdeserializer;
+        return this;
+    }
+
+    /**
+     * Sets key comparator for sorted databases. (natural order is used if not set)
+     * @param keycomparator
+     * @return this
+     */
+    public TreeDbBuilder<K, V> keycomparator(Comparator<K> keycomparator) {
+        this.keycomparator = keycomparator;
+        return this;
+    }
+
+    /**
+     * Sets minimal size of block of immutable sorted database. (default 4kB)
+     * @param blockSize
+     * @return this
+     */
+    public TreeDbBuilder<K, V> blockSize(int blockSize) {
+        this.blockSize = blockSize;
+        return this;
+    }
+
+    /**
+     * Read only databases will be memory mapped. (default false)
+     * @param memoryMapped
+     * @return this
+     */
+    public TreeDbBuilder<K, V> memoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        return this;
+    }
+
+    /**
+     * Values of avl and map tree databases will be compressed individually 
+     * using deflate dictionary trained from given number of first values. 
+     * Dictionary is stored in db file header. (default 0 - no compression)
+     * @param dictionarySamples number of values used for training
+     * @return this
+     */
+    public TreeDbBuilder<K, V> dictionarySamples(int dictionarySamples) {
+        this.dictionarySamples = dictionarySamples;
+        return this;
+    }
+    
+    /**
+     * Values of avl and map tree databases with serialized size at least 
+     * given threshold will be compressed by codec. Values are flagged per 
+     * record and decompressed transparently. With dictionary compression 
+     * threshold limits dictionary compressed values. (default -1 - no 
+     * compression)
+     * @param compressionThreshold min size of compressed value
+     * @return this
+     */
+    public TreeDbBuilder<K, V> compressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    /**
+     * Sets codec for compression of values above threshold. 
+     * (default DeflateCodec)
+     * @param codec
+     * @return this
+     */
+    public TreeDbBuilder<K, V> codec(BlockCodec codec) {
+        this.codec = codec;
+        return this;
+    }
+    
+    private ValueCompression compression() {
+        if(dictionarySamples > 0) return ValueCompression.dictionary(dictionarySamples, Math.max(compressionThreshold, 0));
+        if(compressionThreshold >= 0) return ValueCompression.codec(codec, compressionThreshold);
+        return null;
+    }
+
     /**
      * Creates avl database using dbfile, key and value serializer and deserializer.
+     * (Buffer serializers and deserializers are used if defined.)
      * @return database
      */
     public AvlTreeDb<K,V> avlTreeDb() {
         if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
-        if(serializer == null) throw new TempDbException("No serializer defined fo new database");
-        if(deserializer == null) throw new TempDbException("No deserializer defined fo new database");
-        if(keyserializer == null) throw new TempDbException("No keyserializer defined fo new database");
-        if(keydeserializer == null) throw new TempDbException("No keydeserializer defined fo new database");
-        return new AvlTreeDb(dbfile, keyserializer, keydeserializer, serializer, deserializer);
+        BufferSerializer<V> ser = bufferserializer != null ? bufferserializer : BufferSerialization.serializer(serializer);
+        BufferDeserializer<V> deser = bufferdeserializer != null ? bufferdeserializer : BufferSerialization.deserializer(deserializer);
+        BufferSerializer<K> keyser = bufferkeyserializer != null ? bufferkeyserializer : BufferSerialization.serializer(keyserializer);
+        BufferDeserializer<K> keydeser = bufferkeydeserializer != null ? bufferkeydeserializer : BufferSerialization.deserializer(keydeserializer);
+        if(ser == null) throw new TempDbException("No serializer defined fo new database");
+        if(deser == null) throw new TempDbException("No deserializer defined fo new database");
+        if(keyser == null) throw new TempDbException("No keyserializer defined fo new database");
+        if(keydeser == null) throw new TempDbException("No keydeserializer defined fo new database");
+        return new AvlTreeDb(dbfile, keyser, keydeser, ser, deser, compression());
     }
     
     /**
      * Creates avl database using dbfile, value serializer and deserializer.
+     * (Buffer serializer and deserializer are used if defined.)
      * @return 
      */
     public MapTreeDb<K,V> mapTreeDb() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        BufferSerializer<V> ser = bufferserializer != null ? bufferserializer : BufferSerialization.serializer(serializer);
+        BufferDeserializer<V> deser = bufferdeserializer != null ? bufferdeserializer : BufferSerialization.deserializer(deserializer);
+        if(ser == null) throw new TempDbException("No serializer defined fo new database");
+        if(deser == null) throw new TempDbException("No deserializer defined fo new database");
+        return new MapTreeDb(dbfile, ser, deser, compression());
+    }
+    
+    /**
+     * Creates avl database with primitive long keys using dbfile, value 
+     * serializer and deserializer. (Key serializers are not used.)
+     * @return database
+     */
+    public LongKeyTreeDb<V> longKeyTreeDb() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        BufferSerializer<V> ser = bufferserializer != null ? bufferserializer : BufferSerialization.serializer(serializer);
+        BufferDeserializer<V> deser = bufferdeserializer != null ? bufferdeserializer : BufferSerialization.deserializer(deserializer);
+        if(ser == null) throw new TempDbException("No serializer defined fo new database");
+        if(deser == null) throw new TempDbException("No deserializer defined fo new database");
+        return new LongKeyTreeDb(dbfile, ser, deser);
+    }
+    
+    /**
+     * Creates writer of immutable sorted database using dbfile, key and value 
+     * serializer, key comparator and block size.
+     * @return database writer
+     */
+    public ImmutableSortedDbWriter<K,V> immutableSortedDbWriter() {
         if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
         if(serializer == null) throw new TempDbException("No serializer defined fo new database");
+        if(keyserializer == null) throw new TempDbException("No keyserializer defined fo new database");
+        return new ImmutableSortedDbWriter(dbfile, keyserializer, serializer, keycomparator, blockSize);
+    }
+    
+    /**
+     * Creates immutable sorted database using dbfile, key and value 
+     * deserializer and key comparator.
+     * @return database
+     */
+    public ImmutableSortedDb<K,V> immutableSortedDb() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
         if(deserializer == null) throw new TempDbException("No deserializer defined fo new database");
-        return new MapTreeDb(dbfile, serializer, deserializer);
+        if(keydeserializer == null) throw new TempDbException("No keydeserializer defined fo new database");
+        return new ImmutableSortedDb(dbfile, keydeserializer, deserializer, keycomparator);
+    }
+    
+    /**
+     * Creates writer of constant hash database using dbfile, key and value 
+     * serializer.
+     * @return database writer
+     */
+    public ConstantHashDbWriter<K,V> constantHashDbWriter() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        if(serializer == null) throw new TempDbException("No serializer defined fo new database");
+        if(keyserializer == null) throw new TempDbException("No keyserializer defined fo new database");
+        return new ConstantHashDbWriter(dbfile, keyserializer, serializer);
+    }
+    
+    /**
+     * Creates constant hash database using dbfile, key serializer, value 
+     * deserializer and memory mapping flag.
+     * @return database
+     */
+    public ConstantHashDb<K,V> constantHashDb() {
+        if(dbfile == null) throw new TempDbException("No dbfile defined fo new database");
+        if(deserializer == null) throw new TempDbException("No deserializer defined fo new database");
+        if(keyserializer == null) throw new TempDbException("No keyserializer defined fo new database");
+        return new ConstantHashDb(dbfile, keyserializer, deserializer, memoryMapped);
     }
 }
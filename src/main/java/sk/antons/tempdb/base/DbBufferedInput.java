@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Helper class. Buffered reading of random access file from any position.
+ * @author antons
+ */
+public class DbBufferedInput {
+    private DbRandomAccess raf;
+    private byte[] buffer;
+    private long bufferStart = 0;
+    private int bufferCount = 0;
+    private long position = 0;
+
+    public DbBufferedInput(DbRandomAccess raf, int buffersize) {
+        this.raf = raf;
+        this.buffer = new byte[buffersize];
+    }
+
+    /**
+     * Current reading position
+     * @return position
+     */
+    public long position() { return position; }
+    
+    /**
+     * Sets reading position. Buffered data are reused if position is inside buffer.
+     * @param position new position
+     */
+    public void seek(long position) { this.position = position; }
+
+    /**
+     * Moves reading position forward
+     * @param n number of bytes to skip
+     */
+    public void skip(long n) { this.position = position + n; }
+
+    /**
+     * Reads int from current position
+     * @return value
+     * @throws IOException
+     */
+    public int readInt() throws IOException {
+        ensure(4);
+        int i = (int)(position - bufferStart);
+        position = position + 4;
+        return ((buffer[i] & 0xff) << 24) | ((buffer[i+1] & 0xff) << 16) 
+            | ((buffer[i+2] & 0xff) << 8) | (buffer[i+3] & 0xff);
+    }
+    
+    /**
+     * Reads long from current position
+     * @return value
+     * @throws IOException
+     */
+    public long readLong() throws IOException {
+        long high = readInt() & 0xffffffffL;
+        long low = readInt() & 0xffffffffL;
+        return (high << 32) | low;
+    }
+
+    /**
+     * Reads length bytes from current position to buff 
+     * @param buff destination
+     * @param offset destination offset
+     * @param length number of bytes
+     * @throws IOException
+     */
+    public void readFully(byte[] buff, int offset, int length) throws IOException {
+        if(length > buffer.length) {
+            raf.seek(position);
+            raf.readFully(buff, offset, length);
+            position = position + length;
+            return;
+        }
+        ensure(length);
+        System.arraycopy(buffer, (int)(position - bufferStart), buff, offset, length);
+        position = position + length;
+    }
+
+    private void ensure(int length) throws IOException {
+        if((position >= bufferStart) && (position + length <= bufferStart + bufferCount)) return;
+        raf.seek(position);
+        int n = 0;
+        while(n < buffer.length) {
+            int r = raf.read(buffer, n, buffer.length - n);
+            if(r < 0) break;
+            n = n + r;
+        }
+        bufferStart = position;
+        bufferCount = n;
+        if(n < length) throw new EOFException("Unable to read " + length + " bytes from position " + position);
+    }
+}
@@ -18,7 +18,7 @@ package sk.antons.tempdb.base;
 import java.io.ByteArrayInputStream;
 
 /**
- * Helper class
+ * Helper class. Reads are not synchronized.
  * @author antons
  */
 public class DbByteArrayInputStream extends ByteArrayInputStream {
@@ -27,6 +27,22 @@ public class DbByteArrayInputStream extends ByteArrayInputStream {
         super(bytes);
     }
     
+    @Override
+    public int read() {
+        return (pos < count) ? (buf[pos++] & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if(pos >= count) return -1;
+        int avail = count - pos;
+        if(len > avail) len = avail;
+        if(len <= 0) return 0;
+        System.arraycopy(buf, pos, b, off, len);
+        pos += len;
+        return len;
+    }
+    
     public int count() { return count; }
     public byte[] buff() { return buf; }
 
@@ -39,4 +55,6 @@ public class DbByteArrayInputStream extends ByteArrayInputStream {
     }
     
     public void count(int value) { count = value; }
+    public int pos() { return pos; }
+    public void pos(int value) { pos = value; }
 }
@@ -16,12 +16,48 @@
 package sk.antons.tempdb.base;
 
 import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 
 /**
- * Helper class
+ * Helper class. Writes are not synchronized.
  * @author antons
  */
 public class DbByteArrayOutputStream extends ByteArrayOutputStream {
+
+    public DbByteArrayOutputStream() {
+    }
+
+    public DbByteArrayOutputStream(int size) {
+        super(size);
+    }
+    
+    private void ensure(int size) {
+        if(size - buf.length > 0) {
+            int newsize = buf.length << 1;
+            if(newsize - size < 0) newsize = size;
+            buf = Arrays.copyOf(buf, newsize);
+        }
+    }
+    
+    @Override
+    public void write(int b) {
+        ensure(count + 1);
+        buf[count] = (byte)b;
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensure(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+    }
+    
     public int count() { return count; }
     public byte[] buff() { return buf; }
 }
@@ -20,9 +20,15 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import sk.antons.tempdb.TempDbException;
 
 /**
@@ -31,7 +37,19 @@ import sk.antons.tempdb.TempDbException;
  */
 public class DbFile {
     
+    private static final Random random = new SecureRandom();
+    
     private File file;
+    private boolean deleteOnExit = false;
+    private boolean created = true;
+    private DbStorage.Type storage = DbStorage.Type.CHANNEL;
+    private AtomicLong budget;
+    private DbStorage shared;
+    private Map<String, DbFile> siblings;
+    
+    private DbFile(DbStorage.Type storage) {
+        this.storage = storage;
+    }
     
     /**
      * Constructs db file using specified filesystem file.
@@ -59,21 +77,152 @@ public class DbFile {
     }
     
     /**
-     * Constructs db file using new temporary file.
+     * Constructs db file living in heap memory only. Data are lost when 
+     * db file is deleted or application ends.
+     */
+    public static DbFile memory() {
+        return new DbFile(DbStorage.Type.HEAP);
+    }
+    
+    /**
+     * Constructs db file living in memory only. Data are lost when 
+     * db file is deleted or application ends.
+     * @param direct true for off heap memory
+     */
+    public static DbFile memory(boolean direct) {
+        return new DbFile(direct ? DbStorage.Type.DIRECT : DbStorage.Type.HEAP);
+    }
+    
+    /**
+     * Sets storage type used for random access to this file. Memory 
+     * storage types makes this file memory only.
+     * @param storage storage type
+     * @return this
+     */
+    public DbFile storage(DbStorage.Type storage) {
+        if(storage == null) throw new TempDbException("Null storage type");
+        if((file == null) && !storage.isMemory()) throw new TempDbException("Memory db file can't use file storage " + storage);
+        this.storage = storage;
+        return this;
+    }
+    
+    /**
+     * Sets hybrid storage for random access to this file. Data are kept in 
+     * memory until they exceed budget. Then they are moved to this file. 
+     * Budget is shared by this file and all its parts and siblings.
+     * @param budget max number of bytes kept in memory
+     * @return this
+     */
+    public DbFile hybrid(long budget) {
+        if(file == null) throw new TempDbException("Memory db file can't use hybrid storage");
+        this.storage = DbStorage.Type.HYBRID;
+        this.budget = new AtomicLong(budget);
+        return this;
+    }
+    
+    /**
+     * Check if storage instance is shared by all users of this file. 
+     * (Such file has data in memory or mapped and can't be used by file 
+     * streams.)
+     * @return true for memory, hybrid and mapped storage
+     */
+    public boolean isShared() { return storage.isShared(); }
+    
+    /**
+     * Filesystem file of this db file.
+     * @return file or null for memory db file
+     */
+    public File file() { return file; }
+    
+    /**
+     * Storage type used by this file.
+     * @return storage type
+     */
+    public DbStorage.Type storage() { return storage; }
+    
+    /**
+     * Check if file lives in memory only
+     * @return true for memory storage
+     */
+    public boolean isMemory() { return storage.isMemory(); }
+    
+    /**
+     * Constructs db file using new temporary file. File is created on 
+     * first use (hybrid storage creates it when data are moved to file).
      * @param prefix 
      * @param postfix 
      * @param deleteOnExit 
      */
     public static DbFile temporary(String prefix, String postfix, boolean deleteOnExit) {
         try {
-            File f = File.createTempFile(prefix, prefix);
+            File dir = new File(System.getProperty("java.io.tmpdir"));
+            File f;
+            do {
+                f = new File(dir, prefix + (random.nextLong() & Long.MAX_VALUE) + postfix);
+            } while(f.exists());
             if(deleteOnExit) f.deleteOnExit();
-            return new DbFile(f);
+            DbFile dbfile = new DbFile(f);
+            dbfile.deleteOnExit = deleteOnExit;
+            dbfile.created = false;
+            return dbfile;
         } catch(Exception e) {
             throw new TempDbException("Unable to create temp database file", e);
         }
     }
     
+    private synchronized File create() throws IOException {
+        if(!created) {
+            file.createNewFile();
+            created = true;
+        }
+        return file;
+    }
+    
+    /**
+     * Constructs db file for i-th part of this db file. Name of file is 
+     * name of this file with suffix '.i'. Part of temporary file is deleted 
+     * on exit if this file is deleted on exit.
+     * @param i number of part
+     * @return db file
+     */
+    public DbFile part(int i) {
+        return sibling("." + i);
+    }
+    
+    /**
+     * Constructs db file for side data of this db file (like index). Name 
+     * of file is name of this file with given suffix. It uses same storage 
+     * type and it is deleted on exit if this file is deleted on exit.
+     * @param suffix suffix of file name
+     * @return db file
+     */
+    public DbFile sibling(String suffix) {
+        if(isShared()) {
+            if(siblings == null) siblings = new HashMap<String, DbFile>();
+            DbFile dbfile = siblings.get(suffix);
+            if(dbfile == null) {
+                if(isMemory()) {
+                    dbfile = new DbFile(storage);
+                } else {
+                    File f = new File(file.getPath() + suffix);
+                    if(deleteOnExit) f.deleteOnExit();
+                    dbfile = new DbFile(f);
+                    dbfile.deleteOnExit = deleteOnExit;
+                    dbfile.storage = storage;
+                    dbfile.budget = budget;
+                }
+                siblings.put(suffix, dbfile);
+            }
+            return dbfile;
+        }
+        File f = new File(file.getPath() + suffix);
+        if(deleteOnExit) f.deleteOnExit();
+        DbFile dbfile = new DbFile(f);
+        dbfile.deleteOnExit = deleteOnExit;
+        dbfile.storage = storage;
+        return dbfile;
+    }
+    
     private void check() {
         if(file == null) throw new TempDbException("Null db file");
         if(file.exists()) return;
@@ -90,7 +239,9 @@ public class DbFile {
      * @return 
      */
     public boolean exists() {
-        return file.exists();
+        if(isMemory()) return shared != null;
+        if(shared != null) return true;
+        return !created || file.exists();
     }
 
     /**
@@ -98,15 +249,37 @@ public class DbFile {
      * Throws exception if file not exists 
      */
     public void checkExistence() {
-        if(file.exists()) return;
-        throw new TempDbException("Database file not exists '" + file + "'");
+        if(exists()) return;
+        throw new TempDbException("Database file not exists '" + this + "'");
+    }
+    
+    /**
+     * Releases shared storage of this file and of its siblings. Data of 
+     * memory storages are lost, mapped file is truncated to its data size 
+     * and closed. Storage is opened again on next use.
+     */
+    public synchronized void release() {
+        if(siblings != null) {
+            for(DbFile sibling : siblings.values()) sibling.release();
+        }
+        if(shared != null) {
+            try {
+                shared.close();
+            } catch(Exception e) {
+                throw new TempDbException("Unable to release " + this, e);
+            }
+            shared = null;
+        }
     }
     
     /**
-     * Deletes file
+     * Deletes file. Shared storages of this file and of its siblings are 
+     * released.
      */
     public void delete() {
-        file.delete();
+        release();
+        created = true;
+        if(file != null) file.delete();
     }
 
     /**
@@ -115,7 +288,8 @@ public class DbFile {
      */
     public InputStream inputStream() {
         try {
-            return new BufferedInputStream(new FileInputStream(file), 20000);
+            if(isShared()) return new BufferedInputStream(new StorageInputStream(sharedStorage()), 20000);
+            return new BufferedInputStream(new FileInputStream(create()), 20000);
         } catch(Exception e) {
             throw new TempDbException("Unable to create input stream from '" + file + "'");
         }
@@ -127,19 +301,82 @@ public class DbFile {
      */
     public OutputStream outputStream() {
         try {
-            return new BufferedOutputStream(new FileOutputStream(file), 20000);
+            if(isShared()) return new BufferedOutputStream(new StorageOutputStream(sharedStorage()), 20000);
+            return new BufferedOutputStream(new FileOutputStream(create()), 20000);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to create output stream from '" + file + "'");
+        }
+    }
+    
+    /**
+     * Creates unbuffered input stream from file. Usable for channel 
+     * operations.
+     * @return FileInputStream
+     */
+    public FileInputStream fileInputStream() {
+        if(isShared()) throw new TempDbException("File stream is not available for " + storage + " db file " + this);
+        try {
+            return new FileInputStream(create());
+        } catch(Exception e) {
+            throw new TempDbException("Unable to create input stream from '" + file + "'");
+        }
+    }
+    
+    /**
+     * Creates unbuffered output stream from file. Usable for channel 
+     * operations.
+     * @return FileOutputStream
+     */
+    public FileOutputStream fileOutputStream() {
+        if(isShared()) throw new TempDbException("File stream is not available for " + storage + " db file " + this);
+        try {
+            return new FileOutputStream(create());
         } catch(Exception e) {
             throw new TempDbException("Unable to create output stream from '" + file + "'");
         }
     }
     
     /**
-     * Creates random access file from file
+     * Opens storage of this file. Channel storage is opened for each call 
+     * and must be closed by caller. Memory, hybrid and mapped storage is 
+     * shared by all callers and it is released by release() or delete().
+     * @return storage
+     */
+    public DbStorage openStorage() {
+        try {
+            if(isShared()) return sharedStorage();
+            return new FileChannelStorage(create());
+        } catch(Exception e) {
+            throw new TempDbException("Unable to open " + storage + " storage from '" + this + "'", e);
+        }
+    }
+    
+    /**
+     * Creates random access to storage of this file.
+     * @return random access
+     */
+    public DbRandomAccess randomAccess() {
+        return new DbRandomAccess(openStorage(), !isShared());
+    }
+    
+    private synchronized DbStorage sharedStorage() throws IOException {
+        if(shared == null) {
+            if(storage == DbStorage.Type.HYBRID) shared = new HybridStorage(file, budget);
+            else if(storage == DbStorage.Type.MAPPED) shared = new MappedFileStorage(create());
+            else shared = new MemoryStorage(storage == DbStorage.Type.DIRECT);
+        }
+        return shared;
+    }
+    
+    /**
+     * Creates random access file from file. Available only for channel 
+     * storage, other storages do not keep file content in sync with data.
      * @return RandomAccessFile
      */
     public RandomAccessFile randomAccessFile() {
+        if(storage != DbStorage.Type.CHANNEL) throw new TempDbException("Random access file is not available for " + storage + " db file " + this);
         try {
-            return new RandomAccessFile(file, "rw");
+            return new RandomAccessFile(create(), "rw");
         } catch(Exception e) {
             throw new TempDbException("Unable to create random access file from '" + file + "'");
         }
@@ -147,8 +384,55 @@ public class DbFile {
 
     @Override
     public String toString() {
+        if(file == null) return "DbFile{" + storage + '@' + Integer.toHexString(hashCode()) + '}';
         return "DbFile{" + file + '}';
     }
+    
+    private static class StorageInputStream extends InputStream {
+        private DbStorage storage;
+        private long position = 0;
+        private byte[] one = new byte[1];
+
+        public StorageInputStream(DbStorage storage) {
+            this.storage = storage;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : (one[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = storage.read(position, b, off, len);
+            if(n > 0) position = position + n;
+            return n;
+        }
+    }
+    
+    private static class StorageOutputStream extends OutputStream {
+        private DbStorage storage;
+        private long position = 0;
+        private byte[] one = new byte[1];
+
+        public StorageOutputStream(DbStorage storage) throws IOException {
+            this.storage = storage;
+            storage.truncate(0);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            one[0] = (byte)b;
+            write(one, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            storage.write(position, b, off, len);
+            position = position + len;
+        }
+    }
 
 
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import sk.antons.tempdb.TempDbException;
+
+/**
+ * Helper class. Read only memory mapped file. File is mapped in segments, 
+ * so it can be larger than 2GB. Only absolute reads are used, so instance 
+ * can be used by more threads without locking. 
+ * @author antons
+ */
+public class DbMappedFile {
+    private static final int SEGMENT_BITS = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    
+    private DbFile dbfile;
+    private RandomAccessFile raf;
+    private ByteBuffer[] segments;
+    private long size;
+
+    /**
+     * Maps whole file to memory.
+     * @param dbfile file
+     */
+    public DbMappedFile(DbFile dbfile) {
+        this.dbfile = dbfile;
+        raf = dbfile.randomAccessFile();
+        try {
+            FileChannel channel = raf.getChannel();
+            size = channel.size();
+            int count = (int)((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+            segments = new ByteBuffer[count];
+            for(int i = 0; i < count; i++) {
+                long start = ((long)i) << SEGMENT_BITS;
+                long length = Math.min(SEGMENT_SIZE, size - start);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                segments[i] = segment;
+            }
+        } catch(Exception e) {
+            close();
+            throw new TempDbException("Unable to map file " + dbfile, e);
+        }
+    }
+
+    /**
+     * Size of mapped file
+     * @return size
+     */
+    public long size() { return size; }
+    
+    /**
+     * Reads byte from position
+     * @param position 
+     * @return value 
+     */
+    public byte get(long position) {
+        return segments[(int)(position >>> SEGMENT_BITS)].get((int)(position & SEGMENT_MASK));
+    }
+    
+    /**
+     * Reads int from position
+     * @param position 
+     * @return value 
+     */
+    public int readInt(long position) {
+        int offset = (int)(position & SEGMENT_MASK);
+        if(offset <= SEGMENT_SIZE - 4) return segments[(int)(position >>> SEGMENT_BITS)].getInt(offset);
+        return ((get(position) & 0xff) << 24) | ((get(position + 1) & 0xff) << 16) 
+            | ((get(position + 2) & 0xff) << 8) | (get(position + 3) & 0xff);
+    }
+    
+    /**
+     * Reads long from position
+     * @param position 
+     * @return value 
+     */
+    public long readLong(long position) {
+        int offset = (int)(position & SEGMENT_MASK);
+        if(offset <= SEGMENT_SIZE - 8) return segments[(int)(position >>> SEGMENT_BITS)].getLong(offset);
+        return ((readInt(position) & 0xffffffffL) << 32) | (readInt(position + 4) & 0xffffffffL);
+    }
+    
+    /**
+     * Reads length bytes from position to buff.
+     * @param position
+     * @param buff
+     * @param offset
+     * @param length 
+     */
+    public void read(long position, byte[] buff, int offset, int length) {
+        while(length > 0) {
+            ByteBuffer segment = segments[(int)(position >>> SEGMENT_BITS)].duplicate();
+            int segmentOffset = (int)(position & SEGMENT_MASK);
+            int n = Math.min(length, segment.limit() - segmentOffset);
+            segment.position(segmentOffset);
+            segment.get(buff, offset, n);
+            position = position + n;
+            offset = offset + n;
+            length = length - n;
+        }
+    }
+
+    /**
+     * Closes file. (Mapped memory is released by garbage collector.)
+     */
+    public void close() {
+        try {
+            if(raf != null) raf.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close random access file from " + dbfile, e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Helper class. Random access to db storage with file pointer. It mimics
+ * RandomAccessFile methods used by databases, so database implementation 
+ * does not depend on storage type.
+ * @author antons
+ */
+public class DbRandomAccess {
+    private DbStorage storage;
+    private boolean owner;
+    private long position = 0;
+    private byte[] scratch = new byte[8];
+
+    /**
+     * Creates random access for storage.
+     * @param storage storage
+     * @param owner true if storage is closed together with this instance
+     */
+    public DbRandomAccess(DbStorage storage, boolean owner) {
+        this.storage = storage;
+        this.owner = owner;
+    }
+
+    /**
+     * Underlying storage
+     * @return storage
+     */
+    public DbStorage storage() { return storage; }
+    
+    /**
+     * Sets file pointer
+     * @param position new position
+     */
+    public void seek(long position) { this.position = position; }
+    
+    /**
+     * Current file pointer
+     * @return position
+     */
+    public long getFilePointer() { return position; }
+    
+    /**
+     * Size of storage
+     * @return size
+     * @throws IOException
+     */
+    public long length() throws IOException { return storage.size(); }
+    
+    /**
+     * Sets size of storage.
+     * @param size new size
+     * @throws IOException
+     */
+    public void setLength(long size) throws IOException { 
+        storage.truncate(size); 
+        if(position > size) position = size;
+    }
+    
+    /**
+     * Reads up to length bytes from file pointer.
+     * @param buff destination
+     * @param offset destination offset
+     * @param length max number of bytes
+     * @return number of bytes or -1 at the end of storage
+     * @throws IOException
+     */
+    public int read(byte[] buff, int offset, int length) throws IOException {
+        int n = storage.read(position, buff, offset, length);
+        if(n > 0) position = position + n;
+        return n;
+    }
+    
+    /**
+     * Reads up to buff.length bytes from file pointer.
+     * @param buff destination
+     * @return number of bytes or -1 at the end of storage
+     * @throws IOException
+     */
+    public int read(byte[] buff) throws IOException { return read(buff, 0, buff.length); }
+    
+    /**
+     * Reads exactly length bytes from file pointer.
+     * @param buff destination
+     * @param offset destination offset
+     * @param length number of bytes
+     * @throws IOException
+     */
+    public void readFully(byte[] buff, int offset, int length) throws IOException {
+        int n = 0;
+        while(n < length) {
+            int r = read(buff, offset + n, length - n);
+            if(r < 0) throw new EOFException("Unable to read " + length + " bytes from position " + (position - n));
+            n = n + r;
+        }
+    }
+    
+    /**
+     * Reads exactly buff.length bytes from file pointer.
+     * @param buff destination
+     * @throws IOException
+     */
+    public void readFully(byte[] buff) throws IOException { readFully(buff, 0, buff.length); }
+    
+    /**
+     * Reads int from file pointer.
+     * @return value
+     * @throws IOException
+     */
+    public int readInt() throws IOException {
+        readFully(scratch, 0, 4);
+        return ((scratch[0] & 0xff) << 24) | ((scratch[1] & 0xff) << 16) 
+            | ((scratch[2] & 0xff) << 8) | (scratch[3] & 0xff);
+    }
+    
+    /**
+     * Reads long from file pointer.
+     * @return value
+     * @throws IOException
+     */
+    public long readLong() throws IOException {
+        readFully(scratch, 0, 8);
+        long high = ((scratch[0] & 0xff) << 24) | ((scratch[1] & 0xff) << 16) 
+            | ((scratch[2] & 0xff) << 8) | (scratch[3] & 0xff);
+        long low = ((scratch[4] & 0xff) << 24) | ((scratch[5] & 0xff) << 16) 
+            | ((scratch[6] & 0xff) << 8) | (scratch[7] & 0xff);
+        return (high << 32) | (low & 0xffffffffL);
+    }
+    
+    /**
+     * Writes length bytes to file pointer.
+     * @param buff source
+     * @param offset source offset
+     * @param length number of bytes
+     * @throws IOException
+     */
+    public void write(byte[] buff, int offset, int length) throws IOException {
+        storage.write(position, buff, offset, length);
+        position = position + length;
+    }
+    
+    /**
+     * Writes whole buff to file pointer.
+     * @param buff source
+     * @throws IOException
+     */
+    public void write(byte[] buff) throws IOException { write(buff, 0, buff.length); }
+    
+    /**
+     * Writes int to file pointer.
+     * @param value value
+     * @throws IOException
+     */
+    public void writeInt(int value) throws IOException {
+        scratch[0] = (byte)(value >>> 24);
+        scratch[1] = (byte)(value >>> 16);
+        scratch[2] = (byte)(value >>> 8);
+        scratch[3] = (byte)value;
+        write(scratch, 0, 4);
+    }
+    
+    /**
+     * Writes long to file pointer.
+     * @param value value
+     * @throws IOException
+     */
+    public void writeLong(long value) throws IOException {
+        for(int i = 0; i < 8; i++) scratch[i] = (byte)(value >>> (56 - 8 * i));
+        write(scratch, 0, 8);
+    }
+    
+    /**
+     * Forces written data to underlying device.
+     * @throws IOException
+     */
+    public void sync() throws IOException { storage.sync(); }
+    
+    /**
+     * Closes storage if this instance is its owner.
+     * @throws IOException
+     */
+    public void close() throws IOException { 
+        if(owner) storage.close(); 
+    }
+}
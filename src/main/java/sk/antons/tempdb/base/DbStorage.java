@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.io.IOException;
+
+/**
+ * Storage backend of database file. Storage is addressed by absolute 
+ * positions, so it does not hold any file pointer. 
+ * @author antons
+ */
+public interface DbStorage {
+
+    /**
+     * Kind of storage used by db file.
+     */
+    public static enum Type {
+        /** file accessed by positional channel reads and writes */
+        CHANNEL,
+        /** file mapped to memory in segments */
+        MAPPED,
+        /** heap memory only */
+        HEAP,
+        /** off heap (direct) memory only */
+        DIRECT,
+        /** heap memory up to budget, file after budget is exceeded */
+        HYBRID;
+
+        /**
+         * Check if storage lives in memory only.
+         * @return true for HEAP and DIRECT
+         */
+        public boolean isMemory() { return (this == HEAP) || (this == DIRECT); }
+        
+        /**
+         * Check if one storage instance is shared by all users of db file,
+         * because data are (at least partially) in memory or file is 
+         * mapped and extended while it is written.
+         * @return true for HEAP, DIRECT, HYBRID and MAPPED
+         */
+        public boolean isShared() { return isMemory() || (this == HYBRID) || (this == MAPPED); }
+    }
+
+    /**
+     * Reads up to length bytes from position to buff.
+     * @param position storage position
+     * @param buff destination
+     * @param offset destination offset
+     * @param length max number of bytes
+     * @return number of bytes read or -1 if position is at the end of storage
+     * @throws IOException
+     */
+    int read(long position, byte[] buff, int offset, int length) throws IOException;
+    
+    /**
+     * Writes length bytes from buff to position. Storage is extended if 
+     * necessary.
+     * @param position storage position
+     * @param buff source
+     * @param offset source offset
+     * @param length number of bytes
+     * @throws IOException
+     */
+    void write(long position, byte[] buff, int offset, int length) throws IOException;
+    
+    /**
+     * Current size of storage.
+     * @return size in bytes
+     * @throws IOException
+     */
+    long size() throws IOException;
+    
+    /**
+     * Sets size of storage. Storage is shrunk or extended. Content of 
+     * extended part is not defined.
+     * @param size new size
+     * @throws IOException
+     */
+    void truncate(long size) throws IOException;
+    
+    /**
+     * Forces written data to underlying device. 
+     * @throws IOException
+     */
+    void sync() throws IOException;
+    
+    /**
+     * Releases resources used by storage.
+     * @throws IOException
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * File storage using positional channel reads and writes. 
+ * @author antons
+ */
+public class FileChannelStorage implements DbStorage {
+    private RandomAccessFile raf;
+    private FileChannel channel;
+
+    /**
+     * Opens file for reading and writing.
+     * @param file file
+     * @throws IOException
+     */
+    public FileChannelStorage(File file) throws IOException {
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+    }
+
+    @Override
+    public int read(long position, byte[] buff, int offset, int length) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buff, offset, length);
+        int n = 0;
+        while(bb.hasRemaining()) {
+            int r = channel.read(bb, position + n);
+            if(r < 0) break;
+            n = n + r;
+        }
+        if((n == 0) && (length > 0)) return -1;
+        return n;
+    }
+
+    @Override
+    public void write(long position, byte[] buff, int offset, int length) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(buff, offset, length);
+        while(bb.hasRemaining()) {
+            position = position + channel.write(bb, position);
+        }
+    }
+
+    @Override
+    public long size() throws IOException { return channel.size(); }
+
+    @Override
+    public void truncate(long size) throws IOException { raf.setLength(size); }
+
+    @Override
+    public void sync() throws IOException { channel.force(false); }
+
+    @Override
+    public void close() throws IOException { raf.close(); }
+    
+}
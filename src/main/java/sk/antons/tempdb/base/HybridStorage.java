@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory first storage. Data are kept in heap memory until storage size 
+ * exceeds given budget. Then whole content is moved to file and storage 
+ * continues there. If file already contains data, file is used from 
+ * beginning. File is created when data are moved to it. 
+ * <p>
+ * Budget can be shared by more storages (like parts of one db file). 
+ * Each storage takes from it memory it uses and returns it when 
+ * data are moved to file or storage is closed.
+ * @author antons
+ */
+public class HybridStorage implements DbStorage {
+    private File file;
+    private AtomicLong budget;
+    private long reserved = 0;
+    private DbStorage current;
+    private boolean spilled = false;
+
+    /**
+     * Creates hybrid storage.
+     * @param file file used when budget is exceeded
+     * @param budget max number of bytes kept in memory
+     * @throws IOException
+     */
+    public HybridStorage(File file, long budget) throws IOException {
+        this(file, new AtomicLong(budget));
+    }
+    
+    /**
+     * Creates hybrid storage with shared budget.
+     * @param file file used when budget is exceeded
+     * @param budget remaining number of bytes kept in memory by all 
+     * storages sharing the budget
+     * @throws IOException
+     */
+    public HybridStorage(File file, AtomicLong budget) throws IOException {
+        this.file = file;
+        this.budget = budget;
+        if(file.length() > 0) {
+            spill();
+        } else {
+            int bits = 12;
+            while((bits < 20) && ((1L << bits) < budget.get())) bits++;
+            current = new MemoryStorage(false, bits);
+        }
+    }
+
+    /**
+     * Check if data were moved to file 
+     * @return true if file is used
+     */
+    public synchronized boolean spilled() { return spilled; }
+    
+    private void spill() throws IOException {
+        DbStorage storage = new FileChannelStorage(file);
+        try {
+            if(current != null) {
+                storage.truncate(0);
+                byte[] buff = new byte[64 * 1024];
+                long position = 0;
+                int n;
+                while((n = current.read(position, buff, 0, buff.length)) > 0) {
+                    storage.write(position, buff, 0, n);
+                    position = position + n;
+                }
+                current.close();
+            }
+        } catch(IOException e) {
+            storage.close();
+            throw e;
+        }
+        current = storage;
+        spilled = true;
+        release(reserved);
+    }
+    
+    private void reserve(long size) throws IOException {
+        if(spilled || (size <= reserved)) return;
+        long needed = size - reserved;
+        while(true) {
+            long remaining = budget.get();
+            if(remaining < needed) {
+                spill();
+                return;
+            }
+            if(budget.compareAndSet(remaining, remaining - needed)) break;
+        }
+        reserved = size;
+    }
+    
+    private void release(long size) {
+        if(size <= 0) return;
+        budget.addAndGet(size);
+        reserved = reserved - size;
+    }
+    
+    @Override
+    public synchronized int read(long position, byte[] buff, int offset, int length) throws IOException {
+        return current.read(position, buff, offset, length);
+    }
+
+    @Override
+    public synchronized void write(long position, byte[] buff, int offset, int length) throws IOException {
+        reserve(position + length);
+        current.write(position, buff, offset, length);
+    }
+
+    @Override
+    public synchronized long size() throws IOException { return current.size(); }
+
+    @Override
+    public synchronized void truncate(long size) throws IOException { 
+        reserve(size);
+        current.truncate(size);
+        if(!spilled) release(reserved - size);
+    }
+
+    @Override
+    public synchronized void sync() throws IOException { current.sync(); }
+
+    @Override
+    public synchronized void close() throws IOException { 
+        current.close(); 
+        if(!spilled) release(reserved);
+    }
+    
+}
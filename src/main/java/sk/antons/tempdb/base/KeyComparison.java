@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.util.Comparator;
+
+/**
+ * Helper class for comparing of keys.
+ * @author antons
+ */
+public class KeyComparison {
+    
+    /**
+     * Compares keys by given comparator or by natural ordering if no 
+     * comparator is defined.
+     * @param comparator comparator (can be null)
+     * @param key1 first key
+     * @param key2 second key
+     * @return comparison result 
+     */
+    @SuppressWarnings("unchecked") // natural ordering requires Comparable keys
+    public static <K> int compare(Comparator<K> comparator, K key1, K key2) {
+        if(comparator != null) return comparator.compare(key1, key2);
+        return ((Comparable<K>)key1).compareTo(key2);
+    }
+    
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * File storage mapped to memory. File is mapped in segments, so it can be 
+ * larger than 2GB. Until storage is changed segments are mapped read only 
+ * and never beyond end of file. First write or truncate maps file for 
+ * writing. Mapping of last writable segment extends file, so file is 
+ * truncated to real data size on close. Storage must be the only user of 
+ * the file while it is open (DbFile shares one instance by all its users).
+ * <p>
+ * While storage is open last 16 bytes of (extended) file hold marker and 
+ * real data size. If storage is not closed properly (process crash), 
+ * file stays extended and next open uses stored size and truncates 
+ * the file back to it.
+ * @author antons
+ */
+public class MappedFileStorage extends SegmentedStorage {
+    private static final long MARKER = 0x54656d7044625369L;
+    private static final int TRAILER_SIZE = 16;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long length;
+    private boolean writable = false;
+
+    /**
+     * Maps file in 64MB segments.
+     * @param file file
+     * @throws IOException
+     */
+    public MappedFileStorage(File file) throws IOException {
+        this(file, 26);
+    }
+    
+    /**
+     * Maps file in segments.
+     * @param file file
+     * @param segmentBits segment size is 2^segmentBits bytes
+     * @throws IOException
+     */
+    public MappedFileStorage(File file, int segmentBits) throws IOException {
+        super(segmentBits);
+        this.raf = new RandomAccessFile(file, "rw");
+        this.channel = raf.getChannel();
+        this.length = channel.size();
+        this.size = length;
+        if(length >= TRAILER_SIZE) {
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            while(trailer.hasRemaining()) {
+                if(channel.read(trailer, length - TRAILER_SIZE + trailer.position()) < 0) break;
+            }
+            trailer.flip();
+            if(trailer.remaining() == TRAILER_SIZE) {
+                long marker = trailer.getLong();
+                long stored = trailer.getLong();
+                if((marker == MARKER) && (stored >= 0) && (stored <= length - TRAILER_SIZE)) {
+                    this.size = stored;
+                    this.length = stored;
+                    raf.setLength(stored);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected ByteBuffer allocate(int index) throws IOException {
+        long start = ((long)index) << segmentBits;
+        if(!writable) return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(0, Math.min(segmentSize, length - start)));
+        long end = start + segmentSize;
+        if(end > length) length = end;
+        return channel.map(FileChannel.MapMode.READ_WRITE, start, segmentSize);
+    }
+    
+    @Override
+    protected void writing() throws IOException {
+        if(writable) return;
+        writable = true;
+        segments.clear();
+    }
+    
+    @Override
+    protected void resized() throws IOException {
+        while(size + TRAILER_SIZE > length) segments.add(allocate(segments.size()));
+        long position = length - TRAILER_SIZE;
+        int index = (int)(position >>> segmentBits);
+        while(segments.size() <= index) segments.add(allocate(segments.size()));
+        ByteBuffer segment = segments.get(index);
+        int offset = (int)(position & segmentMask);
+        if(offset + TRAILER_SIZE > segmentSize) {
+            // trailer would cross segments, file is not segment aligned
+            segments.add(allocate(segments.size()));
+            resized();
+            return;
+        }
+        segment.putLong(offset, MARKER);
+        segment.putLong(offset + 8, size);
+    }
+    
+    @Override
+    public synchronized void sync() throws IOException {
+        if(!writable) return;
+        for(ByteBuffer segment : segments) ((MappedByteBuffer)segment).force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments.clear();
+        try {
+            if(writable) raf.setLength(size);
+        } finally {
+            raf.close();
+        }
+    }
+    
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage living in memory only. Data are stored in heap or direct 
+ * buffers allocated in chunks, so storage can be larger than 2GB.
+ * Data are lost when storage is closed.
+ * @author antons
+ */
+public class MemoryStorage extends SegmentedStorage {
+    private boolean direct;
+
+    /**
+     * Creates memory storage with 1MB chunks.
+     * @param direct true for off heap buffers
+     */
+    public MemoryStorage(boolean direct) {
+        this(direct, 20);
+    }
+    
+    /**
+     * Creates memory storage.
+     * @param direct true for off heap buffers
+     * @param chunkBits chunk size is 2^chunkBits bytes
+     */
+    public MemoryStorage(boolean direct, int chunkBits) {
+        super(chunkBits);
+        this.direct = direct;
+    }
+
+    @Override
+    protected ByteBuffer allocate(int index) throws IOException {
+        return direct ? ByteBuffer.allocateDirect(segmentSize) : ByteBuffer.allocate(segmentSize);
+    }
+    
+    @Override
+    public void sync() throws IOException { }
+
+    @Override
+    public synchronized void close() throws IOException { 
+        segments.clear();
+        size = 0;
+    }
+    
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper class. Storage composed from fixed size segments. Segments are 
+ * allocated by subclass when storage grows.
+ * @author antons
+ */
+abstract class SegmentedStorage implements DbStorage {
+    protected final int segmentBits;
+    protected final int segmentSize;
+    protected final int segmentMask;
+    protected List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    protected long size = 0;
+
+    protected SegmentedStorage(int segmentBits) {
+        this.segmentBits = segmentBits;
+        this.segmentSize = 1 << segmentBits;
+        this.segmentMask = segmentSize - 1;
+    }
+
+    /**
+     * Allocates i-th segment.
+     * @param index segment index
+     * @return segment of segmentSize bytes
+     * @throws IOException
+     */
+    protected abstract ByteBuffer allocate(int index) throws IOException;
+    
+    /**
+     * Called when size of storage is changed.
+     * @throws IOException
+     */
+    protected void resized() throws IOException {
+    }
+    
+    /**
+     * Called before storage is changed by write or truncate.
+     * @throws IOException
+     */
+    protected void writing() throws IOException {
+    }
+    
+    private ByteBuffer segment(long position) throws IOException {
+        int index = (int)(position >>> segmentBits);
+        while(segments.size() <= index) segments.add(allocate(segments.size()));
+        ByteBuffer segment = segments.get(index).duplicate();
+        segment.position((int)(position & segmentMask));
+        return segment;
+    }
+
+    @Override
+    public synchronized int read(long position, byte[] buff, int offset, int length) throws IOException {
+        if(length == 0) return 0;
+        if(position >= size) return -1;
+        int n = (int)Math.min(length, size - position);
+        int remaining = n;
+        while(remaining > 0) {
+            ByteBuffer segment = segment(position);
+            int r = Math.min(remaining, segment.remaining());
+            segment.get(buff, offset, r);
+            position = position + r;
+            offset = offset + r;
+            remaining = remaining - r;
+        }
+        return n;
+    }
+
+    @Override
+    public synchronized void write(long position, byte[] buff, int offset, int length) throws IOException {
+        writing();
+        long end = position + length;
+        while(length > 0) {
+            ByteBuffer segment = segment(position);
+            int w = Math.min(length, segment.remaining());
+            segment.put(buff, offset, w);
+            position = position + w;
+            offset = offset + w;
+            length = length - w;
+        }
+        if(end > size) {
+            size = end;
+            resized();
+        }
+    }
+
+    @Override
+    public synchronized long size() throws IOException { return size; }
+
+    @Override
+    public synchronized void truncate(long size) throws IOException { 
+        writing();
+        this.size = size; 
+        int count = (int)((size + segmentSize - 1) >>> segmentBits);
+        while(segments.size() > count) segments.remove(segments.size() - 1);
+        resized();
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.compression;
+
+import java.io.IOException;
+
+/**
+ * Compression of byte blocks. Length of uncompressed data is not part of 
+ * compressed data, so it must be stored by caller. Implementations must be 
+ * thread safe.
+ * @author antons
+ */
+public interface BlockCodec {
+    
+    /**
+     * Compresses data.
+     * @param src source data
+     * @param srcOffset offset of source data
+     * @param length length of source data
+     * @param dest destination buffer
+     * @param destOffset destination offset
+     * @param maxLength max length of compressed data
+     * @return length of compressed data or -1 if compressed data are longer than maxLength
+     * @throws IOException 
+     */
+    int compress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset, int maxLength) throws IOException;
+    
+    /**
+     * Decompresses data.
+     * @param src compressed data
+     * @param srcOffset offset of compressed data
+     * @param length length of compressed data
+     * @param dest destination buffer
+     * @param destOffset destination offset
+     * @param rawLength length of uncompressed data
+     * @throws IOException 
+     */
+    void decompress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset, int rawLength) throws IOException;
+    
+    /**
+     * Releases resources (like native memory) held by codec and not used 
+     * at the moment (by any thread). Codec stays usable, resources are 
+     * created again when needed.
+     */
+    void release();
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block codec using java.util.zip Deflater. Deflaters and inflaters are 
+ * pooled and each call borrows its own, so codec can be shared by more 
+ * threads. Pooled deflaters and inflaters hold native memory until 
+ * release() is called (by any thread). Codec can use preset dictionary, 
+ * which makes compression of small similar blocks effective.
+ * @author antons
+ */
+public class DeflateCodec implements BlockCodec {
+    private static final DeflateCodec instance = new DeflateCodec();
+    public static DeflateCodec instance() { return instance; }
+    
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+    
+    private final int level;
+    private final byte[] dictionary;
+    private final List<Deflater> deflaters = new ArrayList<Deflater>();
+    private final List<Inflater> inflaters = new ArrayList<Inflater>();
+
+    /**
+     * Creates codec with default compression level.
+     */
+    public DeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+    
+    /**
+     * Creates codec with given compression level.
+     * @param level compression level (see Deflater)
+     */
+    public DeflateCodec(int level) {
+        this(level, null);
+    }
+
+    /**
+     * Creates codec with given compression level and preset dictionary.
+     * @param level compression level (see Deflater)
+     * @param dictionary preset dictionary (see trainDictionary())
+     */
+    public DeflateCodec(int level, byte[] dictionary) {
+        this.level = level;
+        this.dictionary = ((dictionary == null) || (dictionary.length == 0)) ? null : dictionary;
+    }
+
+    /**
+     * Creates preset dictionary from sample data. Distinct samples are 
+     * concatenated so first samples are at the end of dictionary (deflate 
+     * references near data cheaper). 
+     * @param samples sample data
+     * @param maxSize max size of dictionary (at most MAX_DICTIONARY_SIZE)
+     * @return dictionary
+     */
+    public static byte[] trainDictionary(List<byte[]> samples, int maxSize) {
+        if(maxSize > MAX_DICTIONARY_SIZE) maxSize = MAX_DICTIONARY_SIZE;
+        byte[] rv = new byte[maxSize];
+        int pos = maxSize;
+        Set<ByteBuffer> seen = new HashSet<ByteBuffer>();
+        for(byte[] sample : samples) {
+            if(pos == 0) break;
+            if(!seen.add(ByteBuffer.wrap(sample))) continue;
+            int length = Math.min(sample.length, pos);
+            pos = pos - length;
+            System.arraycopy(sample, 0, rv, pos, length);
+        }
+        if(pos == 0) return rv;
+        byte[] trimmed = new byte[maxSize - pos];
+        System.arraycopy(rv, pos, trimmed, 0, trimmed.length);
+        return trimmed;
+    }
+
+    private Deflater deflater() {
+        Deflater deflater = null;
+        synchronized(this) {
+            if(!deflaters.isEmpty()) deflater = deflaters.remove(deflaters.size() - 1);
+        }
+        if(deflater == null) deflater = new Deflater(level, true);
+        if(dictionary != null) deflater.setDictionary(dictionary);
+        return deflater;
+    }
+    
+    private Inflater inflater() {
+        Inflater inflater = null;
+        synchronized(this) {
+            if(!inflaters.isEmpty()) inflater = inflaters.remove(inflaters.size() - 1);
+        }
+        if(inflater == null) inflater = new Inflater(true);
+        if(dictionary != null) inflater.setDictionary(dictionary);
+        return inflater;
+    }
+    
+    private void giveBack(Deflater deflater) {
+        deflater.reset();
+        synchronized(this) {
+            deflaters.add(deflater);
+        }
+    }
+    
+    private void giveBack(Inflater inflater) {
+        inflater.reset();
+        synchronized(this) {
+            inflaters.add(inflater);
+        }
+    }
+    
+    @Override
+    public int compress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset, int maxLength) throws IOException {
+        Deflater deflater = deflater();
+        try {
+            deflater.setInput(src, srcOffset, length);
+            deflater.finish();
+            int n = 0;
+            while(!deflater.finished()) {
+                if(n >= maxLength) return -1;
+                n = n + deflater.deflate(dest, destOffset + n, maxLength - n);
+            }
+            return n;
+        } finally {
+            giveBack(deflater);
+        }
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset, int rawLength) throws IOException {
+        Inflater inflater = inflater();
+        try {
+            inflater.setInput(src, srcOffset, length);
+            int n = 0;
+            while(n < rawLength) {
+                int r = inflater.inflate(dest, destOffset + n, rawLength - n);
+                if((r == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Corrupted compressed data");
+                }
+                n = n + r;
+            }
+        } catch(DataFormatException e) {
+            throw new IOException("Corrupted compressed data", e);
+        } finally {
+            giveBack(inflater);
+        }
+    }
+    
+    @Override
+    public void release() {
+        List<Deflater> idleDeflaters;
+        List<Inflater> idleInflaters;
+        synchronized(this) {
+            idleDeflaters = new ArrayList<Deflater>(deflaters);
+            idleInflaters = new ArrayList<Inflater>(inflaters);
+            deflaters.clear();
+            inflaters.clear();
+        }
+        for(Deflater deflater : idleDeflaters) deflater.end();
+        for(Inflater inflater : idleInflaters) inflater.end();
+    }
+
+    
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Simple and fast LZ77 block codec (similar to LZ4 block format). Compressed 
+ * data are sequences of literals followed by match (offset and length). 
+ * <pre>
+ * sequence: token, [literal length bytes], literals, offset, [match length bytes]
+ * token:    4 bits literal length, 4 bits match length - 4 
+ *           (value 15 means additional bytes follow until byte is not 255)
+ * offset:   2 bytes little endian
+ * </pre>
+ * Last sequence contains only literals. Codec has no state and can be shared.
+ * @author antons
+ */
+public class LzCodec implements BlockCodec {
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 65535;
+    private static final int HASH_BITS = 12;
+    
+    private static final LzCodec instance = new LzCodec();
+    public static LzCodec instance() { return instance; }
+
+    private static int readInt(byte[] data, int i) {
+        return (data[i] & 0xff) | ((data[i+1] & 0xff) << 8) 
+            | ((data[i+2] & 0xff) << 16) | ((data[i+3] & 0xff) << 24);
+    }
+    
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (32 - HASH_BITS);
+    }
+    
+    @Override
+    public int compress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset, int maxLength) throws IOException {
+        int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+        int end = srcOffset + length;
+        int limit = end - MIN_MATCH;
+        int destEnd = destOffset + maxLength;
+        int anchor = srcOffset;
+        int ip = srcOffset;
+        int op = destOffset;
+        while(ip < limit) {
+            int value = readInt(src, ip);
+            int h = hash(value);
+            int ref = table[h];
+            table[h] = ip;
+            if((ref < 0) || (ip - ref > MAX_OFFSET) || (readInt(src, ref) != value)) {
+                ip++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while((ip + matchLength < end) && (src[ref + matchLength] == src[ip + matchLength])) matchLength++;
+            op = sequence(src, anchor, ip - anchor, ip - ref, matchLength, dest, op, destEnd);
+            if(op < 0) return -1;
+            ip = ip + matchLength;
+            anchor = ip;
+        }
+        op = sequence(src, anchor, end - anchor, 0, 0, dest, op, destEnd);
+        if(op < 0) return -1;
+        return op - destOffset;
+    }
+
+    private static int sequence(byte[] src, int literalOffset, int literalLength, int offset, int matchLength, byte[] dest, int op, int destEnd) {
+        int matchCode = (matchLength == 0) ? 0 : matchLength - MIN_MATCH;
+        int needed = 1 + literalLength + literalLength / 255 + 1 + ((matchLength == 0) ? 0 : 2 + matchCode / 255 + 1);
+        if(op + needed > destEnd) return -1;
+        int token = (Math.min(literalLength, 15) << 4) | Math.min(matchCode, 15);
+        dest[op++] = (byte)token;
+        if(literalLength >= 15) op = length(literalLength - 15, dest, op);
+        System.arraycopy(src, literalOffset, dest, op, literalLength);
+        op = op + literalLength;
+        if(matchLength == 0) return op;
+        dest[op++] = (byte)offset;
+        dest[op++] = (byte)(offset >>> 8);
+        if(matchCode >= 15) op = length(matchCode - 15, dest, op);
+        return op;
+    }
+    
+    private static int length(int value, byte[] dest, int op) {
+        while(value >= 255) {
+            dest[op++] = (byte)255;
+            value = value - 255;
+        }
+        dest[op++] = (byte)value;
+        return op;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset, int rawLength) throws IOException {
+        int ip = srcOffset;
+        int end = srcOffset + length;
+        int op = destOffset;
+        int destEnd = destOffset + rawLength;
+        try {
+            while(ip < end) {
+                int token = src[ip++] & 0xff;
+                int literalLength = token >>> 4;
+                if(literalLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        literalLength = literalLength + b;
+                    } while(b == 255);
+                }
+                if(op + literalLength > destEnd) throw new IOException("Corrupted compressed data");
+                System.arraycopy(src, ip, dest, op, literalLength);
+                ip = ip + literalLength;
+                op = op + literalLength;
+                if(ip >= end) break;
+                int offset = (src[ip] & 0xff) | ((src[ip+1] & 0xff) << 8);
+                ip = ip + 2;
+                int matchLength = token & 0x0f;
+                if(matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        matchLength = matchLength + b;
+                    } while(b == 255);
+                }
+                matchLength = matchLength + MIN_MATCH;
+                int ref = op - offset;
+                if((offset == 0) || (ref < destOffset) || (op + matchLength > destEnd)) throw new IOException("Corrupted compressed data");
+                for(int i = 0; i < matchLength; i++) {
+                    dest[op++] = dest[ref++];
+                }
+            }
+        } catch(ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupted compressed data", e);
+        }
+        if(op != destEnd) throw new IOException("Corrupted compressed data");
+    }
+    
+    @Override
+    public void release() { }
+    
+}
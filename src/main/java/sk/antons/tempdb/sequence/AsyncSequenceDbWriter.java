@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.io.DataOutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.DbByteArrayOutputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Writer for database file which writes data to file in background thread.
+ * Values are serialized to memory buffer. Full buffer is passed to background 
+ * thread and next free buffer is used. If there is no free buffer add() 
+ * waits until one is written. Failure of background writing is thrown 
+ * by next add(), flush() or close() call.
+ * Such file can be then used by SequenceDbReader.
+ * @author antons
+ */
+public class AsyncSequenceDbWriter<T> extends SequenceDbWriter<T> {
+    private final DbByteArrayOutputStream stop = new DbByteArrayOutputStream();
+    private final Object lock = new Object();
+    private int bufferSize;
+    private BlockingQueue<DbByteArrayOutputStream> full;
+    private BlockingQueue<DbByteArrayOutputStream> free;
+    private DbByteArrayOutputStream current;
+    private DataOutputStream currentdos;
+    private int pending = 0;
+    private volatile Throwable failure;
+    private Thread thread;
+    
+    /**
+     * Creates new writer.
+     * @param dbfile
+     * @param serializer
+     * @param bufferSize size of one memory buffer
+     * @param buffers number of memory buffers (at least 2)
+     */
+    public AsyncSequenceDbWriter(DbFile dbfile, BytesSerializer<T> serializer, int bufferSize, int buffers) {
+        super(dbfile, serializer);
+        if(bufferSize < 1) throw new TempDbException("Buffer size must be positive " + bufferSize);
+        if(buffers < 2) throw new TempDbException("At least two buffers are required " + buffers);
+        this.bufferSize = bufferSize;
+        full = new ArrayBlockingQueue<DbByteArrayOutputStream>(buffers + 1);
+        free = new ArrayBlockingQueue<DbByteArrayOutputStream>(buffers);
+        for(int i = 1; i < buffers; i++) {
+            free.add(new DbByteArrayOutputStream(bufferSize));
+        }
+        current(new DbByteArrayOutputStream(bufferSize));
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() { write(); }
+        }, "tempdb-writer " + dbfile);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void current(DbByteArrayOutputStream buffer) {
+        current = buffer;
+        currentdos = new DataOutputStream(buffer);
+    }
+
+    private void write() {
+        try {
+            while(true) {
+                DbByteArrayOutputStream buffer = full.take();
+                if(buffer == stop) return;
+                try {
+                    if(failure == null) os.write(buffer.buff(), 0, buffer.count());
+                } catch(Throwable e) {
+                    failure = e;
+                }
+                buffer.reset();
+                free.put(buffer);
+                synchronized(lock) {
+                    pending--;
+                    lock.notifyAll();
+                }
+            }
+        } catch(InterruptedException e) {
+            failure = e;
+            synchronized(lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void checkFailure() {
+        if(failure != null) throw new TempDbException("Unable to write to output stream from " + dbfile, failure);
+    }
+
+    private void submit() throws InterruptedException {
+        synchronized(lock) {
+            pending++;
+        }
+        full.put(current);
+        current(free.take());
+    }
+
+    private void await() throws InterruptedException {
+        synchronized(lock) {
+            while((pending > 0) && (failure == null)) lock.wait();
+        }
+    }
+
+    /**
+     * Add next value to the database. Value is only serialized to memory 
+     * buffer. 
+     * @param value 
+     */
+    @Override
+    public synchronized void add(T value) {
+        checkFailure();
+        try {
+            serializer.serialize(value, currentdos);
+            if(current.count() >= bufferSize) submit();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TempDbException("Writing to " + dbfile + " interrupted", e);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write to output stream from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Waits until all added values are written and flushes file.
+     */
+    @Override
+    public synchronized void flush() {
+        checkFailure();
+        try {
+            if(current.count() > 0) submit();
+            await();
+            checkFailure();
+            os.flush();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TempDbException("Writing to " + dbfile + " interrupted", e);
+        } catch(TempDbException e) {
+            throw e;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to flush output stream from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Waits until all added values are written, stops background thread 
+     * and closes file. If flush fails, its failure is thrown even if 
+     * closing of file fails too.
+     */
+    @Override
+    public synchronized void close() {
+        boolean flushed = false;
+        try {
+            flush();
+            flushed = true;
+        } finally {
+            try {
+                full.put(stop);
+                thread.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if(flushed) {
+                super.close();
+            } else {
+                try {
+                    super.close();
+                } catch(Exception e) {
+                    // flush failure is the primary one and it is thrown
+                }
+            }
+        }
+    }
+    
+}
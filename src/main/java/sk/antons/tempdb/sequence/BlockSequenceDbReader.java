@@ -0,0 +1,279 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbBufferedInput;
+import sk.antons.tempdb.base.DbByteArrayInputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.DbRandomAccess;
+import sk.antons.tempdb.compression.BlockCodec;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+
+/**
+ * Reader of database file created by BlockSequenceDbWriter. Blocks are 
+ * decompressed when they are needed. Reader must use same codec as writer.
+ * <p>
+ * Reader can be split to more readers with disjunct ranges of blocks
+ * (see {@link #split(int)}) which can be read in parallel. 
+ * @author antons
+ */
+public class BlockSequenceDbReader<T> extends AbstractDb implements RangeReader<T> {
+    protected BytesDeserializer<T> deserializer;
+    protected BlockCodec codec;
+    protected DbRandomAccess raf;
+    protected DbBufferedInput input;
+    protected long count;
+    protected long dataSize;
+    protected long[] blockPositions;
+    protected long[] blockOrdinals;
+    protected long ordinal = 0;
+    protected long from = 0;
+    protected long to = 0;
+    private int block = -1;
+    private byte[] compressed = new byte[1];
+    private DbByteArrayInputStream is ;
+    private DataInputStream dis;
+    
+    /**
+     * Creates new database reader
+     * @param dbfile
+     * @param deserializer 
+     * @param codec 
+     */
+    public BlockSequenceDbReader(DbFile dbfile, BytesDeserializer<T> deserializer, BlockCodec codec) {
+        super(dbfile);
+        dbfile.checkExistence();
+        this.deserializer = deserializer;
+        this.codec = codec;
+        raf = dbfile.randomAccess();
+        try {
+            long length = raf.length();
+            if(length < BlockSequenceDbWriter.FOOTER_SIZE) throw new TempDbException("Not a block database file " + dbfile);
+            raf.seek(length - BlockSequenceDbWriter.FOOTER_SIZE);
+            count = raf.readLong();
+            dataSize = raf.readLong();
+            raf.readInt();
+            int magic = raf.readInt();
+            if(magic != BlockSequenceDbWriter.MAGIC) throw new TempDbException("Not a block database file " + dbfile);
+            int blockCount = (int)((length - BlockSequenceDbWriter.FOOTER_SIZE - dataSize) / 16);
+            blockPositions = new long[blockCount];
+            blockOrdinals = new long[blockCount];
+            input = new DbBufferedInput(raf, 64 * 1024);
+            input.seek(dataSize);
+            for(int i = 0; i < blockCount; i++) {
+                blockPositions[i] = input.readLong();
+                blockOrdinals[i] = input.readLong();
+            }
+            to = count;
+        } catch(TempDbException e) {
+            close();
+            throw e;
+        } catch(Exception e) {
+            close();
+            throw new TempDbException("Unable to read index from " + dbfile, e);
+        }
+        is = new DbByteArrayInputStream(new byte[1]);
+        is.count(0);
+        dis = new DataInputStream(is);
+    }
+
+    /**
+     * Creates reader of values from range &lt;from, to) using index of parent.
+     */
+    private BlockSequenceDbReader(BlockSequenceDbReader<T> parent, long from, long to) {
+        super(parent.dbfile);
+        this.deserializer = parent.deserializer;
+        this.codec = parent.codec;
+        this.count = parent.count;
+        this.dataSize = parent.dataSize;
+        this.blockPositions = parent.blockPositions;
+        this.blockOrdinals = parent.blockOrdinals;
+        this.from = from;
+        this.to = to;
+        raf = dbfile.randomAccess();
+        input = new DbBufferedInput(raf, 64 * 1024);
+        is = new DbByteArrayInputStream(new byte[1]);
+        is.count(0);
+        dis = new DataInputStream(is);
+        seek(from);
+    }
+
+    @Override
+    public void close() {
+        try {
+            raf.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close random access file from " + dbfile, e);
+        } finally {
+            codec.release();
+        }
+    }
+
+    /**
+     * Number of values readable by this reader. (All values stored in 
+     * database or values of the range if reader is created by split())
+     * @return count
+     */
+    public long size() { return to - from; }
+
+    /**
+     * Ordinal number of value which will be returned by next()
+     * @return ordinal
+     */
+    public synchronized long ordinal() { return ordinal; }
+
+    /**
+     * Reads next unread value from database.
+     * @return next value or null
+     */
+    public synchronized T next() {
+        if(ordinal >= to) return null;
+        try {
+            if(is.pos() >= is.count()) loadBlock(block + 1);
+            int sz = is.read() << 24 | is.read() << 16 | is.read() << 8 | is.read();
+            int end = is.pos() + sz;
+            int blockEnd = is.count();
+            is.count(end);
+            T rv = deserializer.deserialize(dis);
+            is.count(blockEnd);
+            is.pos(end);
+            ordinal++;
+            return rv;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Moves reading position to value with given ordinal number.
+     * @param ordinal ordinal number of value (starting with 0)
+     */
+    public synchronized void seek(long ordinal) {
+        if(ordinal < 0) throw new TempDbException("Negative ordinal " + ordinal);
+        if(ordinal >= count) {
+            this.ordinal = count;
+            return;
+        }
+        try {
+            int b = findBlock(ordinal);
+            if((b != block) || (ordinal < this.ordinal)) {
+                loadBlock(b);
+                this.ordinal = blockOrdinals[b];
+            }
+            while(this.ordinal < ordinal) {
+                int sz = is.read() << 24 | is.read() << 16 | is.read() << 8 | is.read();
+                is.pos(is.pos() + sz);
+                this.ordinal++;
+            }
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Skips n values.
+     * @param n number of skipped values
+     */
+    public synchronized void skip(long n) {
+        seek(ordinal + n);
+    }
+    
+    /**
+     * Reads value with given ordinal number. Reading position is moved after 
+     * returned value.
+     * @param ordinal ordinal number of value (starting with 0)
+     * @return value or null if no such value exists
+     */
+    public synchronized T get(long ordinal) {
+        if((ordinal < from) || (ordinal >= to)) return null;
+        seek(ordinal);
+        return next();
+    }
+    
+    private int findBlock(long ordinal) {
+        int low = 0;
+        int high = blockOrdinals.length - 1;
+        while(low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if(blockOrdinals[mid] <= ordinal) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    private void loadBlock(int b) throws Exception {
+        input.seek(blockPositions[b]);
+        int rawLength = input.readInt();
+        int storedLength = input.readInt();
+        is.allocate(rawLength);
+        if(storedLength == rawLength) {
+            input.readFully(is.buff(), 0, rawLength);
+        } else {
+            if(compressed.length < storedLength) compressed = new byte[storedLength];
+            input.readFully(compressed, 0, storedLength);
+            codec.decompress(compressed, 0, storedLength, is.buff(), 0, rawLength);
+        }
+        is.count(rawLength);
+        block = b;
+    }
+
+    /**
+     * Splits values readable by this reader to at most parts ranges. Ranges 
+     * starts at block boundaries. Each returned reader has its own file 
+     * handle and buffers, so they can be used from different threads. 
+     * Returned readers must be closed separately. Codec is shared by all 
+     * readers.
+     * @param parts requested number of ranges
+     * @return list of readers
+     */
+    public List<BlockSequenceDbReader<T>> split(int parts) {
+        if(parts < 1) parts = 1;
+        List<BlockSequenceDbReader<T>> list = new ArrayList<BlockSequenceDbReader<T>>();
+        if(from >= to) return list;
+        int first = findBlock(from);
+        int last = findBlock(to - 1);
+        int blocks = last - first + 1;
+        int blocksPerPart = (blocks + parts - 1) / parts;
+        long start = from;
+        for(int b = first + blocksPerPart; start < to; b = b + blocksPerPart) {
+            long end = (b > last) ? to : blockOrdinals[b];
+            list.add(new BlockSequenceDbReader<T>(this, start, end));
+            start = end;
+        }
+        return list;
+    }
+
+    /**
+     * Reads all values readable by this reader in parallel. Values are split 
+     * to given number of ranges (see split()) and each range is processed 
+     * as one task of executor. Processor is called concurrently from more 
+     * threads. Method returns when all values are processed. First failure 
+     * is rethrown.
+     * @param executor executor used for processing
+     * @param parts number of ranges
+     * @param processor processor of values
+     */
+    public void scan(ExecutorService executor, int parts, ValueProcessor<T> processor) {
+        ParallelScan.scan(dbfile, executor, split(parts), processor);
+    }
+    
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbByteArrayOutputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.compression.BlockCodec;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Writer for compressed database file. Values are stored with their length 
+ * in blocks. Each block is compressed by block codec. Position and ordinal 
+ * of first value of each block are stored in index at the end of file. Such 
+ * file can be then used by BlockSequenceDbReader.
+ * <pre>
+ * file:   [block]* [index entry]* [footer]
+ * block:  int raw length, int stored length, stored bytes 
+ *         (stored bytes are not compressed if stored length is equal to raw length)
+ * raw:    [int length, bytes]*
+ * index:  long block position, long ordinal of first value in block 
+ * footer: long count, long index position, int block size, int magic
+ * </pre>
+ * @author antons
+ */
+public class BlockSequenceDbWriter<T> extends AbstractDb implements SequenceTarget<T> {
+    public static final int MAGIC = 0x54444243;
+    public static final int FOOTER_SIZE = 8 + 8 + 4 + 4;
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    
+    protected BytesSerializer<T> serializer;
+    protected BlockCodec codec;
+    protected OutputStream os;
+    protected DataOutputStream dos;
+    protected int blockSize;
+    protected long position = 0;
+    protected long count = 0;
+    private long blockOrdinal = 0;
+    private long[] index = new long[32];
+    private int indexCount = 0;
+    private DbByteArrayOutputStream rawos;
+    private DataOutputStream rawdos;
+    private byte[] compressed = new byte[1];
+    
+    public BlockSequenceDbWriter(DbFile dbfile, BytesSerializer<T> serializer, BlockCodec codec, int blockSize) {
+        super(dbfile);
+        if(blockSize < 1) throw new TempDbException("Block size must be positive " + blockSize);
+        this.serializer = serializer;
+        this.codec = codec;
+        this.blockSize = blockSize;
+        os = dbfile.outputStream();
+        try {
+            dos = new DataOutputStream(os);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to create output stream from " + dbfile, e);
+        }
+        rawos = new DbByteArrayOutputStream();
+        rawdos = new DataOutputStream(rawos);
+    }
+
+    /**
+     * Writes last block, index and footer and closes file.
+     */
+    @Override
+    public void close() {
+        try {
+            writeBlock();
+            long indexPosition = position;
+            for(int i = 0; i < indexCount; i++) {
+                dos.writeLong(index[i]);
+            }
+            dos.writeLong(count);
+            dos.writeLong(indexPosition);
+            dos.writeInt(blockSize);
+            dos.writeInt(MAGIC);
+            dos.flush();
+            os.flush();
+            os.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close output stream from " + dbfile, e);
+        } finally {
+            codec.release();
+        }
+    }
+    
+    /**
+     * Add next value to the database
+     * @param value 
+     */
+    public synchronized void add(T value) {
+        try {
+            int start = rawos.count();
+            rawdos.writeInt(0);
+            serializer.serialize(value, rawdos);
+            int sz = rawos.count() - start - 4;
+            byte[] buff = rawos.buff();
+            buff[start] = (byte)(sz >>> 24);
+            buff[start + 1] = (byte)(sz >>> 16);
+            buff[start + 2] = (byte)(sz >>> 8);
+            buff[start + 3] = (byte)sz;
+            count++;
+            if(rawos.count() >= blockSize) writeBlock();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write to output stream from " + dbfile, e);
+        }
+    }
+
+    private void writeBlock() throws Exception {
+        int rawLength = rawos.count();
+        if(rawLength == 0) return;
+        if(indexCount + 2 > index.length) {
+            long[] newindex = new long[index.length * 2];
+            System.arraycopy(index, 0, newindex, 0, indexCount);
+            index = newindex;
+        }
+        index[indexCount++] = position;
+        index[indexCount++] = blockOrdinal;
+        if(compressed.length < rawLength) compressed = new byte[rawLength];
+        int n = codec.compress(rawos.buff(), 0, rawLength, compressed, 0, rawLength - 1);
+        dos.writeInt(rawLength);
+        if(n < 0) {
+            dos.writeInt(rawLength);
+            dos.write(rawos.buff(), 0, rawLength);
+            position = position + 8 + rawLength;
+        } else {
+            dos.writeInt(n);
+            dos.write(compressed, 0, n);
+            position = position + 8 + n;
+        }
+        rawos.reset();
+        blockOrdinal = count;
+    }
+
+    /**
+     * Number of values written to database
+     * @return count
+     */
+    public synchronized long count() { return count; }
+    
+}
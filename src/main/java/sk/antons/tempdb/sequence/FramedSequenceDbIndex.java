@@ -0,0 +1,241 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.KeyComparison;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+import sk.antons.tempdb.serialization.BytesSerializer;
+import sk.antons.tempdb.serialization.PrimitiveSerialization;
+import sk.antons.tempdb.tree.ImmutableSortedDb;
+import sk.antons.tempdb.tree.ImmutableSortedDbWriter;
+
+/**
+ * Secondary index over existing framed sequence db file. Keys are extracted
+ * from all values and stored with file positions of values to index file 
+ * (ImmutableSortedDb). Values are not copied, they are read from original 
+ * file. 
+ * <p>
+ * Index file is built (by external sort, so memory is not proportional to
+ * number of keys) only if it does not exist. Existing index file is just 
+ * opened. Number of values of indexed file is stored as tag in index file 
+ * footer. If index file is not complete (like after crash) or it was 
+ * built for different number of values it is built again. Values with 
+ * null key are not indexed.
+ * @author antons
+ */
+public class FramedSequenceDbIndex<T, K> extends AbstractDb {
+    protected FramedSequenceDbReader<T> reader;
+    protected DbFile indexfile;
+    protected ImmutableSortedDb<K, Long> index;
+    protected Comparator<K> comparator;
+    
+    /**
+     * Opens index file or creates it by reading all values from reader. 
+     * Reader is then used for reading values and it is closed by close().
+     * @param reader reader of indexed file
+     * @param extractor extractor of index key
+     * @param indexfile index file
+     * @param keyserializer serializer of keys
+     * @param keydeserializer deserializer of keys
+     * @param comparator comparator of keys (natural order is used if null)
+     */
+    public FramedSequenceDbIndex(FramedSequenceDbReader<T> reader, KeyExtractor<T, K> extractor
+            , DbFile indexfile
+            , BytesSerializer<K> keyserializer, BytesDeserializer<K> keydeserializer
+            , Comparator<K> comparator
+            ) {
+        super(reader.dbfile());
+        this.reader = reader;
+        this.indexfile = indexfile;
+        this.comparator = comparator;
+        if(indexfile.exists()) index = open(keydeserializer);
+        if(index == null) {
+            build(extractor, keyserializer, keydeserializer, comparator);
+            index = new ImmutableSortedDb<K, Long>(indexfile, keydeserializer, PrimitiveSerialization.longs(), comparator);
+        }
+    }
+    
+    /**
+     * Opens existing index file.
+     * @return index or null if index file is not valid for indexed file
+     */
+    private ImmutableSortedDb<K, Long> open(BytesDeserializer<K> keydeserializer) {
+        ImmutableSortedDb<K, Long> rv = null;
+        try {
+            rv = new ImmutableSortedDb<K, Long>(indexfile, keydeserializer, PrimitiveSerialization.longs(), comparator);
+        } catch(Exception e) {
+            // incomplete index file
+        }
+        if((rv != null) && (rv.tag() == reader.size()) && (rv.size() <= reader.size())) return rv;
+        if(rv != null) rv.close();
+        indexfile.delete();
+        return null;
+    }
+
+    private void build(final KeyExtractor<T, K> extractor
+            , BytesSerializer<K> keyserializer, BytesDeserializer<K> keydeserializer
+            , final Comparator<K> comparator
+            ) {
+        final ImmutableSortedDbWriter<K, Long> writer = new ImmutableSortedDbWriter<K, Long>(indexfile
+            , keyserializer, PrimitiveSerialization.longs(), comparator, ImmutableSortedDbWriter.DEFAULT_BLOCK_SIZE);
+        boolean done = false;
+        try {
+            reader.seek(0);
+            final long size = reader.size();
+            writer.tag(size);
+            SequenceSource<Entry<K>> source = new SequenceSource<Entry<K>>() {
+                long i = 0;
+                @Override
+                public Entry<K> next() {
+                    while(i < size) {
+                        i++;
+                        long position = reader.position();
+                        K key = extractor.key(reader.next());
+                        if(key != null) return new Entry<K>(key, position);
+                    }
+                    return null;
+                }
+            };
+            SequenceTarget<Entry<K>> target = new SequenceTarget<Entry<K>>() {
+                @Override
+                public void add(Entry<K> value) {
+                    writer.put(value.key, value.position);
+                }
+            };
+            Comparator<Entry<K>> entryComparator = new Comparator<Entry<K>>() {
+                @Override
+                public int compare(Entry<K> o1, Entry<K> o2) {
+                    return KeyComparison.compare(comparator, o1.key, o2.key);
+                }
+            };
+            EntrySerialization<K> serialization = new EntrySerialization<K>(keyserializer, keydeserializer);
+            new SequenceDbSorter<Entry<K>>(serialization, serialization, entryComparator).sort(source, target);
+            done = true;
+        } finally {
+            writer.close();
+            if(!done) indexfile.delete();
+        }
+    }
+    
+    @Override
+    public void close() {
+        try {
+            index.close();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Index file used by this index
+     * @return index file
+     */
+    public DbFile indexfile() { return indexfile; }
+    
+    /**
+     * Deletes indexed file and index file
+     */
+    @Override
+    public void delete() {
+        indexfile.delete();
+        super.delete();
+    }
+    
+    /**
+     * Reads values with given key from indexed file.
+     * @param key
+     * @return list of values
+     */
+    public synchronized List<T> get(K key) {
+        try {
+            List<T> rv = new ArrayList<T>();
+            if(key == null) return rv;
+            for(Long position : index.get(key)) {
+                rv.add(reader.read(position));
+            }
+            return rv;
+        } catch(TempDbException e) {
+            throw e;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read indexed values from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Number of indexed values
+     * @return count
+     */
+    public long size() { return index.size(); }
+    
+    /**
+     * Number of distinct keys in index. (Whole index file is scanned.)
+     * @return count
+     */
+    public synchronized long keyCount() { 
+        SequenceSource<Map.Entry<K, Long>> source = index.scan();
+        long count = 0;
+        K last = null;
+        Map.Entry<K, Long> entry = source.next();
+        while(entry != null) {
+            if((count == 0) || (KeyComparison.compare(comparator, last, entry.getKey()) != 0)) count++;
+            last = entry.getKey();
+            entry = source.next();
+        }
+        return count;
+    }
+    
+    private static class Entry<K> {
+        K key;
+        long position;
+
+        Entry(K key, long position) {
+            this.key = key;
+            this.position = position;
+        }
+    }
+    
+    private static class EntrySerialization<K> implements BytesSerializer<Entry<K>>, BytesDeserializer<Entry<K>> {
+        private BytesSerializer<K> keyserializer;
+        private BytesDeserializer<K> keydeserializer;
+
+        EntrySerialization(BytesSerializer<K> keyserializer, BytesDeserializer<K> keydeserializer) {
+            this.keyserializer = keyserializer;
+            this.keydeserializer = keydeserializer;
+        }
+        
+        @Override
+        public void serialize(Entry<K> value, DataOutputStream os) throws IOException {
+            PrimitiveSerialization.longs().writeLong(value.position, os);
+            keyserializer.serialize(value.key, os);
+        }
+
+        @Override
+        public Entry<K> deserialize(DataInputStream is) throws IOException {
+            long position = PrimitiveSerialization.longs().readLong(is);
+            return new Entry<K>(keydeserializer.deserialize(is), position);
+        }
+    }
+}
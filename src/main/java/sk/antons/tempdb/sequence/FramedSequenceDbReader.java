@@ -0,0 +1,267 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbBufferedInput;
+import sk.antons.tempdb.base.DbByteArrayInputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.DbRandomAccess;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+
+/**
+ * Reader of database file created by FramedSequenceDbWriter. Values can be 
+ * read sequentially or directly by their ordinal number. Sparse index is used 
+ * to find nearest indexed value and then only value lengths are read until
+ * requested value is reached.
+ * <p>
+ * Reader can be split to more readers with disjunct ranges of values
+ * (see {@link #split(int)}) which can be read in parallel. 
+ * @author antons
+ */
+public class FramedSequenceDbReader<T> extends AbstractDb implements RangeReader<T> {
+    protected BytesDeserializer<T> deserializer;
+    protected DbRandomAccess raf;
+    protected DbBufferedInput input;
+    protected long count;
+    protected long dataSize;
+    protected int indexStep;
+    protected long[] index;
+    protected long ordinal = 0;
+    protected long from = 0;
+    protected long to = 0;
+    private DbByteArrayInputStream is ;
+    private DataInputStream dis;
+    
+    /**
+     * Creates new database reader
+     * @param dbfile
+     * @param deserializer 
+     */
+    public FramedSequenceDbReader(DbFile dbfile, BytesDeserializer<T> deserializer) {
+        super(dbfile);
+        dbfile.checkExistence();
+        this.deserializer = deserializer;
+        raf = dbfile.randomAccess();
+        try {
+            long length = raf.length();
+            if(length < FramedSequenceDbWriter.FOOTER_SIZE) throw new TempDbException("Not a framed database file " + dbfile);
+            raf.seek(length - FramedSequenceDbWriter.FOOTER_SIZE);
+            count = raf.readLong();
+            dataSize = raf.readLong();
+            indexStep = raf.readInt();
+            int magic = raf.readInt();
+            if(magic != FramedSequenceDbWriter.MAGIC) throw new TempDbException("Not a framed database file " + dbfile);
+            int indexCount = (int)((length - FramedSequenceDbWriter.FOOTER_SIZE - dataSize) / 8);
+            index = new long[indexCount];
+            input = new DbBufferedInput(raf, 64 * 1024);
+            input.seek(dataSize);
+            for(int i = 0; i < indexCount; i++) {
+                index[i] = input.readLong();
+            }
+            input.seek(0);
+            to = count;
+        } catch(TempDbException e) {
+            close();
+            throw e;
+        } catch(Exception e) {
+            close();
+            throw new TempDbException("Unable to read index from " + dbfile, e);
+        }
+        is = new DbByteArrayInputStream(new byte[1]);
+        dis = new DataInputStream(is);
+    }
+
+    /**
+     * Creates reader of values from range &lt;from, to) using index of parent.
+     */
+    private FramedSequenceDbReader(FramedSequenceDbReader<T> parent, long from, long to) {
+        super(parent.dbfile);
+        this.deserializer = parent.deserializer;
+        this.count = parent.count;
+        this.dataSize = parent.dataSize;
+        this.indexStep = parent.indexStep;
+        this.index = parent.index;
+        this.from = from;
+        this.to = to;
+        raf = dbfile.randomAccess();
+        input = new DbBufferedInput(raf, 64 * 1024);
+        is = new DbByteArrayInputStream(new byte[1]);
+        dis = new DataInputStream(is);
+        seek(from);
+    }
+
+    @Override
+    public void close() {
+        try {
+            raf.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Number of values readable by this reader. (All values stored in 
+     * database or values of the range if reader is created by split())
+     * @return count
+     */
+    public long size() { return to - from; }
+
+    /**
+     * Ordinal number of value which will be returned by next()
+     * @return ordinal
+     */
+    public synchronized long ordinal() { return ordinal; }
+
+    /**
+     * Reads next unread value from database.
+     * @return next value or null
+     */
+    public synchronized T next() {
+        if(ordinal >= to) return null;
+        try {
+            int sz = input.readInt();
+            is.allocate(sz);
+            input.readFully(is.buff(), 0, sz);
+            is.count(sz);
+            ordinal++;
+            return deserializer.deserialize(dis);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * File position of value which will be returned by next()
+     * @return position
+     */
+    public synchronized long position() { return input.position(); }
+
+    /**
+     * Reads value stored at given file position (see position()). Reading 
+     * position is not changed.
+     * @param position file position of value
+     * @return value
+     */
+    public synchronized T read(long position) {
+        long current = input.position();
+        try {
+            input.seek(position);
+            int sz = input.readInt();
+            is.allocate(sz);
+            input.readFully(is.buff(), 0, sz);
+            is.count(sz);
+            return deserializer.deserialize(dis);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        } finally {
+            input.seek(current);
+        }
+    }
+
+    /**
+     * Moves reading position to value with given ordinal number.
+     * @param ordinal ordinal number of value (starting with 0)
+     */
+    public synchronized void seek(long ordinal) {
+        if(ordinal < 0) throw new TempDbException("Negative ordinal " + ordinal);
+        try {
+            if(ordinal >= count) {
+                input.seek(dataSize);
+                this.ordinal = count;
+                return;
+            }
+            long block = ordinal / indexStep;
+            if((ordinal < this.ordinal) || (block > this.ordinal / indexStep)) {
+                input.seek(index[(int)block]);
+                this.ordinal = block * indexStep;
+            }
+            while(this.ordinal < ordinal) {
+                int sz = input.readInt();
+                input.skip(sz);
+                this.ordinal++;
+            }
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Skips n values.
+     * @param n number of skipped values
+     */
+    public synchronized void skip(long n) {
+        seek(ordinal + n);
+    }
+    
+    /**
+     * Reads value with given ordinal number. Reading position is moved after 
+     * returned value.
+     * @param ordinal ordinal number of value (starting with 0)
+     * @return value or null if no such value exists
+     */
+    public synchronized T get(long ordinal) {
+        if((ordinal < from) || (ordinal >= to)) return null;
+        seek(ordinal);
+        return next();
+    }
+
+    /**
+     * Splits values readable by this reader to at most parts ranges. Ranges 
+     * starts at indexed values so no value must be read to find their 
+     * start. Each returned reader has its own file handle and buffers, so 
+     * they can be used from different threads. Returned readers must be 
+     * closed separately.
+     * @param parts requested number of ranges
+     * @return list of readers
+     */
+    public List<FramedSequenceDbReader<T>> split(int parts) {
+        if(parts < 1) parts = 1;
+        List<FramedSequenceDbReader<T>> list = new ArrayList<FramedSequenceDbReader<T>>();
+        long blocks = (to - from + indexStep - 1) / indexStep;
+        long blocksPerPart = (blocks + parts - 1) / parts;
+        if(blocksPerPart < 1) blocksPerPart = 1;
+        long start = from;
+        while(start < to) {
+            long end = ((start / indexStep) + blocksPerPart) * indexStep;
+            if(end > to) end = to;
+            list.add(new FramedSequenceDbReader<T>(this, start, end));
+            start = end;
+        }
+        return list;
+    }
+
+    /**
+     * Reads all values readable by this reader in parallel. Values are split 
+     * to given number of ranges (see split()) and each range is processed 
+     * as one task of executor. Processor is called concurrently from more 
+     * threads. Method returns when all values are processed. First failure 
+     * is rethrown.
+     * @param executor executor used for processing
+     * @param parts number of ranges
+     * @param processor processor of values
+     */
+    public void scan(ExecutorService executor, int parts, ValueProcessor<T> processor) {
+        ParallelScan.scan(dbfile, executor, split(parts), processor);
+    }
+    
+}
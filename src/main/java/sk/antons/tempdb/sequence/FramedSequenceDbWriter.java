@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbByteArrayOutputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Writer for framed database file. Each value is stored with its length 
+ * and position of each indexStep-th value is stored in sparse index at the 
+ * end of file. Such file can be then used by FramedSequenceDbReader.
+ * <pre>
+ * file:   [value]* [index entry]* [footer]
+ * value:  int length, bytes
+ * index:  long position of value with ordinal i*indexStep 
+ * footer: long count, long index position, int indexStep, int magic
+ * </pre>
+ * @author antons
+ */
+public class FramedSequenceDbWriter<T> extends AbstractDb implements SequenceTarget<T> {
+    public static final int MAGIC = 0x54444246;
+    public static final int FOOTER_SIZE = 8 + 8 + 4 + 4;
+    public static final int DEFAULT_INDEX_STEP = 1000;
+    
+    protected BytesSerializer<T> serializer;
+    protected OutputStream os;
+    protected DataOutputStream dos;
+    protected int indexStep;
+    protected long position = 0;
+    protected long count = 0;
+    private long[] index = new long[16];
+    private int indexCount = 0;
+    private DbByteArrayOutputStream valueos;
+    private DataOutputStream valuedos;
+    
+    public FramedSequenceDbWriter(DbFile dbfile, BytesSerializer<T> serializer, int indexStep) {
+        super(dbfile);
+        if(indexStep < 1) throw new TempDbException("Index step must be positive " + indexStep);
+        this.serializer = serializer;
+        this.indexStep = indexStep;
+        os = dbfile.outputStream();
+        try {
+            dos = new DataOutputStream(os);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to create output stream from " + dbfile, e);
+        }
+        valueos = new DbByteArrayOutputStream();
+        valuedos = new DataOutputStream(valueos);
+    }
+
+    /**
+     * Writes index and footer and closes file.
+     */
+    @Override
+    public void close() {
+        try {
+            long indexPosition = position;
+            for(int i = 0; i < indexCount; i++) {
+                dos.writeLong(index[i]);
+            }
+            dos.writeLong(count);
+            dos.writeLong(indexPosition);
+            dos.writeInt(indexStep);
+            dos.writeInt(MAGIC);
+            dos.flush();
+            os.flush();
+            os.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close output stream from " + dbfile, e);
+        }
+    }
+    
+    /**
+     * Add next value to the database
+     * @param value 
+     */
+    public synchronized void add(T value) {
+        try {
+            valueos.reset();
+            serializer.serialize(value, valuedos);
+            int sz = valueos.count();
+            if(count % indexStep == 0) {
+                if(indexCount == index.length) {
+                    long[] newindex = new long[index.length * 2];
+                    System.arraycopy(index, 0, newindex, 0, indexCount);
+                    index = newindex;
+                }
+                index[indexCount++] = position;
+            }
+            dos.writeInt(sz);
+            dos.write(valueos.buff(), 0, sz);
+            position = position + 4 + sz;
+            count++;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write to output stream from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Number of values written to database
+     * @return count
+     */
+    public synchronized long count() { return count; }
+    
+}
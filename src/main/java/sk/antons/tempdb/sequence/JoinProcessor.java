@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+/**
+ * Processor of joined values. 
+ * @author antons
+ */
+public interface JoinProcessor<L, R> {
+    
+    /**
+     * Processes one joined pair.
+     * @param left left value
+     * @param right right value (null for unmatched left value of left join)
+     * @throws Exception 
+     */
+    void process(L left, R right) throws Exception;
+}
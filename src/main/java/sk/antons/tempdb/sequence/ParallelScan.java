@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.DbFile;
+
+/**
+ * Helper class for parallel processing of split database files.
+ * @author antons
+ */
+class ParallelScan {
+
+    /**
+     * Processes each reader as one executor task and waits for all of them.
+     * Readers are closed after processing. First failure is rethrown.
+     */
+    static <T> void scan(DbFile dbfile, ExecutorService executor, List<? extends RangeReader<T>> readers, final ValueProcessor<T> processor) {
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for(final RangeReader<T> reader : readers) {
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    try {
+                        long size = reader.size();
+                        for(long i = 0; i < size; i++) {
+                            processor.process(reader.next());
+                        }
+                    } finally {
+                        reader.close();
+                    }
+                    return null;
+                }
+            }));
+        }
+        TempDbException exception = null;
+        for(Future<Object> future : futures) {
+            try {
+                future.get();
+            } catch(ExecutionException e) {
+                if(exception == null) exception = new TempDbException("Unable to process values from " + dbfile, e.getCause());
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if(exception == null) exception = new TempDbException("Processing of values from " + dbfile + " interrupted", e);
+            }
+        }
+        if(exception != null) throw exception;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.io.DataInputStream;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+
+/**
+ * Reader of database created by PartitionedSequenceDbWriter. Partitions 
+ * are handed out as separate readers, so each partition can be processed 
+ * by different thread.
+ * <pre>
+ * SequenceDbReader&lt;T&gt; partition = db.nextPartition();
+ * while(partition != null) {
+ *     // process all values of partition
+ *     partition.close();
+ *     partition = db.nextPartition();
+ * }
+ * </pre>
+ * @author antons
+ */
+public class PartitionedSequenceDbReader<T> extends AbstractDb {
+    protected BytesDeserializer<T> deserializer;
+    protected int partitions;
+    private int next = 0;
+    
+    /**
+     * Creates new database reader
+     * @param dbfile
+     * @param deserializer 
+     */
+    public PartitionedSequenceDbReader(DbFile dbfile, BytesDeserializer<T> deserializer) {
+        super(dbfile);
+        dbfile.checkExistence();
+        this.deserializer = deserializer;
+        try {
+            DataInputStream dis = new DataInputStream(dbfile.inputStream());
+            try {
+                partitions = dis.readInt();
+            } finally {
+                dis.close();
+            }
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read partition count from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Number of partitions
+     * @return count
+     */
+    public int partitions() { return partitions; }
+    
+    /**
+     * Creates reader of given partition. 
+     * @param partition partition number
+     * @return reader
+     */
+    public SequenceDbReader<T> partition(int partition) {
+        if((partition < 0) || (partition >= partitions)) throw new TempDbException("No partition " + partition + " in " + dbfile);
+        return new SequenceDbReader<T>(dbfile.part(partition), deserializer);
+    }
+    
+    /**
+     * Creates reader of next partition which was not handed out yet.
+     * @return reader or null if all partitions were handed out
+     */
+    public SequenceDbReader<T> nextPartition() {
+        int partition;
+        synchronized(this) {
+            if(next >= partitions) return null;
+            partition = next++;
+        }
+        return partition(partition);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Deletes db file and all partition files
+     */
+    @Override
+    public void delete() {
+        for(int i = 0; i < partitions; i++) {
+            dbfile.part(i).delete();
+        }
+        super.delete();
+    }
+    
+}
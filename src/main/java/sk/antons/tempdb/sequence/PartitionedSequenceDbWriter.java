@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Writer for partitioned database. Each value is written to one of partition 
+ * files according to hash of its key. So all values with same key are 
+ * stored in same partition. Partition files are parts of db file 
+ * (see DbFile.part()) and db file itself contains only number of partitions.
+ * Such database can be then used by PartitionedSequenceDbReader.
+ * @author antons
+ */
+public class PartitionedSequenceDbWriter<T> extends AbstractDb implements SequenceTarget<T> {
+    protected KeyExtractor<T, ?> extractor;
+    protected List<SequenceDbWriter<T>> writers;
+    
+    public PartitionedSequenceDbWriter(DbFile dbfile, BytesSerializer<T> serializer, KeyExtractor<T, ?> extractor, int partitions) {
+        super(dbfile);
+        if(partitions < 1) throw new TempDbException("Number of partitions must be positive " + partitions);
+        this.extractor = extractor;
+        writers = new ArrayList<SequenceDbWriter<T>>(partitions);
+        for(int i = 0; i < partitions; i++) {
+            writers.add(new SequenceDbWriter<T>(dbfile.part(i), serializer));
+        }
+    }
+
+    /**
+     * Number of partitions
+     * @return count
+     */
+    public int partitions() { return writers.size(); }
+    
+    /**
+     * Returns partition for given key
+     * @param key
+     * @param partitions number of partitions
+     * @return partition
+     */
+    public static int partition(Object key, int partitions) {
+        int h = (key == null) ? 0 : key.hashCode();
+        h = h ^ (h >>> 16);
+        return (h & 0x7fffffff) % partitions;
+    }
+    
+    @Override
+    public void close() {
+        TempDbException exception = null;
+        for(SequenceDbWriter<T> writer : writers) {
+            try {
+                writer.close();
+            } catch(TempDbException e) {
+                if(exception == null) exception = e;
+            }
+        }
+        if(exception != null) throw exception;
+        try {
+            DataOutputStream dos = new DataOutputStream(dbfile.outputStream());
+            dos.writeInt(writers.size());
+            dos.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write partition count to " + dbfile, e);
+        }
+    }
+
+    /**
+     * Deletes partition files and db file
+     */
+    @Override
+    public void delete() {
+        for(SequenceDbWriter<T> writer : writers) {
+            writer.delete();
+        }
+        super.delete();
+    }
+
+    /**
+     * Add next value to partition given by its key.
+     * @param value 
+     */
+    @Override
+    public synchronized void add(T value) {
+        writers.get(partition(extractor.key(value), writers.size())).add(value);
+    }
+    
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Priority queue type of database. Values are read in order given by comparator.
+ * At most memorySize values are held in memory heap. If heap is full its 
+ * values are sorted and stored to new run file (part of db file). Smallest 
+ * value is then taken from heap or from heads of runs. Runs are merged in 
+ * tiers: when there is MERGE_WIDTH runs on one level, their remaining values
+ * are merged to one run of next level. So each value is rewritten only 
+ * about log(n) times and number of runs grows with log(n).
+ * @author antons
+ */
+public class PriorityDb<T> extends AbstractDb implements SequenceSource<T>, SequenceTarget<T> {
+    public static final int DEFAULT_MEMORY_SIZE = 100000;
+    public static final int MERGE_WIDTH = 32;
+    
+    protected BytesSerializer<T> serializer;
+    protected BytesDeserializer<T> deserializer;
+    protected Comparator<T> comparator;
+    protected int memorySize;
+    protected PriorityQueue<T> memory;
+    protected PriorityQueue<Run> runs;
+    protected long size = 0;
+    private int nextPart = 0;
+    
+    public PriorityDb(DbFile dbfile, BytesSerializer<T> serializer, BytesDeserializer<T> deserializer, Comparator<T> comparator, int memorySize) {
+        super(dbfile);
+        if(memorySize < 1) throw new TempDbException("Memory size must be positive " + memorySize);
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.comparator = comparator;
+        this.memorySize = memorySize;
+        memory = new PriorityQueue<T>(Math.min(memorySize, 1024), comparator);
+        runs = new PriorityQueue<Run>(MERGE_WIDTH + 1, new Comparator<Run>() {
+            @Override
+            public int compare(Run o1, Run o2) {
+                return PriorityDb.this.comparator.compare(o1.head, o2.head);
+            }
+        });
+    }
+
+    /**
+     * Closes and deletes all run files.
+     */
+    @Override
+    public synchronized void close() {
+        for(Run run : runs) {
+            run.close();
+        }
+        runs.clear();
+        memory.clear();
+        size = 0;
+    }
+
+    /**
+     * Number of values in database
+     * @return count
+     */
+    public synchronized long size() { return size; }
+    
+    /**
+     * Adds value to database
+     * @param value 
+     */
+    @Override
+    public synchronized void add(T value) {
+        if(value == null) throw new TempDbException("Null value can't be stored in " + dbfile);
+        if(memory.size() >= memorySize) spill();
+        memory.add(value);
+        size++;
+    }
+
+    /**
+     * Returns smallest value without removing it.
+     * @return value or null if database is empty
+     */
+    public synchronized T peek() {
+        Run run = runs.peek();
+        T value = memory.peek();
+        if(run == null) return value;
+        if((value == null) || (comparator.compare(run.head, value) < 0)) return run.head;
+        return value;
+    }
+
+    /**
+     * Removes and returns smallest value.
+     * @return value or null if database is empty
+     */
+    public synchronized T poll() {
+        Run run = runs.peek();
+        T value = memory.peek();
+        if((run == null) || ((value != null) && (comparator.compare(value, run.head) <= 0))) {
+            if(value != null) size--;
+            return memory.poll();
+        }
+        runs.poll();
+        value = run.head;
+        if(run.advance()) runs.add(run);
+        size--;
+        return value;
+    }
+
+    /**
+     * Same as poll()
+     * @return value or null if database is empty
+     */
+    @Override
+    public T next() {
+        return poll();
+    }
+    
+    private void spill() {
+        List<T> list = new ArrayList<T>(memory);
+        memory.clear();
+        Collections.sort(list, comparator);
+        DbFile file = dbfile.part(nextPart++);
+        SequenceDbWriter<T> writer = new SequenceDbWriter<T>(file, serializer);
+        try {
+            for(T t : list) {
+                writer.add(t);
+            }
+        } finally {
+            writer.close();
+        }
+        Run run = new Run(file, 0);
+        if(run.advance()) runs.add(run);
+        for(int level = 0; merge(level); level++) { }
+    }
+
+    /**
+     * Merges runs of given level if there is MERGE_WIDTH of them.
+     * @return true if runs were merged
+     */
+    private boolean merge(int level) {
+        List<Run> group = new ArrayList<Run>();
+        for(Run run : runs) {
+            if(run.level == level) group.add(run);
+        }
+        if(group.size() < MERGE_WIDTH) return false;
+        runs.removeAll(group);
+        PriorityQueue<Run> queue = new PriorityQueue<Run>(group.size(), runs.comparator());
+        queue.addAll(group);
+        DbFile file = dbfile.part(nextPart++);
+        SequenceDbWriter<T> writer = new SequenceDbWriter<T>(file, serializer);
+        try {
+            Run run = queue.poll();
+            while(run != null) {
+                writer.add(run.head);
+                if(run.advance()) queue.add(run);
+                run = queue.poll();
+            }
+        } finally {
+            writer.close();
+        }
+        Run run = new Run(file, level + 1);
+        if(run.advance()) runs.add(run);
+        return true;
+    }
+    
+    /**
+     * Sorted run stored in file.
+     */
+    private class Run {
+        DbFile file;
+        int level;
+        SequenceDbReader<T> reader;
+        T head;
+
+        Run(DbFile file, int level) {
+            this.file = file;
+            this.level = level;
+            reader = new SequenceDbReader<T>(file, deserializer);
+        }
+
+        /**
+         * Reads next value to head. Closes run if there is no next value.
+         */
+        boolean advance() {
+            head = reader.next();
+            if(head == null) close();
+            return head != null;
+        }
+
+        void close() {
+            reader.close();
+            file.delete();
+        }
+    }
+}
@@ -16,31 +16,38 @@
 package sk.antons.tempdb.sequence;
 
 import java.io.IOException;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 import sk.antons.tempdb.TempDbException;
 import sk.antons.tempdb.base.AbstractDb;
 import sk.antons.tempdb.base.DbByteArrayInputStream;
-import sk.antons.tempdb.base.DbByteArrayOutputStream;
 import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.DbRandomAccess;
+import sk.antons.tempdb.serialization.BufferDeserializer;
+import sk.antons.tempdb.serialization.BufferSerialization;
+import sk.antons.tempdb.serialization.BufferSerializer;
 import sk.antons.tempdb.serialization.BytesDeserializer;
 import sk.antons.tempdb.serialization.BytesSerializer;
 
 /**
  * Sequence (FIFO) type of database. Data are stored and read simultaneously.
+ * Beside default reading position there can be created named cursors 
+ * (see {@link #cursor(String)}) each with its own reading position.
  * @author antons
  */
-public class SequenceDb<T> extends AbstractDb {
-    protected BytesSerializer<T> serializer;
-    protected BytesDeserializer<T> deserializer;
-    protected RandomAccessFile raf;
+public class SequenceDb<T> extends AbstractDb implements SequenceSource<T>, SequenceTarget<T> {
+    protected BufferSerializer<T> serializer;
+    protected BufferDeserializer<T> deserializer;
+    protected DbRandomAccess raf;
     protected long index = 0;
     protected long size = 0;
-    private DbByteArrayOutputStream os ;
-    private DataOutputStream dos;
+    private ByteBuffer os = ByteBuffer.allocate(1024);
     private DbByteArrayInputStream is ;
-    private DataInputStream dis;
+    private ByteBuffer dis;
+    private Map<String, SequenceDbCursor<T>> cursors = new HashMap<String, SequenceDbCursor<T>>();
+    private Window window = new Window();
+    private byte[] sizebuff = new byte[4];
     
     /**
      * Creates new database
@@ -49,10 +56,20 @@ public class SequenceDb<T> extends AbstractDb {
      * @param deserializer 
      */
     public SequenceDb(DbFile dbfile, BytesSerializer<T> serializer, BytesDeserializer<T> deserializer) {
+        this(dbfile, BufferSerialization.serializer(serializer), BufferSerialization.deserializer(deserializer));
+    }
+    
+    /**
+     * Creates new database using buffer serialization
+     * @param dbfile
+     * @param serializer 
+     * @param deserializer 
+     */
+    public SequenceDb(DbFile dbfile, BufferSerializer<T> serializer, BufferDeserializer<T> deserializer) {
         super(dbfile);
         this.serializer = serializer;
         this.deserializer = deserializer;
-        raf = dbfile.randomAccessFile();
+        raf = dbfile.randomAccess();
         if(dbfile.exists()) {
             try {
                 this.size = raf.length();
@@ -61,19 +78,8 @@ public class SequenceDb<T> extends AbstractDb {
             }
         }
         
-        os = new DbByteArrayOutputStream();
-        try {
-            dos = new DataOutputStream(os);
-        } catch(Exception e) {
-            throw new TempDbException("Unable to create temporary output stream from " + dbfile, e);
-        }
-
         is = new DbByteArrayInputStream(new byte[1]);
-        try {
-            dis = new DataInputStream(is);
-        } catch(Exception e) {
-            throw new TempDbException("Unable to create temporary input stream from " + dbfile, e);
-        }
+        dis = ByteBuffer.wrap(is.buff());
     }
 
     @Override
@@ -91,18 +97,35 @@ public class SequenceDb<T> extends AbstractDb {
      */
     public synchronized void add(T value) {
         try {
-            os.reset();
-            serializer.serialize(value, dos);
-            raf.seek(size);
-            int sz = os.size();
-            raf.writeInt(sz);
-            raf.write(os.buff(), 0, sz);
-            size = size + sz + 4;
+            os = BufferSerialization.serialize(serializer, value, os, 4);
+            write();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write to random access file from " + dbfile, e);
+        }
+    }
+    
+    /**
+     * Add already serialized value to end position. Bytes must be in 
+     * format produced by serializer.
+     * @param value serialized value (remaining bytes are used)
+     */
+    public synchronized void addBytes(ByteBuffer value) {
+        try {
+            os = BufferSerialization.copy(value, os, 4);
+            write();
         } catch(Exception e) {
             throw new TempDbException("Unable to write to random access file from " + dbfile, e);
         }
     }
     
+    private void write() throws IOException {
+        int sz = os.position() - 4;
+        os.putInt(0, sz);
+        raf.seek(size);
+        raf.write(os.array(), 0, sz + 4);
+        size = size + sz + 4;
+    }
+    
     /**
      * Reads next value from first unread position
      * @return value or null if no value exists
@@ -110,16 +133,139 @@ public class SequenceDb<T> extends AbstractDb {
     public synchronized T next() {
         if(index >= size) return null;
         try {
-            raf.seek(index);
-            int sz = raf.readInt();
-            is.allocate(sz);
-            int n = raf.read(is.buff(), 0, sz);
-            is.count(n);
-            index = index + n + 4;
+            index = load(window, index);
             T rv = deserializer.deserialize(dis);
             return rv;
         } catch(Exception e) {
             throw new TempDbException("Unable to read random access file from " + dbfile, e);
         }
     }
+
+    /**
+     * Reads next value from first unread position. If deserializer is 
+     * ReusingBufferDeserializer value is read to given instance.
+     * @param reuse instance to be reused (can be null)
+     * @return value or null if no value exists
+     */
+    public synchronized T next(T reuse) {
+        if(index >= size) return null;
+        try {
+            index = load(window, index);
+            return BufferSerialization.deserialize(deserializer, dis, reuse);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Reads next serialized value from first unread position. Returned 
+     * buffer is read only view of internal buffer and it is valid only 
+     * until next read from database.
+     * @return serialized value or null if no value exists
+     */
+    public synchronized ByteBuffer nextBytes() {
+        if(index >= size) return null;
+        try {
+            index = load(window, index);
+            return dis.asReadOnlyBuffer();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Returns named cursor. Cursor has its own reading position, which is 
+     * independent from default position used by next() and from other cursors. 
+     * New cursor starts from first value stored in database.
+     * @param name name of cursor
+     * @return cursor
+     */
+    public synchronized SequenceDbCursor<T> cursor(String name) {
+        SequenceDbCursor<T> cursor = cursors.get(name);
+        if(cursor == null) {
+            cursor = new SequenceDbCursor<T>(this, name);
+            cursors.put(name, cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * Removes named cursor from database.
+     * @param name name of cursor
+     */
+    public synchronized void removeCursor(String name) {
+        cursors.remove(name);
+    }
+
+    synchronized T next(SequenceDbCursor<T> cursor, T reuse) {
+        if(cursor.position >= size) return null;
+        try {
+            cursor.position = load(cursor.window, cursor.position);
+            T rv = BufferSerialization.deserialize(deserializer, dis, reuse);
+            return rv;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    synchronized ByteBuffer nextBytes(SequenceDbCursor<T> cursor) {
+        if(cursor.position >= size) return null;
+        try {
+            cursor.position = load(cursor.window, cursor.position);
+            return dis.asReadOnlyBuffer();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Loads value data from position to input buffer.
+     * @param window read ahead window of reading position
+     * @param position position of value
+     * @return position of next value
+     */
+    private long load(Window window, long position) throws IOException {
+        read(window, position, sizebuff, 0, 4);
+        int sz = ((sizebuff[0] & 0xff) << 24) | ((sizebuff[1] & 0xff) << 16) 
+            | ((sizebuff[2] & 0xff) << 8) | (sizebuff[3] & 0xff);
+        is.allocate(sz);
+        read(window, position + 4, is.buff(), 0, sz);
+        is.count(sz);
+        if(dis.array() != is.buff()) dis = ByteBuffer.wrap(is.buff());
+        dis.clear();
+        dis.limit(sz);
+        return position + 4 + sz;
+    }
+
+    /**
+     * Reads data from file using read ahead window of reading position.
+     * (File is only appended so window content is never changed.)
+     */
+    private void read(Window window, long position, byte[] buff, int offset, int length) throws IOException {
+        if(length > Window.SIZE) {
+            raf.seek(position);
+            raf.readFully(buff, offset, length);
+            return;
+        }
+        if((window.data == null) || (position < window.start) || (position + length > window.start + window.count)) {
+            if(window.data == null) window.data = new byte[Window.SIZE];
+            int n = (int)Math.min(Window.SIZE, size - position);
+            raf.seek(position);
+            raf.readFully(window.data, 0, n);
+            window.start = position;
+            window.count = n;
+        }
+        System.arraycopy(window.data, (int)(position - window.start), buff, offset, length);
+    }
+    
+    /**
+     * Read ahead window. Default position and each cursor have their own 
+     * window, so distant reading positions don't evict each other's data.
+     */
+    static class Window {
+        static final int SIZE = 64 * 1024;
+        private byte[] data;
+        private long start = 0;
+        private int count = 0;
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Named reading position over SequenceDb. Each cursor reads all values 
+ * stored in database independently from other cursors, so data stored 
+ * once can be processed by more consumers.
+ * @author antons
+ */
+public class SequenceDbCursor<T> implements SequenceSource<T> {
+    private SequenceDb<T> db;
+    private String name;
+    long position = 0;
+    final SequenceDb.Window window = new SequenceDb.Window();
+
+    SequenceDbCursor(SequenceDb<T> db, String name) {
+        this.db = db;
+        this.name = name;
+    }
+
+    /**
+     * Name of cursor
+     * @return name
+     */
+    public String name() { return name; }
+
+    /**
+     * Reads next value from cursor position
+     * @return value or null if no value exists
+     */
+    public T next() {
+        return db.next(this, null);
+    }
+
+    /**
+     * Reads next value from cursor position. If deserializer of database 
+     * supports it value is read to given instance.
+     * @param reuse instance to be reused (can be null)
+     * @return value or null if no value exists
+     */
+    public T next(T reuse) {
+        return db.next(this, reuse);
+    }
+
+    /**
+     * Reads next serialized value from cursor position. Returned buffer is 
+     * valid only until next read from database.
+     * @return serialized value or null if no value exists
+     */
+    public ByteBuffer nextBytes() {
+        return db.nextBytes(this);
+    }
+
+    @Override
+    public String toString() {
+        return "SequenceDbCursor{" + name + '}';
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Removes values with duplicate keys. Values are hash partitioned by key to
+ * temporary partitioned db and each partition is then deduplicated in memory.
+ * So only keys (or values for keep last) of one partition are held in memory.
+ * Partition with more than memorySize values is partitioned again (with 
+ * different hash) up to MAX_LEVEL times. Values are written to target 
+ * ordered by partitions and then by their order in source.
+ * @author antons
+ */
+public class SequenceDbDistinct<T, K> {
+    private BytesSerializer<T> serializer;
+    private BytesDeserializer<T> deserializer;
+    private KeyExtractor<T, K> extractor;
+    public static final int MAX_LEVEL = 4;
+    
+    private int partitions = 16;
+    private int memorySize = PriorityDb.DEFAULT_MEMORY_SIZE;
+    private boolean keepLast = false;
+    
+    public SequenceDbDistinct(BytesSerializer<T> serializer, BytesDeserializer<T> deserializer, KeyExtractor<T, K> extractor) {
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.extractor = extractor;
+    }
+
+    /**
+     * Sets number of partitions. (default 16)
+     * @param partitions
+     * @return this
+     */
+    public SequenceDbDistinct<T, K> partitions(int partitions) {
+        if(partitions < 1) throw new TempDbException("Number of partitions must be positive " + partitions);
+        this.partitions = partitions;
+        return this;
+    }
+
+    /**
+     * Sets max number of values of partition deduplicated in memory. Larger
+     * partitions are partitioned again. (default 100000)
+     * @param memorySize
+     * @return this
+     */
+    public SequenceDbDistinct<T, K> memorySize(int memorySize) {
+        if(memorySize < 1) throw new TempDbException("Memory size must be positive " + memorySize);
+        this.memorySize = memorySize;
+        return this;
+    }
+
+    /**
+     * If true last value with same key is written (upsert semantic) 
+     * otherwise first one is written. (default false)
+     * @param keepLast
+     * @return this
+     */
+    public SequenceDbDistinct<T, K> keepLast(boolean keepLast) {
+        this.keepLast = keepLast;
+        return this;
+    }
+
+    /**
+     * Reads all values from source and writes values with distinct keys 
+     * to target. Target is not closed.
+     * @param source source of values
+     * @param target target of distinct values
+     * @return counts of read and written values
+     */
+    public Result distinct(SequenceSource<T> source, SequenceTarget<T> target) {
+        Result result = new Result();
+        result.written = distinct(source, target, 0, result);
+        return result;
+    }
+
+    private long distinct(SequenceSource<T> source, SequenceTarget<T> target, int level, Result result) {
+        KeyExtractor<T, ?> partitioner = partitioner(level);
+        long[] counts = new long[partitions];
+        long written = 0;
+        DbFile file = DbFile.temporary("tempdb-distinct", ".db", true);
+        PartitionedSequenceDbWriter<T> writer = new PartitionedSequenceDbWriter<T>(file, serializer, partitioner, partitions);
+        try {
+            try {
+                for(T value = source.next(); value != null; value = source.next()) {
+                    writer.add(value);
+                    counts[PartitionedSequenceDbWriter.partition(partitioner.key(value), partitions)]++;
+                    if(level == 0) result.read++;
+                }
+            } finally {
+                writer.close();
+            }
+            PartitionedSequenceDbReader<T> reader = new PartitionedSequenceDbReader<T>(file, deserializer);
+            for(int i = 0; i < partitions; i++) {
+                if(counts[i] == 0) continue;
+                SequenceDbReader<T> partition = reader.partition(i);
+                try {
+                    if((counts[i] > memorySize) && (level < MAX_LEVEL)) written += distinct(partition, target, level + 1, result);
+                    else if(keepLast) written += keepLast(partition, target);
+                    else written += keepFirst(partition, target);
+                } finally {
+                    partition.close();
+                }
+            }
+        } finally {
+            writer.delete();
+        }
+        return written;
+    }
+    
+    /**
+     * Extractor of partitioning key. Key itself is used on first level and 
+     * key hash mixed with level on next levels, so values of one partition 
+     * are spread to all sub partitions. (Same keys stay together.)
+     */
+    private KeyExtractor<T, ?> partitioner(final int level) {
+        if(level == 0) return extractor;
+        return new KeyExtractor<T, Integer>() {
+            @Override
+            public Integer key(T value) {
+                K key = extractor.key(value);
+                int h = (key == null) ? 0 : key.hashCode();
+                h = (h ^ (level * 0x9e3779b9)) * 0x85ebca6b;
+                return h ^ (h >>> 13);
+            }
+        };
+    }
+
+    private long keepFirst(SequenceDbReader<T> partition, SequenceTarget<T> target) {
+        long count = 0;
+        Set<K> keys = new HashSet<K>();
+        for(T value = partition.next(); value != null; value = partition.next()) {
+            if(keys.add(extractor.key(value))) {
+                target.add(value);
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private long keepLast(SequenceDbReader<T> partition, SequenceTarget<T> target) {
+        Map<K, T> values = new LinkedHashMap<K, T>();
+        for(T value = partition.next(); value != null; value = partition.next()) {
+            values.put(extractor.key(value), value);
+        }
+        for(T value : values.values()) {
+            target.add(value);
+        }
+        return values.size();
+    }
+
+    /**
+     * Counts of distinct operation.
+     */
+    public static class Result {
+        private long read = 0;
+        private long written = 0;
+
+        /**
+         * Number of values read from source
+         * @return count
+         */
+        public long read() { return read; }
+        
+        /**
+         * Number of values written to target
+         * @return count
+         */
+        public long written() { return written; }
+        
+        /**
+         * Number of removed duplicates
+         * @return count
+         */
+        public long duplicates() { return read - written; }
+
+        @Override
+        public String toString() {
+            return "Result{" + "read=" + read + ", written=" + written + '}';
+        }
+    }
+}
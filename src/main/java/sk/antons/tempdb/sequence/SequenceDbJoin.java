@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.KeyComparison;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Sort merge join of two sources sorted by key. Both sources are read only 
+ * once and sequentially. Right values with same key are buffered in memory. 
+ * If there is more than bufferSize (default 10000) such values, they are 
+ * stored in temporary file using serializer of right values. If serializer 
+ * is not defined, such join fails, so memory used by join is always bounded.
+ * <pre>
+ * new SequenceDbJoin&lt;Order, Person, String&gt;(orderKey, personKey, null, personSerializer, personDeserializer)
+ *     .inner(orders, persons, processor);
+ * </pre>
+ * @author antons
+ */
+public class SequenceDbJoin<L, R, K> {
+    private KeyExtractor<L, K> leftKey;
+    private KeyExtractor<R, K> rightKey;
+    private Comparator<K> comparator;
+    private BytesSerializer<R> serializer;
+    private BytesDeserializer<R> deserializer;
+    public static final int DEFAULT_BUFFER_SIZE = 10000;
+    
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Creates join without spilling. Join fails if there is more than 
+     * bufferSize right values with same key.
+     * @param leftKey key of left values
+     * @param rightKey key of right values
+     * @param comparator comparator of keys (natural order is used if null)
+     */
+    public SequenceDbJoin(KeyExtractor<L, K> leftKey, KeyExtractor<R, K> rightKey, Comparator<K> comparator) {
+        this.leftKey = leftKey;
+        this.rightKey = rightKey;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Creates join with spilling of right values with same key to 
+     * temporary file.
+     * @param leftKey key of left values
+     * @param rightKey key of right values
+     * @param comparator comparator of keys (natural order is used if null)
+     * @param serializer serializer of right values
+     * @param deserializer deserializer of right values
+     */
+    public SequenceDbJoin(KeyExtractor<L, K> leftKey, KeyExtractor<R, K> rightKey, Comparator<K> comparator
+            , BytesSerializer<R> serializer, BytesDeserializer<R> deserializer
+            ) {
+        this(leftKey, rightKey, comparator);
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+    }
+
+    /**
+     * Right values with same key over bufferSize are stored in temporary file.
+     * @param serializer serializer of right values
+     * @param deserializer deserializer of right values
+     * @param bufferSize number of right values held in memory
+     * @return this
+     */
+    public SequenceDbJoin<L, R, K> spill(BytesSerializer<R> serializer, BytesDeserializer<R> deserializer, int bufferSize) {
+        if(bufferSize < 1) throw new TempDbException("Buffer size must be positive " + bufferSize);
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * Inner join. Each pair of left and right value with same key is processed.
+     * @param left source of left values sorted by key
+     * @param right source of right values sorted by key
+     * @param processor processor of pairs
+     * @return number of processed pairs
+     */
+    public long inner(SequenceSource<L> left, SequenceSource<R> right, JoinProcessor<L, R> processor) {
+        return join(left, right, processor, false);
+    }
+    
+    /**
+     * Left join. Each pair of left and right value with same key is processed.
+     * Left values without right value are processed with null.
+     * @param left source of left values sorted by key
+     * @param right source of right values sorted by key
+     * @param processor processor of pairs
+     * @return number of processed pairs
+     */
+    public long left(SequenceSource<L> left, SequenceSource<R> right, JoinProcessor<L, R> processor) {
+        return join(left, right, processor, true);
+    }
+
+    private int compare(K key1, K key2) {
+        return KeyComparison.compare(comparator, key1, key2);
+    }
+    
+    private long join(SequenceSource<L> left, SequenceSource<R> right, JoinProcessor<L, R> processor, boolean leftJoin) {
+        Group group = new Group();
+        long count = 0;
+        try {
+            L l = left.next();
+            R r = right.next();
+            K rkey = (r == null) ? null : rightKey.key(r);
+            while(l != null) {
+                K key = leftKey.key(l);
+                while((r != null) && (compare(rkey, key) < 0)) {
+                    r = right.next();
+                    rkey = (r == null) ? null : rightKey.key(r);
+                }
+                if((r == null) || (compare(rkey, key) > 0)) {
+                    if(leftJoin) {
+                        processor.process(l, null);
+                        count++;
+                    }
+                    l = left.next();
+                    continue;
+                }
+                group.clear();
+                while((r != null) && (compare(rkey, key) == 0)) {
+                    group.add(r);
+                    r = right.next();
+                    rkey = (r == null) ? null : rightKey.key(r);
+                }
+                group.finish();
+                while((l != null) && (compare(leftKey.key(l), key) == 0)) {
+                    Group.Values values = group.values();
+                    try {
+                        for(R value = values.next(); value != null; value = values.next()) {
+                            processor.process(l, value);
+                            count++;
+                        }
+                    } finally {
+                        values.close();
+                    }
+                    l = left.next();
+                }
+            }
+            return count;
+        } catch(TempDbException e) {
+            throw e;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to join values", e);
+        } finally {
+            group.clear();
+        }
+    }
+
+    /**
+     * Right values with same key.
+     */
+    private class Group {
+        private List<R> list = new ArrayList<R>();
+        private DbFile file;
+        private SequenceDbWriter<R> writer;
+
+        void add(R value) {
+            if(list.size() < bufferSize) {
+                list.add(value);
+                return;
+            }
+            if(writer == null) {
+                if(serializer == null) throw new TempDbException("More than " + bufferSize + " right values with same key and no serializer for spilling defined");
+                file = DbFile.temporary("tempdb-join", ".db", true);
+                writer = new SequenceDbWriter<R>(file, serializer);
+            }
+            writer.add(value);
+        }
+
+        void finish() {
+            if(writer != null) writer.close();
+            writer = null;
+        }
+
+        void clear() {
+            list.clear();
+            finish();
+            if(file != null) file.delete();
+            file = null;
+        }
+        
+        Values values() {
+            return new Values((file == null) ? null : new SequenceDbReader<R>(file, deserializer));
+        }
+        
+        /**
+         * Values of group read from memory and then from temporary file.
+         */
+        private class Values implements SequenceSource<R> {
+            private int index = 0;
+            private SequenceDbReader<R> reader;
+
+            Values(SequenceDbReader<R> reader) {
+                this.reader = reader;
+            }
+            
+            @Override
+            public R next() {
+                if(index < list.size()) return list.get(index++);
+                if(reader == null) return null;
+                return reader.next();
+            }
+            
+            void close() {
+                if(reader != null) reader.close();
+            }
+        }
+    }
+}
@@ -22,12 +22,13 @@ import sk.antons.tempdb.TempDbException;
 import sk.antons.tempdb.base.AbstractDb;
 import sk.antons.tempdb.base.DbFile;
 import sk.antons.tempdb.serialization.BytesDeserializer;
+import sk.antons.tempdb.serialization.ReusingBytesDeserializer;
 
 /**
  * Reader of database file created by SequenceDbWriter.
  * @author antons
  */
-public class SequenceDbReader<T> extends AbstractDb {
+public class SequenceDbReader<T> extends AbstractDb implements SequenceSource<T> {
     protected BytesDeserializer<T> deserializer;
     protected InputStream is;
     protected DataInputStream dis;
@@ -75,4 +76,21 @@ public class SequenceDbReader<T> extends AbstractDb {
         }
     }
     
+    /**
+     * Reads next unread value from database. If deserializer is 
+     * ReusingBytesDeserializer value is read to given instance.
+     * @param reuse instance to be reused (can be null)
+     * @return next value or null
+     */
+    public synchronized T next(T reuse) {
+        if((reuse == null) || !(deserializer instanceof ReusingBytesDeserializer)) return next();
+        try {
+            return ((ReusingBytesDeserializer<T>)deserializer).deserialize(dis, reuse);
+        } catch(EOFException e) {
+            return null;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read input stream from " + dbfile, e);
+        }
+    }
+    
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * External merge sort of values. Values are read to memory in runs of 
+ * runSize values. Each run is sorted and stored to temporary file. Runs 
+ * are then merged (at most mergeWidth runs at once) to target. If all values 
+ * fits to one run no temporary file is used. 
+ * <p>
+ * If executor is defined runs are sorted and stored in executor while 
+ * next run is read. (At most parallelism + 1 runs are held in memory:
+ * parallelism runs being sorted and stored plus the run being read.)
+ * Sort is stable.
+ * @author antons
+ */
+public class SequenceDbSorter<T> {
+    public static final int DEFAULT_RUN_SIZE = 100000;
+    public static final int DEFAULT_MERGE_WIDTH = 64;
+    
+    private BytesSerializer<T> serializer;
+    private BytesDeserializer<T> deserializer;
+    private Comparator<T> comparator;
+    private int runSize = DEFAULT_RUN_SIZE;
+    private int mergeWidth = DEFAULT_MERGE_WIDTH;
+    private ExecutorService executor;
+    private int parallelism = 1;
+    
+    public SequenceDbSorter(BytesSerializer<T> serializer, BytesDeserializer<T> deserializer, Comparator<T> comparator) {
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Sets number of values sorted in memory at once. (default 100000)
+     * @param runSize
+     * @return this
+     */
+    public SequenceDbSorter<T> runSize(int runSize) {
+        if(runSize < 1) throw new TempDbException("Run size must be positive " + runSize);
+        this.runSize = runSize;
+        return this;
+    }
+    
+    /**
+     * Sets number of runs merged at once. (default 64)
+     * @param mergeWidth
+     * @return this
+     */
+    public SequenceDbSorter<T> mergeWidth(int mergeWidth) {
+        if(mergeWidth < 2) throw new TempDbException("Merge width must be at least 2 " + mergeWidth);
+        this.mergeWidth = mergeWidth;
+        return this;
+    }
+    
+    /**
+     * Sets executor for sorting of runs. 
+     * @param executor executor 
+     * @param parallelism max number of runs sorted at once
+     * @return this
+     */
+    public SequenceDbSorter<T> executor(ExecutorService executor, int parallelism) {
+        if(parallelism < 1) throw new TempDbException("Parallelism must be positive " + parallelism);
+        this.executor = executor;
+        this.parallelism = parallelism;
+        return this;
+    }
+    
+    /**
+     * Sorts all values from source and writes them to target. 
+     * Target is not closed.
+     * @param source source of values
+     * @param target target of sorted values
+     * @return number of sorted values
+     */
+    public long sort(SequenceSource<T> source, SequenceTarget<T> target) {
+        List<DbFile> files = new ArrayList<DbFile>();
+        List<DbFile> runs = new ArrayList<DbFile>();
+        LinkedList<Future<DbFile>> pending = new LinkedList<Future<DbFile>>();
+        try {
+            long count = 0;
+            List<T> run = new ArrayList<T>();
+            T value = source.next();
+            while(value != null) {
+                if(run.size() >= runSize) {
+                    spill(run, runs, pending);
+                    run = new ArrayList<T>();
+                }
+                run.add(value);
+                count++;
+                value = source.next();
+            }
+            if(runs.isEmpty() && pending.isEmpty()) {
+                Collections.sort(run, comparator);
+                for(T t : run) {
+                    target.add(t);
+                }
+                return count;
+            }
+            spill(run, runs, pending);
+            while(!pending.isEmpty()) {
+                runs.add(get(pending.removeFirst()));
+            }
+            files.addAll(runs);
+            while(runs.size() > mergeWidth) {
+                List<DbFile> merged = new ArrayList<DbFile>();
+                for(int i = 0; i < runs.size(); i = i + mergeWidth) {
+                    List<DbFile> group = runs.subList(i, Math.min(i + mergeWidth, runs.size()));
+                    if(group.size() == 1) {
+                        merged.add(group.get(0));
+                        continue;
+                    }
+                    DbFile file = DbFile.temporary("tempdb-sort", ".run", true);
+                    files.add(file);
+                    SequenceDbWriter<T> writer = new SequenceDbWriter<T>(file, serializer);
+                    try {
+                        merge(group, writer);
+                    } finally {
+                        writer.close();
+                    }
+                    for(DbFile f : group) {
+                        f.delete();
+                    }
+                    merged.add(file);
+                }
+                runs = merged;
+            }
+            merge(runs, target);
+            return count;
+        } finally {
+            for(Future<DbFile> future : pending) {
+                try {
+                    files.add(future.get());
+                } catch(Exception e) {
+                }
+            }
+            files.addAll(runs);
+            for(DbFile file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private void spill(final List<T> run, List<DbFile> runs, LinkedList<Future<DbFile>> pending) {
+        if(executor == null) {
+            runs.add(write(run));
+            return;
+        }
+        while(pending.size() >= parallelism) {
+            runs.add(get(pending.removeFirst()));
+        }
+        pending.add(executor.submit(new Callable<DbFile>() {
+            @Override
+            public DbFile call() throws Exception {
+                return write(run);
+            }
+        }));
+    }
+    
+    private DbFile get(Future<DbFile> future) {
+        try {
+            return future.get();
+        } catch(ExecutionException e) {
+            throw new TempDbException("Unable to sort values", e.getCause());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TempDbException("Sorting of values interrupted", e);
+        }
+    }
+
+    private DbFile write(List<T> run) {
+        Collections.sort(run, comparator);
+        DbFile file = DbFile.temporary("tempdb-sort", ".run", true);
+        SequenceDbWriter<T> writer = new SequenceDbWriter<T>(file, serializer);
+        try {
+            for(T t : run) {
+                writer.add(t);
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+    
+    private void merge(List<DbFile> runs, SequenceTarget<T> target) {
+        List<SequenceDbReader<T>> readers = new ArrayList<SequenceDbReader<T>>();
+        try {
+            PriorityQueue<Head<T>> heap = new PriorityQueue<Head<T>>(runs.size() + 1, new HeadComparator<T>(comparator));
+            for(int i = 0; i < runs.size(); i++) {
+                SequenceDbReader<T> reader = new SequenceDbReader<T>(runs.get(i), deserializer);
+                readers.add(reader);
+                T value = reader.next();
+                if(value != null) heap.add(new Head<T>(value, i, reader));
+            }
+            while(!heap.isEmpty()) {
+                Head<T> head = heap.poll();
+                target.add(head.value);
+                head.value = head.reader.next();
+                if(head.value != null) heap.add(head);
+            }
+        } finally {
+            for(SequenceDbReader<T> reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static class Head<T> {
+        T value;
+        int run;
+        SequenceSource<T> reader;
+
+        Head(T value, int run, SequenceSource<T> reader) {
+            this.value = value;
+            this.run = run;
+            this.reader = reader;
+        }
+    }
+    
+    private static class HeadComparator<T> implements Comparator<Head<T>> {
+        private Comparator<T> comparator;
+
+        HeadComparator(Comparator<T> comparator) {
+            this.comparator = comparator;
+        }
+        
+        @Override
+        public int compare(Head<T> o1, Head<T> o2) {
+            int rv = comparator.compare(o1.value, o2.value);
+            if(rv != 0) return rv;
+            return o1.run - o2.run;
+        }
+    }
+}
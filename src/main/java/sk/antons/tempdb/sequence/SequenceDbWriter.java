@@ -15,8 +15,16 @@
  */
 package sk.antons.tempdb.sequence;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import sk.antons.tempdb.TempDbException;
 import sk.antons.tempdb.base.AbstractDb;
 import sk.antons.tempdb.base.DbFile;
@@ -27,15 +35,21 @@ import sk.antons.tempdb.serialization.BytesSerializer;
  * Such file can be then used by SequenceDbReader.
  * @author antons
  */
-public class SequenceDbWriter<T> extends AbstractDb {
+public class SequenceDbWriter<T> extends AbstractDb implements SequenceTarget<T> {
     protected BytesSerializer<T> serializer;
+    protected FileOutputStream fos;
     protected OutputStream os;
     protected DataOutputStream dos;
     
     public SequenceDbWriter(DbFile dbfile, BytesSerializer<T> serializer) {
         super(dbfile);
         this.serializer = serializer;
-        os = dbfile.outputStream();
+        if(dbfile.isShared()) {
+            os = dbfile.outputStream();
+        } else {
+            fos = dbfile.fileOutputStream();
+            os = new BufferedOutputStream(fos, 20000);
+        }
         try {
             dos = new DataOutputStream(os);
         } catch(Exception e) {
@@ -54,6 +68,17 @@ public class SequenceDbWriter<T> extends AbstractDb {
         }
     }
     
+    /**
+     * Flushes written values to file
+     */
+    public synchronized void flush() {
+        try {
+            dos.flush();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to flush output stream from " + dbfile, e);
+        }
+    }
+    
     /**
      * Add next value to the database
      * @param value 
@@ -66,4 +91,105 @@ public class SequenceDbWriter<T> extends AbstractDb {
         }
     }
     
+    /**
+     * Appends content of given sequence files to this file. Values added 
+     * so far are flushed first and bytes are copied by file channels 
+     * without deserialization. Files must be created by SequenceDbWriter 
+     * with same serializer. (Memory, hybrid and mapped db files are copied by streams.)
+     * Append fails if file channel does not copy whole file.
+     * @param dbfiles files to be appended
+     */
+    public synchronized void appendFrom(DbFile... dbfiles) {
+        if(dbfiles == null) return;
+        flush();
+        for(DbFile file : dbfiles) {
+            if((fos == null) || file.isShared()) {
+                InputStream is = file.inputStream();
+                try {
+                    byte[] buff = new byte[20000];
+                    int n;
+                    while((n = is.read(buff)) > -1) dos.write(buff, 0, n);
+                    dos.flush();
+                } catch(Exception e) {
+                    throw new TempDbException("Unable to append " + file + " to " + dbfile, e);
+                } finally {
+                    try { is.close(); } catch(Exception e) { }
+                }
+                continue;
+            }
+            FileChannel target = fos.getChannel();
+            FileInputStream is = file.fileInputStream();
+            try {
+                long size = is.getChannel().size();
+                long copied = transfer(is.getChannel(), target);
+                if(copied < size) throw new TempDbException("Only " + copied + " of " + size + " bytes appended from " + file + " to " + dbfile);
+            } catch(TempDbException e) {
+                throw e;
+            } catch(Exception e) {
+                throw new TempDbException("Unable to append " + file + " to " + dbfile, e);
+            } finally {
+                try { is.close(); } catch(Exception e) { }
+            }
+        }
+    }
+    
+    /**
+     * Copies bytes from source channel to target until end of source or 
+     * until target does not accept more bytes (non blocking channel). 
+     * Caller decides if short copy is an error.
+     * @return number of copied bytes
+     */
+    private static long transfer(FileChannel source, WritableByteChannel target) throws IOException {
+        long size = source.size();
+        long position = 0;
+        while(position < size) {
+            long n = source.transferTo(position, size - position, target);
+            if(n <= 0) break;
+            position += n;
+        }
+        return position;
+    }
+    
+    /**
+     * Copies content of this file to given channel. Values added so far 
+     * are flushed first and bytes are copied by file channel without 
+     * deserialization. Channel is not closed. Copying stops if channel 
+     * does not accept more bytes (non blocking channel), so returned 
+     * number can be less than file size.
+     * @param channel target channel
+     * @return number of copied bytes
+     */
+    public synchronized long exportTo(WritableByteChannel channel) {
+        flush();
+        if(dbfile.isShared()) {
+            InputStream is = dbfile.inputStream();
+            try {
+                byte[] buff = new byte[20000];
+                long size = 0;
+                int n;
+                while((n = is.read(buff)) > -1) {
+                    ByteBuffer bb = ByteBuffer.wrap(buff, 0, n);
+                    while(bb.hasRemaining()) {
+                        int w = channel.write(bb);
+                        size = size + w;
+                        if(w == 0) return size;
+                    }
+                }
+                return size;
+            } catch(Exception e) {
+                throw new TempDbException("Unable to export " + dbfile, e);
+            } finally {
+                try { is.close(); } catch(Exception e) { }
+            }
+        }
+        FileInputStream is = dbfile.fileInputStream();
+        try {
+            return transfer(is.getChannel(), channel);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to export " + dbfile, e);
+        } finally {
+            try { is.close(); } catch(Exception e) { }
+        }
+    }
+    
 }
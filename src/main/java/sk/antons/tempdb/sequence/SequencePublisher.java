@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import sk.antons.tempdb.TempDbException;
+
+/**
+ * Publisher of values from sequence source (like SequenceDbReader) with 
+ * java.util.concurrent.Flow like backpressure. Values are read in batches 
+ * on given executor only when subscriber requests them. Batch is never 
+ * greater than current demand so slow subscriber bounds memory. Source is 
+ * never read beyond demand, so if source ends exactly when demand is 
+ * satisfied, onComplete() is signalled after next request.
+ * 
+ * Values of source can be published only once, so only one subscriber 
+ * is accepted. Source is not closed by publisher. It can be closed after 
+ * onComplete(), onError() or cancel().
+ * @author antons
+ */
+public class SequencePublisher<T> {
+    private SequenceSource<T> source;
+    private Executor executor;
+    private int batchSize;
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    /**
+     * Creates new publisher.
+     * @param source source of values
+     * @param executor executor used for reading and publishing values
+     * @param batchSize max number of values read in one batch
+     */
+    public SequencePublisher(SequenceSource<T> source, Executor executor, int batchSize) {
+        if(source == null) throw new TempDbException("No source defined for publisher");
+        if(executor == null) throw new TempDbException("No executor defined for publisher");
+        if(batchSize < 1) throw new TempDbException("Batch size must be positive " + batchSize);
+        this.source = source;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Subscribes subscriber. Only first subscriber is accepted, others 
+     * get onError().
+     * @param subscriber 
+     */
+    public void subscribe(SequenceSubscriber<? super T> subscriber) {
+        if(subscriber == null) throw new NullPointerException("Null subscriber");
+        if(!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new SequenceSubscription() {
+                @Override
+                public void request(long n) { }
+                @Override
+                public void cancel() { }
+            });
+            subscriber.onError(new IllegalStateException("Publisher already has subscriber"));
+            return;
+        }
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+    
+    private class Subscription implements SequenceSubscription, Runnable {
+        private SequenceSubscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong(0);
+        private final AtomicInteger wip = new AtomicInteger(0);
+        private volatile boolean cancelled = false;
+        private volatile Throwable invalid;
+        private boolean done = false;
+        private List<T> batch = new ArrayList<T>();
+
+        public Subscription(SequenceSubscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+        
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                invalid = new IllegalArgumentException("Requested non positive number of values " + n);
+            } else {
+                while(true) {
+                    long current = demand.get();
+                    long next = current + n;
+                    if(next < 0) next = Long.MAX_VALUE;
+                    if(demand.compareAndSet(current, next)) break;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+        
+        private void schedule() {
+            if(wip.getAndIncrement() != 0) return;
+            try {
+                executor.execute(this);
+            } catch(RuntimeException e) {
+                cancelled = true;
+                subscriber.onError(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            while(true) {
+                drain();
+                missed = wip.addAndGet(-missed);
+                if(missed == 0) return;
+            }
+        }
+        
+        private void drain() {
+            while(!done) {
+                if(cancelled) {
+                    done = true;
+                    return;
+                }
+                if(invalid != null) {
+                    error(invalid);
+                    return;
+                }
+                long requested = demand.get();
+                if(requested == 0) return;
+                int size = requested < batchSize ? (int)requested : batchSize;
+                boolean end = false;
+                try {
+                    for(int i = 0; i < size; i++) {
+                        T value = source.next();
+                        if(value == null) {
+                            end = true;
+                            break;
+                        }
+                        batch.add(value);
+                    }
+                } catch(Throwable e) {
+                    batch.clear();
+                    error(e);
+                    return;
+                }
+                for(int i = 0; i < batch.size(); i++) {
+                    if(cancelled) break;
+                    T value = batch.get(i);
+                    batch.set(i, null);
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(value);
+                    } catch(Throwable e) {
+                        batch.clear();
+                        cancelled = true;
+                        done = true;
+                        return;
+                    }
+                }
+                batch.clear();
+                if(end && !cancelled) {
+                    done = true;
+                    subscriber.onComplete();
+                }
+            }
+        }
+
+        private void error(Throwable e) {
+            done = true;
+            cancelled = true;
+            subscriber.onError(e);
+        }
+    }
+    
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+/**
+ * Receiver of values from SequencePublisher. Same contract as 
+ * java.util.concurrent.Flow.Subscriber. Methods are called sequentially. 
+ * @author antons
+ */
+public interface SequenceSubscriber<T> {
+    
+    /**
+     * Called once before any other method.
+     * @param subscription subscription used for requesting values
+     */
+    void onSubscribe(SequenceSubscription subscription);
+    
+    /**
+     * Called for each requested value.
+     * @param value next value
+     */
+    void onNext(T value);
+    
+    /**
+     * Called when publishing failed. No other method is called after.
+     * @param error failure
+     */
+    void onError(Throwable error);
+    
+    /**
+     * Called when all values are published. No other method is called after.
+     */
+    void onComplete();
+}
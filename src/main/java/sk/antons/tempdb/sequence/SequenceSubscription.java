@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+/**
+ * Link between SequencePublisher and SequenceSubscriber. Same contract as 
+ * java.util.concurrent.Flow.Subscription.
+ * @author antons
+ */
+public interface SequenceSubscription {
+    
+    /**
+     * Adds n values to demand of subscriber.
+     * @param n number of values (must be positive)
+     */
+    void request(long n);
+    
+    /**
+     * Stops publishing of values. 
+     */
+    void cancel();
+}
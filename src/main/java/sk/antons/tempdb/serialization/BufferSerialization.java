@@ -0,0 +1,252 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import sk.antons.tempdb.TempDbException;
+
+/**
+ * Helper methods for buffer serialization. Adapts stream serializers 
+ * to buffer ones.
+ * @author antons
+ */
+public class BufferSerialization {
+    
+    /** minimal free space after offset of newly serialized value */
+    private static final int HEADROOM = 256;
+    
+    /**
+     * Adapts stream serializer to buffer serializer.
+     * @param serializer stream serializer
+     * @return buffer serializer
+     */
+    public static <T> BufferSerializer<T> serializer(BytesSerializer<T> serializer) {
+        if(serializer == null) return null;
+        return new SerializerAdapter<T>(serializer);
+    }
+
+    /**
+     * Adapts stream deserializer to buffer deserializer.
+     * @param deserializer stream deserializer
+     * @return buffer deserializer
+     */
+    public static <T> BufferDeserializer<T> deserializer(BytesDeserializer<T> deserializer) {
+        if(deserializer == null) return null;
+        return new DeserializerAdapter<T>(deserializer);
+    }
+
+    /**
+     * Deserializes value from buffer reusing given instance if deserializer 
+     * supports it.
+     * @param deserializer deserializer
+     * @param buffer buffer with value
+     * @param reuse instance to be reused (can be null)
+     * @return value
+     */
+    public static <T> T deserialize(BufferDeserializer<T> deserializer, ByteBuffer buffer, T reuse) {
+        if((reuse != null) && (deserializer instanceof ReusingBufferDeserializer)) {
+            return ((ReusingBufferDeserializer<T>)deserializer).deserialize(buffer, reuse);
+        }
+        return deserializer.deserialize(buffer);
+    }
+    
+    /**
+     * Serializes value to buffer from given offset. If buffer is too small 
+     * for offset or value new bigger one is allocated. 
+     * @param serializer serializer
+     * @param value serialized value
+     * @param buffer heap buffer
+     * @param offset start position of value
+     * @return buffer with value (given one or new one) positioned after value
+     */
+    public static <T> ByteBuffer serialize(BufferSerializer<T> serializer, T value, ByteBuffer buffer, int offset) {
+        if(buffer.capacity() < offset + HEADROOM) {
+            buffer = ByteBuffer.allocate(Math.max(offset + HEADROOM, buffer.capacity() * 2));
+        }
+        while(true) {
+            buffer.clear();
+            buffer.position(offset);
+            try {
+                serializer.serialize(value, buffer);
+                return buffer;
+            } catch(BufferOverflowException e) {
+                if(buffer.capacity() > Integer.MAX_VALUE / 2) throw new TempDbException("Value too big for buffer", e);
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+    
+    /**
+     * Copies remaining bytes of source to buffer from given offset. If 
+     * buffer is too small new one is allocated. Position of source is 
+     * not changed.
+     * @param bytes source bytes
+     * @param buffer heap buffer
+     * @param offset start position of bytes
+     * @return buffer with bytes (given one or new one) positioned after bytes
+     */
+    public static ByteBuffer copy(ByteBuffer bytes, ByteBuffer buffer, int offset) {
+        int length = bytes.remaining();
+        if(buffer.capacity() < offset + length) {
+            buffer = ByteBuffer.allocate(Math.max(offset + length, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        buffer.position(offset);
+        buffer.put(bytes.duplicate());
+        return buffer;
+    }
+    
+    /**
+     * Creates read only buffer with copy of bytes.
+     * @param bytes source array
+     * @param offset start of bytes
+     * @param length number of bytes
+     * @return read only buffer
+     */
+    public static ByteBuffer readOnlyCopy(byte[] bytes, int offset, int length) {
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, offset, copy, 0, length);
+        return ByteBuffer.wrap(copy).asReadOnlyBuffer();
+    }
+    
+    /**
+     * Adapter reuses one stream pair pointed to current buffer. If adapter 
+     * is used by more threads at once, other threads use their own streams.
+     */
+    private static class SerializerAdapter<T> implements BufferSerializer<T> {
+        private BytesSerializer<T> serializer;
+        private final BufferOutputStream bos = new BufferOutputStream();
+        private final DataOutputStream dos = new DataOutputStream(bos);
+        private final AtomicBoolean busy = new AtomicBoolean();
+
+        public SerializerAdapter(BytesSerializer<T> serializer) {
+            this.serializer = serializer;
+        }
+        
+        @Override
+        public void serialize(T value, ByteBuffer buffer) {
+            try {
+                if(!busy.compareAndSet(false, true)) {
+                    BufferOutputStream os = new BufferOutputStream();
+                    os.buffer = buffer;
+                    serializer.serialize(value, new DataOutputStream(os));
+                    return;
+                }
+                try {
+                    bos.buffer = buffer;
+                    serializer.serialize(value, dos);
+                } finally {
+                    bos.buffer = null;
+                    busy.set(false);
+                }
+            } catch(IOException e) {
+                throw new TempDbException("Unable to serialize " + value, e);
+            }
+        }
+    }
+    
+    /**
+     * Adapter reuses one stream pair pointed to current buffer. If adapter 
+     * is used by more threads at once, other threads use their own streams.
+     */
+    private static class DeserializerAdapter<T> implements ReusingBufferDeserializer<T> {
+        private BytesDeserializer<T> deserializer;
+        private final BufferInputStream bis = new BufferInputStream();
+        private final DataInputStream dis = new DataInputStream(bis);
+        private final AtomicBoolean busy = new AtomicBoolean();
+
+        public DeserializerAdapter(BytesDeserializer<T> deserializer) {
+            this.deserializer = deserializer;
+        }
+        
+        @Override
+        public T deserialize(ByteBuffer buffer) {
+            return deserialize(buffer, null);
+        }
+        
+        @Override
+        public T deserialize(ByteBuffer buffer, T reuse) {
+            try {
+                if(!busy.compareAndSet(false, true)) {
+                    BufferInputStream is = new BufferInputStream();
+                    is.buffer = buffer;
+                    return read(new DataInputStream(is), reuse);
+                }
+                try {
+                    bis.buffer = buffer;
+                    return read(dis, reuse);
+                } finally {
+                    bis.buffer = null;
+                    busy.set(false);
+                }
+            } catch(IOException e) {
+                throw new TempDbException("Unable to deserialize value", e);
+            }
+        }
+        
+        private T read(DataInputStream is, T reuse) throws IOException {
+            if((reuse != null) && (deserializer instanceof ReusingBytesDeserializer)) {
+                return ((ReusingBytesDeserializer<T>)deserializer).deserialize(is, reuse);
+            }
+            return deserializer.deserialize(is);
+        }
+    }
+    
+    private static class BufferOutputStream extends OutputStream {
+        private ByteBuffer buffer;
+        
+        @Override
+        public void write(int b) {
+            buffer.put((byte)b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buffer.put(b, off, len);
+        }
+    }
+    
+    private static class BufferInputStream extends InputStream {
+        private ByteBuffer buffer;
+        
+        @Override
+        public int read() {
+            if(!buffer.hasRemaining()) return -1;
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if(len == 0) return 0;
+            if(!buffer.hasRemaining()) return -1;
+            if(len > buffer.remaining()) len = buffer.remaining();
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
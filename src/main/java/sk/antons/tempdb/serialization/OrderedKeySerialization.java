@@ -0,0 +1,265 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Order preserving key serializations. Unsigned comparison of serialized 
+ * bytes (as used by AvlTreeDb) gives same order as natural order of keys.
+ * <ul>
+ * <li>numbers are stored big endian with flipped sign bit (doubles with 
+ * all bits flipped for negative values)</li>
+ * <li>strings are stored as UTF-8 where 0x00 is escaped as 0x00 0xff 
+ * and terminated by 0x00 0x01 (order of code points)</li>
+ * <li>tuples are concatenation of its component serializations</li>
+ * </ul>
+ * Null is serialized as zero (empty string).
+ * @author antons
+ */
+public class OrderedKeySerialization {
+
+    /**
+     * Order preserving serializer and deserializer.
+     */
+    public static interface OrderedKey<T> extends BytesSerializer<T>, BytesDeserializer<T>
+            , BufferSerializer<T>, BufferDeserializer<T> {
+    }
+    
+    private static final IntKey intKey = new IntKey();
+    public static IntKey ints() { return intKey; }
+    
+    private static final LongKey longKey = new LongKey();
+    public static LongKey longs() { return longKey; }
+    
+    private static final DoubleKey doubleKey = new DoubleKey();
+    public static DoubleKey doubles() { return doubleKey; }
+    
+    private static final StringKey stringKey = new StringKey();
+    public static StringKey strings() { return stringKey; }
+
+    /**
+     * Creates serialization of composite keys. Key is array of values 
+     * of given component types. Components are compared in given order.
+     * @param components serializations of components
+     * @return tuple serialization
+     */
+    public static TupleKey tuples(OrderedKey<?>... components) { return new TupleKey(components); }
+    
+    private static long encode(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return (bits < 0) ? ~bits : (bits ^ Long.MIN_VALUE);
+    }
+    
+    private static double decode(long bits) {
+        return Double.longBitsToDouble((bits < 0) ? (bits ^ Long.MIN_VALUE) : ~bits);
+    }
+    
+    public static class IntKey implements OrderedKey<Integer> {
+
+        @Override
+        public void serialize(Integer value, DataOutputStream dos) throws IOException {
+            dos.writeInt((value == null ? 0 : value.intValue()) ^ Integer.MIN_VALUE);
+        }
+
+        @Override
+        public Integer deserialize(DataInputStream dis) throws IOException {
+            return dis.readInt() ^ Integer.MIN_VALUE;
+        }
+
+        @Override
+        public void serialize(Integer value, ByteBuffer buffer) {
+            buffer.putInt((value == null ? 0 : value.intValue()) ^ Integer.MIN_VALUE);
+        }
+
+        @Override
+        public Integer deserialize(ByteBuffer buffer) {
+            return buffer.getInt() ^ Integer.MIN_VALUE;
+        }
+    }
+    
+    public static class LongKey implements OrderedKey<Long> {
+
+        @Override
+        public void serialize(Long value, DataOutputStream dos) throws IOException {
+            dos.writeLong((value == null ? 0 : value.longValue()) ^ Long.MIN_VALUE);
+        }
+
+        @Override
+        public Long deserialize(DataInputStream dis) throws IOException {
+            return dis.readLong() ^ Long.MIN_VALUE;
+        }
+
+        @Override
+        public void serialize(Long value, ByteBuffer buffer) {
+            buffer.putLong((value == null ? 0 : value.longValue()) ^ Long.MIN_VALUE);
+        }
+
+        @Override
+        public Long deserialize(ByteBuffer buffer) {
+            return buffer.getLong() ^ Long.MIN_VALUE;
+        }
+    }
+    
+    public static class DoubleKey implements OrderedKey<Double> {
+
+        @Override
+        public void serialize(Double value, DataOutputStream dos) throws IOException {
+            dos.writeLong(encode(value == null ? 0 : value.doubleValue()));
+        }
+
+        @Override
+        public Double deserialize(DataInputStream dis) throws IOException {
+            return decode(dis.readLong());
+        }
+
+        @Override
+        public void serialize(Double value, ByteBuffer buffer) {
+            buffer.putLong(encode(value == null ? 0 : value.doubleValue()));
+        }
+
+        @Override
+        public Double deserialize(ByteBuffer buffer) {
+            return decode(buffer.getLong());
+        }
+    }
+    
+    public static class StringKey implements OrderedKey<String> {
+
+        private static int escapedLength(byte[] bytes, int length) {
+            int rv = length + 2;
+            for(int i = 0; i < length; i++) {
+                if(bytes[i] == 0) rv++;
+            }
+            return rv;
+        }
+        
+        private static byte[] utf8(String value) {
+            if(value == null) value = "";
+            byte[] rv = new byte[Utf8Serialization.encodedLength(value)];
+            Utf8Serialization.encode(value, rv, 0);
+            return rv;
+        }
+        
+        @Override
+        public void serialize(String value, DataOutputStream dos) throws IOException {
+            byte[] bytes = utf8(value);
+            for(int i = 0; i < bytes.length; i++) {
+                dos.write(bytes[i]);
+                if(bytes[i] == 0) dos.write(0xff);
+            }
+            dos.write(0);
+            dos.write(1);
+        }
+
+        @Override
+        public String deserialize(DataInputStream dis) throws IOException {
+            ByteList bytes = new ByteList();
+            while(true) {
+                byte b = dis.readByte();
+                if(b == 0) {
+                    if(dis.readByte() == 1) break;
+                }
+                bytes.add(b);
+            }
+            return Utf8Serialization.decode(bytes.bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void serialize(String value, ByteBuffer buffer) {
+            byte[] bytes = utf8(value);
+            if(buffer.remaining() < escapedLength(bytes, bytes.length)) throw new BufferOverflowException();
+            for(int i = 0; i < bytes.length; i++) {
+                buffer.put(bytes[i]);
+                if(bytes[i] == 0) buffer.put((byte)0xff);
+            }
+            buffer.put((byte)0);
+            buffer.put((byte)1);
+        }
+
+        @Override
+        public String deserialize(ByteBuffer buffer) {
+            ByteList bytes = new ByteList();
+            while(true) {
+                byte b = buffer.get();
+                if(b == 0) {
+                    if(buffer.get() == 1) break;
+                }
+                bytes.add(b);
+            }
+            return Utf8Serialization.decode(bytes.bytes, 0, bytes.length);
+        }
+    }
+    
+    private static class ByteList {
+        private byte[] bytes = new byte[64];
+        private int length = 0;
+        
+        private void add(byte b) {
+            if(length == bytes.length) {
+                byte[] newbytes = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, newbytes, 0, length);
+                bytes = newbytes;
+            }
+            bytes[length++] = b;
+        }
+    }
+    
+    public static class TupleKey implements OrderedKey<Object[]> {
+        private OrderedKey<Object>[] components;
+
+        @SuppressWarnings("unchecked") // each component gets only values of its own tuple position
+        public TupleKey(OrderedKey<?>... components) {
+            this.components = (OrderedKey<Object>[])components;
+        }
+        
+        @Override
+        public void serialize(Object[] value, DataOutputStream dos) throws IOException {
+            for(int i = 0; i < components.length; i++) {
+                components[i].serialize(value == null ? null : value[i], dos);
+            }
+        }
+
+        @Override
+        public Object[] deserialize(DataInputStream dis) throws IOException {
+            Object[] rv = new Object[components.length];
+            for(int i = 0; i < components.length; i++) {
+                rv[i] = components[i].deserialize(dis);
+            }
+            return rv;
+        }
+
+        @Override
+        public void serialize(Object[] value, ByteBuffer buffer) {
+            for(int i = 0; i < components.length; i++) {
+                components[i].serialize(value == null ? null : value[i], buffer);
+            }
+        }
+
+        @Override
+        public Object[] deserialize(ByteBuffer buffer) {
+            Object[] rv = new Object[components.length];
+            for(int i = 0; i < components.length; i++) {
+                rv[i] = components[i].deserialize(buffer);
+            }
+            return rv;
+        }
+    }
+}
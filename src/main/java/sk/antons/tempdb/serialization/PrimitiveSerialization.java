@@ -0,0 +1,219 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializations of primitive values (int, long, double and byte[]). 
+ * Each implementation is usable as stream and as buffer serializer and 
+ * deserializer. Numbers are stored as fixed size big endian values, 
+ * byte[] is stored with int length prefix. Null is serialized as zero 
+ * (empty array). Deserialization of byte[] reuses given array if it has 
+ * same length.
+ * <p>
+ * Number serializations provides also primitive methods (like 
+ * putLong(long, ByteBuffer) and getLong(ByteBuffer)) which can be used 
+ * without boxing of values.
+ * @author antons
+ */
+public class PrimitiveSerialization {
+
+    private static final IntSerialization intSerialization = new IntSerialization();
+    public static IntSerialization ints() { return intSerialization; }
+    
+    private static final LongSerialization longSerialization = new LongSerialization();
+    public static LongSerialization longs() { return longSerialization; }
+    
+    private static final DoubleSerialization doubleSerialization = new DoubleSerialization();
+    public static DoubleSerialization doubles() { return doubleSerialization; }
+    
+    private static final BytesSerialization bytesSerialization = new BytesSerialization();
+    public static BytesSerialization bytes() { return bytesSerialization; }
+    
+    public static class IntSerialization implements BytesSerializer<Integer>, BytesDeserializer<Integer>
+            , BufferSerializer<Integer>, BufferDeserializer<Integer> {
+
+        public void writeInt(int value, DataOutputStream dos) throws IOException {
+            dos.writeInt(value);
+        }
+
+        public int readInt(DataInputStream dis) throws IOException {
+            return dis.readInt();
+        }
+
+        public void putInt(int value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        public int getInt(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+
+        @Override
+        public void serialize(Integer value, DataOutputStream dos) throws IOException {
+            writeInt(value == null ? 0 : value.intValue(), dos);
+        }
+
+        @Override
+        public Integer deserialize(DataInputStream dis) throws IOException {
+            return readInt(dis);
+        }
+
+        @Override
+        public void serialize(Integer value, ByteBuffer buffer) {
+            putInt(value == null ? 0 : value.intValue(), buffer);
+        }
+
+        @Override
+        public Integer deserialize(ByteBuffer buffer) {
+            return getInt(buffer);
+        }
+    }
+    
+    public static class LongSerialization implements BytesSerializer<Long>, BytesDeserializer<Long>
+            , BufferSerializer<Long>, BufferDeserializer<Long> {
+
+        public void writeLong(long value, DataOutputStream dos) throws IOException {
+            dos.writeLong(value);
+        }
+
+        public long readLong(DataInputStream dis) throws IOException {
+            return dis.readLong();
+        }
+
+        public void putLong(long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        public long getLong(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+
+        @Override
+        public void serialize(Long value, DataOutputStream dos) throws IOException {
+            writeLong(value == null ? 0 : value.longValue(), dos);
+        }
+
+        @Override
+        public Long deserialize(DataInputStream dis) throws IOException {
+            return readLong(dis);
+        }
+
+        @Override
+        public void serialize(Long value, ByteBuffer buffer) {
+            putLong(value == null ? 0 : value.longValue(), buffer);
+        }
+
+        @Override
+        public Long deserialize(ByteBuffer buffer) {
+            return getLong(buffer);
+        }
+    }
+    
+    public static class DoubleSerialization implements BytesSerializer<Double>, BytesDeserializer<Double>
+            , BufferSerializer<Double>, BufferDeserializer<Double> {
+
+        public void writeDouble(double value, DataOutputStream dos) throws IOException {
+            dos.writeDouble(value);
+        }
+
+        public double readDouble(DataInputStream dis) throws IOException {
+            return dis.readDouble();
+        }
+
+        public void putDouble(double value, ByteBuffer buffer) {
+            buffer.putDouble(value);
+        }
+
+        public double getDouble(ByteBuffer buffer) {
+            return buffer.getDouble();
+        }
+
+        @Override
+        public void serialize(Double value, DataOutputStream dos) throws IOException {
+            writeDouble(value == null ? 0 : value.doubleValue(), dos);
+        }
+
+        @Override
+        public Double deserialize(DataInputStream dis) throws IOException {
+            return readDouble(dis);
+        }
+
+        @Override
+        public void serialize(Double value, ByteBuffer buffer) {
+            putDouble(value == null ? 0 : value.doubleValue(), buffer);
+        }
+
+        @Override
+        public Double deserialize(ByteBuffer buffer) {
+            return getDouble(buffer);
+        }
+    }
+    
+    public static class BytesSerialization implements BytesSerializer<byte[]>, ReusingBytesDeserializer<byte[]>
+            , BufferSerializer<byte[]>, ReusingBufferDeserializer<byte[]> {
+
+        @Override
+        public void serialize(byte[] value, DataOutputStream dos) throws IOException {
+            if(value == null) {
+                dos.writeInt(0);
+            } else {
+                dos.writeInt(value.length);
+                dos.write(value);
+            }
+        }
+
+        @Override
+        public byte[] deserialize(DataInputStream dis) throws IOException {
+            return deserialize(dis, null);
+        }
+
+        @Override
+        public byte[] deserialize(DataInputStream dis, byte[] reuse) throws IOException {
+            int length = dis.readInt();
+            byte[] rv = ((reuse != null) && (reuse.length == length)) ? reuse : new byte[length];
+            dis.readFully(rv);
+            return rv;
+        }
+
+        @Override
+        public void serialize(byte[] value, ByteBuffer buffer) {
+            int length = value == null ? 0 : value.length;
+            if(buffer.remaining() < 4 + length) throw new BufferOverflowException();
+            buffer.putInt(length);
+            if(length > 0) buffer.put(value);
+        }
+
+        @Override
+        public byte[] deserialize(ByteBuffer buffer) {
+            return deserialize(buffer, null);
+        }
+
+        @Override
+        public byte[] deserialize(ByteBuffer buffer, byte[] reuse) {
+            int length = buffer.getInt();
+            byte[] rv = ((reuse != null) && (reuse.length == length)) ? reuse : new byte[length];
+            buffer.get(rv);
+            return rv;
+        }
+    }
+    
+}
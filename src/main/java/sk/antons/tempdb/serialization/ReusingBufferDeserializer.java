@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.serialization;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Buffer deserializer which is able to fill existing instance instead of 
+ * creating new one. Used by next(reuse) like methods of databases.
+ * @author antons
+ */
+public interface ReusingBufferDeserializer<T> extends BufferDeserializer<T> {
+    
+    /**
+     * Reads value to given instance if possible.
+     * @param buffer input
+     * @param reuse instance to be filled (can be null)
+     * @return reuse instance or new instance if reuse is null or can't be used
+     */
+    T deserialize(ByteBuffer buffer, T reuse);
+}
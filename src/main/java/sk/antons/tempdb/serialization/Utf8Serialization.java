@@ -0,0 +1,285 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Implementation of string serialization using standard UTF-8 prefixed 
+ * by varint length. Unlike StringSerialization length of string is not 
+ * limited to 64kB. Null is serialized as empty string.
+ * 
+ * Strings with ASCII characters only are encoded and decoded by fast 
+ * path. Encoding and decoding buffers are reused per thread.
+ * @author antons
+ */
+public class Utf8Serialization {
+    
+    private static final Serializer serializer = new Serializer();
+    public static Serializer serializer() { return serializer; }
+
+    private static final Deserializer deserializer = new Deserializer();
+    public static Deserializer deserializer() { return deserializer; };
+
+    private static final BufferSerializerImpl bufferSerializer = new BufferSerializerImpl();
+    public static BufferSerializerImpl bufferSerializer() { return bufferSerializer; }
+
+    private static final BufferDeserializerImpl bufferDeserializer = new BufferDeserializerImpl();
+    public static BufferDeserializerImpl bufferDeserializer() { return bufferDeserializer; };
+
+    private static final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() { return new Buffers(); }
+    };
+    
+    private static class Buffers {
+        private byte[] bytes = new byte[256];
+        private char[] chars = new char[256];
+        
+        private byte[] bytes(int size) {
+            if(bytes.length < size) bytes = new byte[Math.max(size, bytes.length * 2)];
+            return bytes;
+        }
+        
+        private char[] chars(int size) {
+            if(chars.length < size) chars = new char[Math.max(size, chars.length * 2)];
+            return chars;
+        }
+    }
+    
+    /**
+     * Computes number of bytes of UTF-8 representation of string.
+     * (Unpaired surrogate is encoded as '?'.)
+     * @param value string
+     * @return number of bytes
+     */
+    public static int encodedLength(String value) {
+        int length = value.length();
+        int rv = length;
+        for(int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) continue;
+            if(c < 0x800) {
+                rv++;
+            } else if(Character.isHighSurrogate(c) && (i + 1 < length) && Character.isLowSurrogate(value.charAt(i + 1))) {
+                rv += 2;
+                i++;
+            } else if(isSurrogate(c)) {
+                // encoded as '?'
+            } else {
+                rv += 2;
+            }
+        }
+        return rv;
+    }
+    
+    /**
+     * Encodes string to UTF-8 bytes. 
+     * @param value string
+     * @param dest destination array (must have place for encodedLength(value) bytes)
+     * @param offset offset in destination array
+     * @return offset after last written byte
+     */
+    public static int encode(String value, byte[] dest, int offset) {
+        int length = value.length();
+        int i = 0;
+        for(; i < length; i++) {
+            char c = value.charAt(i);
+            if(c >= 0x80) break;
+            dest[offset++] = (byte)c;
+        }
+        for(; i < length; i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                dest[offset++] = (byte)c;
+            } else if(c < 0x800) {
+                dest[offset++] = (byte)(0xc0 | (c >> 6));
+                dest[offset++] = (byte)(0x80 | (c & 0x3f));
+            } else if(Character.isHighSurrogate(c) && (i + 1 < length) && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                dest[offset++] = (byte)(0xf0 | (cp >> 18));
+                dest[offset++] = (byte)(0x80 | ((cp >> 12) & 0x3f));
+                dest[offset++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+                dest[offset++] = (byte)(0x80 | (cp & 0x3f));
+            } else if(isSurrogate(c)) {
+                dest[offset++] = (byte)'?';
+            } else {
+                dest[offset++] = (byte)(0xe0 | (c >> 12));
+                dest[offset++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+                dest[offset++] = (byte)(0x80 | (c & 0x3f));
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Decodes UTF-8 bytes to string. Malformed sequences are decoded 
+     * as U+FFFD.
+     * @param src source array
+     * @param offset offset in source array
+     * @param length number of bytes
+     * @return string
+     */
+    public static String decode(byte[] src, int offset, int length) {
+        char[] chars = buffers.get().chars(length);
+        int end = offset + length;
+        int n = 0;
+        int i = offset;
+        while((i < end) && (src[i] >= 0)) {
+            chars[n++] = (char)src[i++];
+        }
+        while(i < end) {
+            int b = src[i++];
+            if(b >= 0) {
+                chars[n++] = (char)b;
+            } else if(((b & 0xe0) == 0xc0) && (i < end) && isContinuation(src[i])) {
+                chars[n++] = (char)(((b & 0x1f) << 6) | (src[i++] & 0x3f));
+            } else if(((b & 0xf0) == 0xe0) && (i + 1 < end) && isContinuation(src[i]) && isContinuation(src[i + 1])) {
+                chars[n++] = (char)(((b & 0x0f) << 12) | ((src[i] & 0x3f) << 6) | (src[i + 1] & 0x3f));
+                i += 2;
+            } else if(((b & 0xf8) == 0xf0) && (i + 2 < end) && isContinuation(src[i]) && isContinuation(src[i + 1]) && isContinuation(src[i + 2])) {
+                int cp = ((b & 0x07) << 18) | ((src[i] & 0x3f) << 12) | ((src[i + 1] & 0x3f) << 6) | (src[i + 2] & 0x3f);
+                i += 3;
+                if(Character.isSupplementaryCodePoint(cp)) {
+                    n += Character.toChars(cp, chars, n);
+                } else {
+                    chars[n++] = '\uFFFD';
+                }
+            } else {
+                chars[n++] = '\uFFFD';
+            }
+        }
+        return new String(chars, 0, n);
+    }
+    
+    private static boolean isSurrogate(char c) {
+        return (c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE);
+    }
+    
+    private static boolean isContinuation(byte b) {
+        return (b & 0xc0) == 0x80;
+    }
+    
+    private static int varintLength(int value) {
+        int rv = 1;
+        while((value & ~0x7f) != 0) {
+            value >>>= 7;
+            rv++;
+        }
+        return rv;
+    }
+    
+    private static int writeVarint(int value, byte[] dest, int offset) {
+        while((value & ~0x7f) != 0) {
+            dest[offset++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        dest[offset++] = (byte)value;
+        return offset;
+    }
+
+    private static int readVarint(DataInputStream dis) throws IOException {
+        int rv = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = dis.readUnsignedByte();
+            rv |= (b & 0x7f) << shift;
+            if((b & 0x80) == 0) return rv;
+        }
+        throw new IOException("Malformed varint length");
+    }
+    
+    private static int readVarint(ByteBuffer buffer) {
+        int rv = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = buffer.get() & 0xff;
+            rv |= (b & 0x7f) << shift;
+            if((b & 0x80) == 0) return rv;
+        }
+        throw new IllegalStateException("Malformed varint length");
+    }
+    
+    public static class Serializer implements BytesSerializer<String> {
+
+        @Override
+        public void serialize(String value, DataOutputStream dos) throws IOException {
+            if(value == null) value = "";
+            int length = encodedLength(value);
+            byte[] bytes = buffers.get().bytes(length + 5);
+            int n = writeVarint(length, bytes, 0);
+            n = encode(value, bytes, n);
+            dos.write(bytes, 0, n);
+        }
+    
+    }
+    
+    public static class Deserializer implements BytesDeserializer<String> {
+
+        @Override
+        public String deserialize(DataInputStream dis) throws IOException {
+            int length = readVarint(dis);
+            byte[] bytes = buffers.get().bytes(length);
+            dis.readFully(bytes, 0, length);
+            return decode(bytes, 0, length);
+        }
+
+    }
+    
+    public static class BufferSerializerImpl implements BufferSerializer<String> {
+
+        @Override
+        public void serialize(String value, ByteBuffer buffer) {
+            if(value == null) value = "";
+            int length = encodedLength(value);
+            int size = varintLength(length) + length;
+            if(buffer.remaining() < size) throw new BufferOverflowException();
+            if(buffer.hasArray()) {
+                int offset = buffer.arrayOffset() + buffer.position();
+                offset = writeVarint(length, buffer.array(), offset);
+                encode(value, buffer.array(), offset);
+                buffer.position(buffer.position() + size);
+            } else {
+                byte[] bytes = buffers.get().bytes(size);
+                int n = writeVarint(length, bytes, 0);
+                encode(value, bytes, n);
+                buffer.put(bytes, 0, size);
+            }
+        }
+    
+    }
+    
+    public static class BufferDeserializerImpl implements BufferDeserializer<String> {
+
+        @Override
+        public String deserialize(ByteBuffer buffer) {
+            int length = readVarint(buffer);
+            if(buffer.hasArray()) {
+                String rv = decode(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                return rv;
+            } else {
+                byte[] bytes = buffers.get().bytes(length);
+                buffer.get(bytes, 0, length);
+                return decode(bytes, 0, length);
+            }
+        }
+
+    }
+    
+}
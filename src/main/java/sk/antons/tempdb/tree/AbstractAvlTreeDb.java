@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.DbRandomAccess;
+
+/**
+ * Base of AVL tree databases stored in file. File starts with position
+ * of root node. Each node starts with links (long left, long right,
+ * long next, int height) followed by data of subclass. Subclass loads
+ * nodes and defines order of keys, this class links new nodes to tree
+ * and keeps tree balanced.
+ * @author antons
+ */
+public abstract class AbstractAvlTreeDb extends AbstractDb {
+    protected static final int LINKS_SIZE = 8 + 8 + 8 + 4;
+    protected DbRandomAccess raf;
+    protected long size = 0;
+    long rootId = -1;
+    private ByteBuffer links = ByteBuffer.allocate(LINKS_SIZE);
+
+    public AbstractAvlTreeDb(DbFile dbfile) {
+        super(dbfile);
+        raf = dbfile.randomAccess();
+        if(dbfile.exists()) {
+            try {
+                this.size = raf.length();
+            } catch(IOException e) {
+                throw new TempDbException("Unable to read file lenagth from " + dbfile, e);
+            }
+        }
+    }
+
+    /**
+     * Loads node from given position.
+     * @param id position of node
+     * @param loadKey if key must be loaded for direction()
+     * @return node or null if id is not valid position
+     */
+    protected abstract Node node(long id, boolean loadKey) throws IOException;
+
+    /**
+     * Compares key of inserted node with key of given node.
+     * @param node node loaded with key
+     * @return negative value if inserted node belongs to left subtree,
+     * positive for right subtree and zero for same key
+     */
+    protected abstract int direction(Node node);
+
+    protected long rootId() throws IOException {
+        if(rootId > 0) return rootId;
+        if(size <= 0) return 0;
+        raf.seek(0);
+        rootId = raf.readLong();
+        return rootId;
+    }
+
+    /**
+     * Links already written node to tree and stores new root.
+     * @param id position of new node
+     */
+    protected void link(long id) throws IOException {
+        long root = rootId();
+        long newroot = insert(root, id);
+        if(root != newroot) {
+            raf.seek(0);
+            raf.writeLong(newroot);
+            rootId = newroot;
+        }
+    }
+
+    private void saveNode(Node node) throws IOException {
+        if(node == null) return;
+        if(node.id <= 0) return;
+        links.putLong(0, node.left);
+        links.putLong(8, node.right);
+        links.putLong(16, node.next);
+        links.putInt(24, node.height);
+        raf.seek(node.id);
+        raf.write(links.array(), 0, LINKS_SIZE);
+    }
+
+    private long insert(long id, long newId) throws IOException {
+        if(id <= 0) return newId;
+        Node node = node(id, true);
+        if(node == null) throw new IllegalStateException("Unknown address " + id);
+        int direction = direction(node);
+        if(direction == 0) {
+            while(node.next > 0) {
+                node = node(node.next, false);
+            }
+            node.next = newId;
+            saveNode(node);
+            return id;
+        } if(direction < 0) {
+            node.left = insert(node.left, newId);
+        } else {
+            node.right = insert(node.right, newId);
+        }
+        saveNode(node);
+        Node n = rebalance(node);
+        return n.id;
+    }
+
+    private Node rebalance(Node node) throws IOException {
+        updateHeight(node);
+        int balance = getBalance(node);
+        if (balance > 1) {
+            Node right = node(node.right, false);
+            Node rightright = node(right.right, false);
+            Node rightleft = node(right.left, false);
+            if (height(rightright) > height(rightleft)) {
+                node = rotateLeft(node);
+            } else {
+                node.right = rotateRight(right).id;
+                saveNode(node);
+                node = rotateLeft(node);
+            }
+        } else if (balance < -1) {
+            Node left = node(node.left, false);
+            Node leftright = node(left.right, false);
+            Node leftleft = node(left.left, false);
+            if (height(leftleft) > height(leftright))
+                node = rotateRight(node);
+            else {
+                node.left = rotateLeft(left).id;
+                saveNode(node);
+                node = rotateRight(node);
+            }
+        }
+        return node;
+    }
+
+    private Node rotateLeft(Node node) throws IOException {
+        Node right = node(node.right, false);
+        Node righleft = node(right.left, false);
+        right.left = node.id;
+        node.right = (righleft == null)? 0 : righleft.id;
+        updateHeight(node);
+        updateHeight(right);
+        saveNode(right);
+        saveNode(node);
+        return right;
+    }
+
+    private Node rotateRight(Node node) throws IOException {
+        Node left = node(node.left, false);
+        Node leftright = node(left.right, false);
+        left.right = node.id;
+        node.left = (leftright == null)? 0 : leftright.id;
+        updateHeight(node);
+        updateHeight(left);
+        saveNode(left);
+        saveNode(node);
+        return left;
+    }
+
+    private void updateHeight(Node node) throws IOException {
+        if(node == null) return;
+        int oldval = node.height;
+        Node right = node(node.right, false);
+        Node left = node(node.left, false);
+        node.height = Math.max(height(right), height(left)) + 1;
+        if(node.height != oldval) saveNode(node);
+    }
+
+    private int height(Node node) {
+        if(node == null) return 0;
+        return node.height;
+    }
+
+    private int getBalance(Node node) throws IOException {
+        if(node == null) return 0;
+        Node right = node(node.right, false);
+        Node left = node(node.left, false);
+        return height(right) - height(left);
+    }
+
+    protected static class Node {
+        protected long id;
+        protected long left;
+        protected long right;
+        protected long next;
+        protected int height;
+    }
+}
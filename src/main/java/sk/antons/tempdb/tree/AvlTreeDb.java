@@ -16,86 +16,93 @@
 package sk.antons.tempdb.tree;
 
 import java.io.IOException;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import sk.antons.tempdb.TempDbException;
-import sk.antons.tempdb.base.AbstractDb;
 import sk.antons.tempdb.base.DbByteArrayInputStream;
-import sk.antons.tempdb.base.DbByteArrayOutputStream;
 import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.sequence.SequenceSource;
+import sk.antons.tempdb.serialization.BufferDeserializer;
+import sk.antons.tempdb.serialization.BufferSerialization;
+import sk.antons.tempdb.serialization.BufferSerializer;
 import sk.antons.tempdb.serialization.BytesDeserializer;
 import sk.antons.tempdb.serialization.BytesSerializer;
 
 /**
- * AVL map like database stored in file
+ * AVL map like database stored in file. Keys are ordered by unsigned 
+ * comparison of serialized key bytes. With order preserving key 
+ * serialization (see OrderedKeySerialization) it is natural order of keys 
+ * and range() returns entries in that order.
  * @author antons
  */
-public class AvlTreeDb<K, V> extends AbstractDb {
-    protected BytesSerializer<K> keyserializer;
-    protected BytesDeserializer<K> keydeserializer;
-    protected BytesSerializer<V> serializer;
-    protected BytesDeserializer<V> deserializer;
-    protected RandomAccessFile raf;
+public class AvlTreeDb<K, V> extends AbstractAvlTreeDb {
+    private static final int NODE_HEADER_SIZE = 8 + 8 + 8 + 4 + 4 + 4;
+    protected BufferSerializer<K> keyserializer;
+    protected BufferDeserializer<K> keydeserializer;
+    protected BufferSerializer<V> serializer;
+    protected BufferDeserializer<V> deserializer;
     protected long index = 0;
-    protected long size = 0;
-    private DbByteArrayOutputStream keyos ;
-    private DataOutputStream keydos;
+    private ByteBuffer keyos = ByteBuffer.allocate(256);
     private DbByteArrayInputStream keyis ;
-    private DataInputStream keydis;
-    private DbByteArrayOutputStream os ;
-    private DataOutputStream dos;
+    private ByteBuffer keydis;
+    private ByteBuffer os = ByteBuffer.allocate(1024);
     private DbByteArrayInputStream is ;
-    private DataInputStream dis;
+    private ByteBuffer dis;
+    private ByteBuffer header = ByteBuffer.allocate(NODE_HEADER_SIZE);
+    private ValueCompression compression;
     
     public AvlTreeDb(DbFile dbfile
             , BytesSerializer<K> keyserializer, BytesDeserializer<K> keydeserializer
             , BytesSerializer<V> serializer, BytesDeserializer<V> deserializer
             ) {
+        this(dbfile
+            , BufferSerialization.serializer(keyserializer), BufferSerialization.deserializer(keydeserializer)
+            , BufferSerialization.serializer(serializer), BufferSerialization.deserializer(deserializer));
+    }
+    
+    public AvlTreeDb(DbFile dbfile
+            , BufferSerializer<K> keyserializer, BufferDeserializer<K> keydeserializer
+            , BufferSerializer<V> serializer, BufferDeserializer<V> deserializer
+            ) {
+        this(dbfile, keyserializer, keydeserializer, serializer, deserializer, null);
+    }
+    
+    /**
+     * Creates database with compression of values.
+     * @param dbfile
+     * @param keyserializer
+     * @param keydeserializer
+     * @param serializer
+     * @param deserializer
+     * @param compression value compression (can be null)
+     */
+    public AvlTreeDb(DbFile dbfile
+            , BufferSerializer<K> keyserializer, BufferDeserializer<K> keydeserializer
+            , BufferSerializer<V> serializer, BufferDeserializer<V> deserializer
+            , ValueCompression compression
+            ) {
         super(dbfile);
+        this.compression = compression;
         this.keyserializer = keyserializer;
         this.keydeserializer = keydeserializer;
         this.serializer = serializer;
         this.deserializer = deserializer;
-        raf = dbfile.randomAccessFile();
-        if(dbfile.exists()) {
-            try {
-                this.size = raf.length();
-            } catch(IOException e) {
-                throw new TempDbException("Unable to read file lenagth from " + dbfile, e);
-            }
-        }
         
-        os = new DbByteArrayOutputStream();
-        try {
-            dos = new DataOutputStream(os);
-        } catch(Exception e) {
-            throw new TempDbException("Unable to create temporary output stream from " + dbfile, e);
-        }
-
         is = new DbByteArrayInputStream(new byte[1]);
-        try {
-            dis = new DataInputStream(is);
-        } catch(Exception e) {
-            throw new TempDbException("Unable to create temporary input stream from " + dbfile, e);
-        }
-        
-        keyos = new DbByteArrayOutputStream();
-        try {
-            keydos = new DataOutputStream(keyos);
-        } catch(Exception e) {
-            throw new TempDbException("Unable to create temporary output stream from " + dbfile, e);
-        }
-
+        dis = ByteBuffer.wrap(is.buff());
         keyis = new DbByteArrayInputStream(new byte[1]);
-        try {
-            keydis = new DataInputStream(keyis);
-        } catch(Exception e) {
-            throw new TempDbException("Unable to create temporary input stream from " + dbfile, e);
+        keydis = ByteBuffer.wrap(keyis.buff());
+        
+        if((compression != null) && (size > 0)) {
+            try {
+                compression.readHeader(raf, 8);
+            } catch(IOException e) {
+                throw new TempDbException("Unable to read compression header from " + dbfile, e);
+            }
         }
-
     }
 
     @Override
@@ -104,6 +111,8 @@ public class AvlTreeDb<K, V> extends AbstractDb {
             raf.close();
         } catch(Exception e) {
             throw new TempDbException("Unable to close random access file from " + dbfile, e);
+        } finally {
+            if(compression != null) compression.release();
         }
     }
 
@@ -115,56 +124,74 @@ public class AvlTreeDb<K, V> extends AbstractDb {
      */    
     public synchronized void put(K key, V value) {
         try {
-            boolean first = false;
-            if(size == 0) {
-                raf.writeLong(8l);
-                size = 8;
-                first = true;
-            }
-            
-            Node node = new Node();
-            node.id = size;
-            
             int keysz = serializeKey(key);
-            node.keySize = keysz;
-            
-            os.reset();
-            serializer.serialize(value, dos);
-            int sz = os.count();
-            node.valueSize = sz;
-
-            raf.seek(size);
-            raf.writeLong(node.left);
-            raf.writeLong(node.right);
-            raf.writeLong(node.next);
-            raf.writeInt(node.height);
-            raf.writeInt(node.keySize);
-            raf.writeInt(node.valueSize);
-            raf.write(keyos.buff(), 0, keysz);
-            raf.write(os.buff(), 0, sz);
-            size = size + 8 + 8 + 8 + 4 + 4 + 4 + keysz + sz;
-            
-            if(first) return;
-            long root = rootId();
-            long newroot = insert(root, node.id, keydata());
-            if(root != newroot) {
-                raf.seek(0);
-                raf.writeLong(newroot);
-                rootId = newroot;
-            }
-            
+            os = BufferSerialization.serialize(serializer, value, os, NODE_HEADER_SIZE + keysz);
+            putNode(keysz);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write to random access file from " + dbfile, e);
+        }
+    }
+    
+    /**
+     * Adds already serialized value to database. Bytes must be in format 
+     * produced by value serializer.
+     * @param key
+     * @param value serialized value (remaining bytes are used)
+     */    
+    public synchronized void putBytes(K key, ByteBuffer value) {
+        try {
+            int keysz = serializeKey(key);
+            os = BufferSerialization.copy(value, os, NODE_HEADER_SIZE + keysz);
+            putNode(keysz);
         } catch(Exception e) {
             throw new TempDbException("Unable to write to random access file from " + dbfile, e);
         }
     }
     
-    long rootId = -1;
-    private long rootId() throws IOException {
-        if(rootId > 0) return rootId;
-        if(size <= 0) return 0;
-        raf.seek(0);
-        rootId = raf.readLong();
-        return rootId;
+    /**
+     * Writes node with key from keyos and value from os.
+     */
+    private void putNode(int keysz) throws IOException {
+        boolean first = false;
+        if(size == 0) {
+            long start = 8;
+            if(compression != null) {
+                compression.writeHeader(raf, 8);
+                start = start + compression.headerSize();
+            }
+            raf.seek(0);
+            raf.writeLong(start);
+            size = start;
+            first = true;
+        }
+        
+        ByteBuffer stored = os;
+        boolean compressed = false;
+        if(compression != null) {
+            stored = compression.encode(os, NODE_HEADER_SIZE + keysz, raf, 8);
+            compressed = compression.encoded();
+        }
+        
+        Node node = new Node();
+        node.id = size;
+        node.keySize = keysz;
+        
+        int sz = stored.position() - NODE_HEADER_SIZE - keysz;
+        node.valueSize = compressed ? -sz : sz;
+        stored.putLong(0, node.left);
+        stored.putLong(8, node.right);
+        stored.putLong(16, node.next);
+        stored.putInt(24, node.height);
+        stored.putInt(28, node.keySize);
+        stored.putInt(32, node.valueSize);
+        System.arraycopy(keyos.array(), 0, stored.array(), NODE_HEADER_SIZE, keysz);
+
+        raf.seek(size);
+        raf.write(stored.array(), 0, NODE_HEADER_SIZE + keysz + sz);
+        size = size + NODE_HEADER_SIZE + keysz + sz;
+        
+        if(first) return;
+        link(node.id);
     }
 
     /**
@@ -177,9 +204,8 @@ public class AvlTreeDb<K, V> extends AbstractDb {
         if(size == 0) return list;
         try {
 
-            int keysz = serializeKey(key);
-            byte[] keydata = new byte[keysz];
-            System.arraycopy(keyos.buff(), 0, keydata, 0, keysz);
+            serializeKey(key);
+            byte[] keydata = keydata();
             
             long root = rootId();
             
@@ -197,15 +223,149 @@ public class AvlTreeDb<K, V> extends AbstractDb {
         }
     }
 
+    /**
+     * Reads serialized values from database identified by key.
+     * @param key
+     * @return List of read only buffers with serialized values
+     */
+    public synchronized List<ByteBuffer> getBytes(K key) {
+        List<ByteBuffer> list = new ArrayList<ByteBuffer>();
+        if(size == 0) return list;
+        try {
+            serializeKey(key);
+            Node node = findNode(rootId(), keydata());
+            if(node != null) node = loadNode(node.id, false, true);
+            while(node != null) {
+                list.add(BufferSerialization.readOnlyCopy(dis.array(), 0, dis.limit()));
+                node = loadNode(node.next, false, true);
+            }
+            return list;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+    
+    /**
+     * Reads first value stored with key. If deserializer supports it value 
+     * is read to given instance.
+     * @param key
+     * @param reuse instance to be reused (can be null)
+     * @return value or null if key is not stored
+     */
+    public synchronized V first(K key, V reuse) {
+        if(size == 0) return null;
+        try {
+            serializeKey(key);
+            Node node = findNode(rootId(), keydata());
+            if(node == null) return null;
+            loadNode(node.id, true, true);
+            return BufferSerialization.deserialize(deserializer, dis, reuse);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+    
+    /**
+     * Creates source of key value pairs with keys from given range in 
+     * order of serialized keys. Database must not be changed while source 
+     * is used.
+     * @param from first key (inclusive) or null for no lower bound
+     * @param to last key (exclusive) or null for no upper bound
+     * @return source
+     */
+    public synchronized SequenceSource<Map.Entry<K, V>> range(K from, K to) {
+        try {
+            byte[] fromdata = null;
+            byte[] todata = null;
+            if(from != null) {
+                serializeKey(from);
+                fromdata = keydata();
+            }
+            if(to != null) {
+                serializeKey(to);
+                todata = keydata();
+            }
+            return new Range(fromdata, todata);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to serialize range keys for " + dbfile, e);
+        }
+    }
+    
+    /**
+     * In order traversal. (Right subtree holds lower keys.)
+     */
+    private class Range implements SequenceSource<Map.Entry<K, V>> {
+        private byte[] from;
+        private byte[] to;
+        private List<Long> stack = new ArrayList<Long>();
+        private long next = 0;
+        private boolean started = false;
+        private boolean finished = false;
+
+        public Range(byte[] from, byte[] to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            synchronized(AvlTreeDb.this) {
+                try {
+                    if(!started) {
+                        started = true;
+                        if(size > 0) push(rootId(), from);
+                    }
+                    if(finished) return null;
+                    if(next > 0) {
+                        Node node = loadNode(next, true, true);
+                        next = node.next;
+                        return entry();
+                    }
+                    if(stack.isEmpty()) {
+                        finished = true;
+                        return null;
+                    }
+                    Node node = loadNode(stack.remove(stack.size() - 1), true, true);
+                    if((to != null) && (compareKeyData(keyis.buff(), keyis.count(), to, to.length) >= 0)) {
+                        finished = true;
+                        stack.clear();
+                        return null;
+                    }
+                    Map.Entry<K, V> rv = entry();
+                    next = node.next;
+                    push(node.left, null);
+                    return rv;
+                } catch(Exception e) {
+                    throw new TempDbException("Unable to read random access file from " + dbfile, e);
+                }
+            }
+        }
+        
+        private Map.Entry<K, V> entry() throws IOException {
+            return new AbstractMap.SimpleImmutableEntry<K, V>(bufferedKey(), bufferedValue());
+        }
+        
+        private void push(long id, byte[] from) throws IOException {
+            while(id > 0) {
+                Node node = loadNode(id, from != null, false);
+                if((from != null) && (compareKeyData(keyis.buff(), keyis.count(), from, from.length) < 0)) {
+                    id = node.left;
+                } else {
+                    stack.add(id);
+                    id = node.right;
+                }
+            }
+        }
+    }
+
     private int serializeKey(K key) throws IOException {
-        keyos.reset();
-        keyserializer.serialize(key, keydos);
-        return keyos.count();
+        keyos = BufferSerialization.serialize(keyserializer, key, keyos, 0);
+        return keyos.position();
     }
     
     private byte[] keydata() throws IOException {
-        byte[] rv = new byte[keyos.count()];
-        System.arraycopy(keyos.buff(), 0, rv, 0, keyos.count());
+        byte[] rv = new byte[keyos.position()];
+        System.arraycopy(keyos.array(), 0, rv, 0, keyos.position());
         return rv;
     }
     
@@ -229,8 +389,10 @@ public class AvlTreeDb<K, V> extends AbstractDb {
         int size = length1;
         if(length2 < size) size = length2;
         for(int i = 0; i < size; i++) {
-            if(data1[i] < data2[i]) return -1;       
-            if(data1[i] > data2[i]) return 1;       
+            int b1 = data1[i] & 0xff;
+            int b2 = data2[i] & 0xff;
+            if(b1 < b2) return -1;       
+            if(b1 > b2) return 1;       
         }
         if(length1 < length2) return -1;
         if(length1 > length2) return 1;
@@ -241,27 +403,39 @@ public class AvlTreeDb<K, V> extends AbstractDb {
     private Node loadNode(long id, boolean loadKey, boolean loadValue) throws IOException {
         if(id <= 0) return null;
         raf.seek(id);
+        raf.readFully(header.array(), 0, NODE_HEADER_SIZE);
         Node node = new Node();
         node.id = id;
-        node.left = raf.readLong();
-        node.right = raf.readLong();
-        node.next = raf.readLong();
-        node.height = raf.readInt();
-        node.keySize = raf.readInt();
-        node.valueSize = raf.readInt();
+        node.left = header.getLong(0);
+        node.right = header.getLong(8);
+        node.next = header.getLong(16);
+        node.height = header.getInt(24);
+        node.keySize = header.getInt(28);
+        node.valueSize = header.getInt(32);
         if(loadKey || loadValue) {
             keyis.allocate(node.keySize);
-            int n = raf.read(keyis.buff(), 0, node.keySize);
-            keyis.count(n);
+            raf.readFully(keyis.buff(), 0, node.keySize);
+            keyis.count(node.keySize);
+            keydis = buffer(keydis, keyis);
         }
         if(loadValue) {
-            is.allocate(node.valueSize);
-            int n = raf.read(is.buff(), 0, node.valueSize);
-            is.count(n);
+            int sz = Math.abs(node.valueSize);
+            is.allocate(sz);
+            raf.readFully(is.buff(), 0, sz);
+            is.count(sz);
+            if(node.valueSize < 0) dis = compression.decode(is.buff(), sz);
+            else dis = buffer(dis, is);
         }
         return node;
     }
 
+    private static ByteBuffer buffer(ByteBuffer buffer, DbByteArrayInputStream is) {
+        if(buffer.array() != is.buff()) buffer = ByteBuffer.wrap(is.buff());
+        buffer.clear();
+        buffer.limit(is.count());
+        return buffer;
+    }
+
     private V bufferedValue() throws IOException {
         V rv = deserializer.deserialize(dis);
         return rv;
@@ -272,113 +446,18 @@ public class AvlTreeDb<K, V> extends AbstractDb {
         return rv;
     }
 
-    private void saveNode(Node node) throws IOException {
-        if(node == null) return;
-        if(node.id <= 0) return;
-        raf.seek(node.id);
-        raf.writeLong(node.left);
-        raf.writeLong(node.right);
-        raf.writeLong(node.next);
-        raf.writeInt(node.height);
-    }
-
-
-    private long insert(long id, long newId, byte[] keydata) throws IOException {
-        if(id <= 0) return newId;
-        Node node = loadNode(id, true, false);
-        if(node == null) throw new IllegalStateException("Unknown address " + id);
-        int compare = compareKeyData(keyis.buff(), keyis.count(), keydata, keydata.length);
-        if(compare == 0) {
-            while(node.next > 0) {
-                node = loadNode(node.next, false, false);
-            }
-            node.next = newId;
-            saveNode(node);
-            return id;
-        } if(compare > 0) {
-            node.right = insert(node.right, newId, keydata);
-        } else {
-            node.left = insert(node.left, newId, keydata);
-        }
-        saveNode(node);
-        Node n = rebalance(node);
-        return n.id;
-    }
-
-
-    private Node rebalance(Node node) throws IOException {
-        updateHeight(node);
-        int balance = getBalance(node);
-        if (balance > 1) {
-            Node right = loadNode(node.right, false, false);
-            Node rightright = loadNode(right.right, false, false);
-            Node rightleft = loadNode(right.left, false, false);
-            if (height(rightright) > height(rightleft)) {
-                node = rotateLeft(node);
-            } else {
-                node.right = rotateRight(right).id;
-                saveNode(node);
-                node = rotateLeft(node);
-            }
-        } else if (balance < -1) {
-            Node left = loadNode(node.left, false, false);
-            Node leftright = loadNode(left.right, false, false);
-            Node leftleft = loadNode(left.left, false, false);
-            if (height(leftleft) > height(leftright))
-                node = rotateRight(node);
-            else {
-                node.left = rotateLeft(left).id;
-                saveNode(node);
-                node = rotateRight(node);
-            }
-        }
-        return node;
-    }
-
-    private Node rotateLeft(Node node) throws IOException {
-        Node right = loadNode(node.right, false, false);
-        Node righleft = loadNode(right.left, false, false);
-        right.left = (node == null)? 0 : node.id;
-        node.right = (righleft == null)? 0 : righleft.id;
-        updateHeight(node);
-        updateHeight(right);
-        saveNode(right);
-        saveNode(node);
-        return right;
-    }
-
-
-    private Node rotateRight(Node node) throws IOException {
-        Node left = loadNode(node.left, false, false);
-        Node leftright = loadNode(left.right, false, false);
-        left.right = (node == null)? 0 : node.id;
-        node.left = (leftright == null)? 0 : leftright.id;
-        updateHeight(node);
-        updateHeight(left);
-        saveNode(left);
-        saveNode(node);
-        return left;
+    @Override
+    protected AbstractAvlTreeDb.Node node(long id, boolean loadKey) throws IOException {
+        return loadNode(id, loadKey, false);
     }
 
-    private void updateHeight(Node node) throws IOException {
-        if(node == null) return;
-        int oldval = node.height;
-        Node right = loadNode(node.right, false, false);
-        Node left = loadNode(node.left, false, false);
-        node.height = Math.max(height(right), height(left)) + 1;
-        if(node.height != oldval) saveNode(node);
-    }
- 
-    private int height(Node node) {
-        if(node == null) return 0;
-        return node.height;
-    }
- 
-    private int getBalance(Node node) throws IOException {
-        if(node == null) return 0;
-        Node right = loadNode(node.right, false, false);
-        Node left = loadNode(node.left, false, false);
-        return height(right) - height(left);
+    /**
+     * Compares key of node with inserted key still kept in keyos. 
+     * (Right subtree holds lower keys.)
+     */
+    @Override
+    protected int direction(AbstractAvlTreeDb.Node node) {
+        return compareKeyData(keyis.buff(), keyis.count(), keyos.array(), keyos.position());
     }
  
     public String dump() {
@@ -413,12 +492,7 @@ public class AvlTreeDb<K, V> extends AbstractDb {
         dump(node.right, prefix+"|  ", sb);
     }
 
-    private static class Node {
-        protected long id;    
-        protected long left;  
-        protected long right;  
-        protected long next;
-        protected int height;
+    private static class Node extends AbstractAvlTreeDb.Node {
         protected int keySize;
         protected int valueSize;
 
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbByteArrayInputStream;
+import sk.antons.tempdb.base.DbByteArrayOutputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.DbMappedFile;
+import sk.antons.tempdb.base.DbRandomAccess;
+import sk.antons.tempdb.base.DbStorage;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Read only map like database created by ConstantHashDbWriter. Only file 
+ * header (256 table positions) is held in memory. Lookup reads hash table 
+ * slot by one read and then record by second read. (Record with value 
+ * larger than lookup buffer needs one more read and each hash collision 
+ * adds a slot read.)
+ * <p>
+ * If database is memory mapped, lookups are not synchronized and can be 
+ * done by more threads at once (each thread reuses its own lookup buffers). 
+ * Otherwise file is read using synchronized random access file.
+ * @author antons
+ */
+public class ConstantHashDb<K, V> extends AbstractDb {
+    protected BytesSerializer<K> keyserializer;
+    protected BytesDeserializer<V> deserializer;
+    protected DbRandomAccess raf;
+    protected DbMappedFile mapped;
+    protected long[] tablePositions = new long[ConstantHashDbWriter.TABLES];
+    protected int[] tableSlots = new int[ConstantHashDbWriter.TABLES];
+    private Lookup lookup = new Lookup();
+    private final ThreadLocal<Lookup> lookups = new ThreadLocal<Lookup>();
+    
+    /**
+     * Creates new database
+     * @param dbfile
+     * @param keyserializer
+     * @param deserializer
+     * @param memoryMapped true if file should be memory mapped (used only with channel storage, mapped storage maps file itself)
+     */
+    public ConstantHashDb(DbFile dbfile
+            , BytesSerializer<K> keyserializer, BytesDeserializer<V> deserializer
+            , boolean memoryMapped
+            ) {
+        super(dbfile);
+        dbfile.checkExistence();
+        this.keyserializer = keyserializer;
+        this.deserializer = deserializer;
+        if(memoryMapped && (dbfile.storage() == DbStorage.Type.CHANNEL)) mapped = new DbMappedFile(dbfile);
+        else raf = dbfile.randomAccess();
+        try {
+            for(int t = 0; t < ConstantHashDbWriter.TABLES; t++) {
+                tablePositions[t] = readLong(t * 12);
+                tableSlots[t] = readInt(t * 12 + 8);
+            }
+        } catch(Exception e) {
+            close();
+            throw new TempDbException("Unable to read header from " + dbfile, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if(raf != null) raf.close();
+            if(mapped != null) mapped.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close random access file from " + dbfile, e);
+        }
+    }
+
+    private int readInt(long position) throws IOException {
+        if(mapped != null) return mapped.readInt(position);
+        raf.seek(position);
+        return raf.readInt();
+    }
+    
+    private long readLong(long position) throws IOException {
+        if(mapped != null) return mapped.readLong(position);
+        raf.seek(position);
+        return raf.readLong();
+    }
+    
+    private void read(long position, byte[] buff, int offset, int length) throws IOException {
+        if(mapped != null) {
+            mapped.read(position, buff, offset, length);
+        } else {
+            raf.seek(position);
+            raf.readFully(buff, offset, length);
+        }
+    }
+    
+    private int readAvailable(long position, byte[] buff, int length) throws IOException {
+        if(mapped != null) {
+            length = (int)Math.min(length, mapped.size() - position);
+            mapped.read(position, buff, 0, length);
+            return length;
+        }
+        raf.seek(position);
+        int n = 0;
+        while(n < length) {
+            int r = raf.read(buff, n, length - n);
+            if(r < 0) break;
+            n = n + r;
+        }
+        return n;
+    }
+    
+    private static int toInt(byte[] data, int i) {
+        return ((data[i] & 0xff) << 24) | ((data[i+1] & 0xff) << 16) 
+            | ((data[i+2] & 0xff) << 8) | (data[i+3] & 0xff);
+    }
+    
+    /**
+     * Reads values from database stored with key.
+     * @param key
+     * @return list of values
+     */
+    public List<V> get(K key) {
+        try {
+            if(mapped != null) return get(key, threadLookup());
+            synchronized(this) {
+                return get(key, lookup);
+            }
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read from " + dbfile, e);
+        }
+    }
+    
+    private Lookup threadLookup() {
+        Lookup rv = lookups.get();
+        if(rv == null) {
+            rv = new Lookup();
+            lookups.set(rv);
+        }
+        return rv;
+    }
+    
+    private List<V> get(K key, Lookup lookup) throws IOException {
+        List<V> list = new ArrayList<V>();
+        lookup.keyos.reset();
+        keyserializer.serialize(key, lookup.keydos);
+        int keysz = lookup.keyos.count();
+        byte[] keydata = lookup.keyos.buff();
+        int hash = ConstantHashDbWriter.hash(keydata, keysz);
+        int t = hash & 0xff;
+        int slots = tableSlots[t];
+        if(slots == 0) return list;
+        int slot = (hash >>> 8) % slots;
+        byte[] slotdata = lookup.slot;
+        for(int i = 0; i < slots; i++) {
+            long slotPosition = tablePositions[t] + ((long)slot) * ConstantHashDbWriter.SLOT_SIZE;
+            read(slotPosition, slotdata, 0, ConstantHashDbWriter.SLOT_SIZE);
+            long position = ((toInt(slotdata, 4) & 0xffffffffL) << 32) | (toInt(slotdata, 8) & 0xffffffffL);
+            if(position == 0) break;
+            if(toInt(slotdata, 0) == hash) {
+                if(lookup.record.length < keysz + 8) lookup.record = new byte[keysz + 8];
+                byte[] record = lookup.record;
+                int n = readAvailable(position, record, record.length);
+                int recordKeysz = toInt(record, 0);
+                if((recordKeysz == keysz) && (n >= keysz + 8) && equals(keydata, 0, record, 8, keysz)) {
+                    int sz = toInt(record, 4);
+                    int available = Math.min(sz, n - 8 - keysz);
+                    lookup.is.allocate(sz);
+                    System.arraycopy(record, 8 + keysz, lookup.is.buff(), 0, available);
+                    if(available < sz) read(position + 8 + keysz + available, lookup.is.buff(), available, sz - available);
+                    lookup.is.count(sz);
+                    list.add(deserializer.deserialize(lookup.dis));
+                }
+            }
+            slot = (slot + 1) % slots;
+        }
+        return list;
+    }
+
+    private static boolean equals(byte[] data1, int offset1, byte[] data2, int offset2, int length) {
+        for(int i = 0; i < length; i++) {
+            if(data1[offset1 + i] != data2[offset2 + i]) return false;
+        }
+        return true;
+    }
+    
+    private static class Lookup {
+        DbByteArrayOutputStream keyos = new DbByteArrayOutputStream();
+        DataOutputStream keydos = new DataOutputStream(keyos);
+        DbByteArrayInputStream is = new DbByteArrayInputStream(new byte[1]);
+        DataInputStream dis = new DataInputStream(is);
+        byte[] slot = new byte[ConstantHashDbWriter.SLOT_SIZE];
+        byte[] record = new byte[512];
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbByteArrayOutputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.DbRandomAccess;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Writer for constant hash database file (similar to cdb). Keys and values 
+ * are stored sequentially and hash tables are written at the end. File header 
+ * contains positions of 256 hash tables. Each hash table has twice as many 
+ * slots as keys hashed to it. Such file can be then used by ConstantHashDb.
+ * <pre>
+ * file:   header [record]* [table]*
+ * header: 256 x (long table position, int table slots)
+ * record: int key length, int value length, key, value
+ * table:  slots x (int hash, long record position)
+ * </pre>
+ * Hash and position of each record are held in memory until close().
+ * @author antons
+ */
+public class ConstantHashDbWriter<K, V> extends AbstractDb {
+    public static final int TABLES = 256;
+    public static final int HEADER_SIZE = TABLES * 12;
+    public static final int SLOT_SIZE = 12;
+    
+    protected BytesSerializer<K> keyserializer;
+    protected BytesSerializer<V> serializer;
+    protected OutputStream os;
+    protected DataOutputStream dos;
+    protected long position = HEADER_SIZE;
+    protected int count = 0;
+    private int[] hashes = new int[1024];
+    private long[] positions = new long[1024];
+    private DbByteArrayOutputStream keyos;
+    private DataOutputStream keydos;
+    private DbByteArrayOutputStream valueos;
+    private DataOutputStream valuedos;
+    
+    public ConstantHashDbWriter(DbFile dbfile, BytesSerializer<K> keyserializer, BytesSerializer<V> serializer) {
+        super(dbfile);
+        this.keyserializer = keyserializer;
+        this.serializer = serializer;
+        os = dbfile.outputStream();
+        try {
+            dos = new DataOutputStream(os);
+            dos.write(new byte[HEADER_SIZE]);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to create output stream from " + dbfile, e);
+        }
+        keyos = new DbByteArrayOutputStream();
+        keydos = new DataOutputStream(keyos);
+        valueos = new DbByteArrayOutputStream();
+        valuedos = new DataOutputStream(valueos);
+    }
+
+    /**
+     * Hash of key data.
+     */
+    static int hash(byte[] data, int length) {
+        int h = 5381;
+        for(int i = 0; i < length; i++) {
+            h = ((h << 5) + h) ^ (data[i] & 0xff);
+        }
+        return h;
+    }
+    
+    /**
+     * Adds value with key. Same key can be added more times.
+     * @param key
+     * @param value 
+     */
+    public synchronized void put(K key, V value) {
+        try {
+            keyos.reset();
+            keyserializer.serialize(key, keydos);
+            int keysz = keyos.count();
+            valueos.reset();
+            serializer.serialize(value, valuedos);
+            int sz = valueos.count();
+            if(count == hashes.length) {
+                int[] newhashes = new int[count * 2];
+                System.arraycopy(hashes, 0, newhashes, 0, count);
+                hashes = newhashes;
+                long[] newpositions = new long[count * 2];
+                System.arraycopy(positions, 0, newpositions, 0, count);
+                positions = newpositions;
+            }
+            hashes[count] = hash(keyos.buff(), keysz);
+            positions[count] = position;
+            count++;
+            dos.writeInt(keysz);
+            dos.writeInt(sz);
+            dos.write(keyos.buff(), 0, keysz);
+            dos.write(valueos.buff(), 0, sz);
+            position = position + 8 + keysz + sz;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write to output stream from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Writes hash tables and header and closes file.
+     */
+    @Override
+    public void close() {
+        try {
+            int[] tableCounts = new int[TABLES];
+            for(int i = 0; i < count; i++) {
+                tableCounts[hashes[i] & 0xff]++;
+            }
+            int[] tableStarts = new int[TABLES + 1];
+            for(int t = 0; t < TABLES; t++) {
+                tableStarts[t + 1] = tableStarts[t] + tableCounts[t];
+            }
+            int[] order = new int[count];
+            int[] fill = new int[TABLES];
+            for(int i = 0; i < count; i++) {
+                int t = hashes[i] & 0xff;
+                order[tableStarts[t] + fill[t]++] = i;
+            }
+            
+            long[] tablePositions = new long[TABLES];
+            int[] tableSlots = new int[TABLES];
+            for(int t = 0; t < TABLES; t++) {
+                int slots = tableCounts[t] * 2;
+                int[] slotHashes = new int[slots];
+                long[] slotPositions = new long[slots];
+                for(int j = tableStarts[t]; j < tableStarts[t + 1]; j++) {
+                    int i = order[j];
+                    int slot = ((hashes[i] >>> 8) % slots);
+                    while(slotPositions[slot] != 0) slot = (slot + 1) % slots;
+                    slotHashes[slot] = hashes[i];
+                    slotPositions[slot] = positions[i];
+                }
+                tablePositions[t] = position;
+                tableSlots[t] = slots;
+                for(int s = 0; s < slots; s++) {
+                    dos.writeInt(slotHashes[s]);
+                    dos.writeLong(slotPositions[s]);
+                }
+                position = position + ((long)slots) * SLOT_SIZE;
+            }
+            dos.flush();
+            os.flush();
+            os.close();
+            
+            DbRandomAccess raf = dbfile.randomAccess();
+            try {
+                DbByteArrayOutputStream header = new DbByteArrayOutputStream(HEADER_SIZE);
+                DataOutputStream headerdos = new DataOutputStream(header);
+                for(int t = 0; t < TABLES; t++) {
+                    headerdos.writeLong(tablePositions[t]);
+                    headerdos.writeInt(tableSlots[t]);
+                }
+                raf.seek(0);
+                raf.write(header.buff(), 0, header.count());
+            } finally {
+                raf.close();
+            }
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close output stream from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Number of values written to database
+     * @return count
+     */
+    public synchronized long count() { return count; }
+    
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbBufferedInput;
+import sk.antons.tempdb.base.DbByteArrayInputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.KeyComparison;
+import sk.antons.tempdb.base.DbRandomAccess;
+import sk.antons.tempdb.sequence.SequenceSource;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+
+/**
+ * Read only map like database created by ImmutableSortedDbWriter. First keys 
+ * of all blocks are held in memory, so lookup is binary search in memory 
+ * and reading of one block. Values can be also scanned in key order.
+ * @author antons
+ */
+public class ImmutableSortedDb<K, V> extends AbstractDb {
+    protected BytesDeserializer<K> keydeserializer;
+    protected BytesDeserializer<V> deserializer;
+    protected Comparator<K> comparator;
+    protected DbRandomAccess raf;
+    protected long count;
+    protected long tag;
+    protected long[] positions;
+    protected int[] lengths;
+    protected K[] firstKeys;
+    private Block block = new Block();
+    
+    /**
+     * Creates new database
+     * @param dbfile
+     * @param keydeserializer
+     * @param deserializer
+     * @param comparator comparator of keys (natural order is used if null)
+     */
+    public ImmutableSortedDb(DbFile dbfile
+            , BytesDeserializer<K> keydeserializer, BytesDeserializer<V> deserializer
+            , Comparator<K> comparator
+            ) {
+        super(dbfile);
+        dbfile.checkExistence();
+        this.keydeserializer = keydeserializer;
+        this.deserializer = deserializer;
+        this.comparator = comparator;
+        raf = dbfile.randomAccess();
+        try {
+            long length = raf.length();
+            if(length < ImmutableSortedDbWriter.FOOTER_SIZE) throw new TempDbException("Not a sorted database file " + dbfile);
+            raf.seek(length - ImmutableSortedDbWriter.FOOTER_SIZE);
+            tag = raf.readLong();
+            count = raf.readLong();
+            long indexPosition = raf.readLong();
+            int blockCount = raf.readInt();
+            int magic = raf.readInt();
+            if(magic != ImmutableSortedDbWriter.MAGIC) throw new TempDbException("Not a sorted database file " + dbfile);
+            positions = new long[blockCount];
+            lengths = new int[blockCount];
+            firstKeys = newKeyArray(blockCount);
+            DbBufferedInput input = new DbBufferedInput(raf, 64 * 1024);
+            input.seek(indexPosition);
+            for(int i = 0; i < blockCount; i++) {
+                positions[i] = input.readLong();
+                lengths[i] = input.readInt();
+                int keysz = input.readInt();
+                block.is.allocate(keysz);
+                input.readFully(block.is.buff(), 0, keysz);
+                block.is.count(keysz);
+                firstKeys[i] = keydeserializer.deserialize(block.dis);
+            }
+        } catch(TempDbException e) {
+            close();
+            throw e;
+        } catch(Exception e) {
+            close();
+            throw new TempDbException("Unable to read index from " + dbfile, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked") // array is used only internally
+    private static <K> K[] newKeyArray(int size) {
+        return (K[])new Object[size];
+    }
+    
+    @Override
+    public void close() {
+        try {
+            raf.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Number of values stored in database
+     * @return count
+     */
+    public long size() { return count; }
+    
+    /**
+     * Tag stored in footer of file by writer.
+     * @return tag
+     */
+    public long tag() { return tag; }
+
+    private int compare(K key1, K key2) {
+        return KeyComparison.compare(comparator, key1, key2);
+    }
+    
+    /**
+     * Finds first block which can contain key. (Last block with first key 
+     * less than key)
+     */
+    private int findBlock(K key) {
+        int low = 0;
+        int high = firstKeys.length - 1;
+        while(low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if(compare(firstKeys[mid], key) < 0) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+    
+    private synchronized void loadBlock(int b, Block block) throws IOException {
+        block.is.allocate(lengths[b]);
+        raf.seek(positions[b]);
+        raf.readFully(block.is.buff(), 0, lengths[b]);
+        block.is.count(lengths[b]);
+        block.index = b;
+    }
+    
+    /**
+     * Reads values from database stored with key.
+     * @param key
+     * @return list of values
+     */
+    public synchronized List<V> get(K key) {
+        List<V> list = new ArrayList<V>();
+        if(count == 0) return list;
+        try {
+            int b = findBlock(key);
+            while(b < firstKeys.length) {
+                if(compare(firstKeys[b], key) > 0) break;
+                loadBlock(b, block);
+                while(block.hasNext()) {
+                    int compare = compare(block.key(), key);
+                    if(compare > 0) return list;
+                    if(compare == 0) list.add(block.value());
+                    else block.skipValue();
+                }
+                b++;
+            }
+            return list;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Creates source of all key value pairs in key order.
+     * @return source
+     */
+    public SequenceSource<Map.Entry<K, V>> scan() {
+        return new Scanner(-1, null);
+    }
+
+    /**
+     * Creates source of key value pairs in key order starting with first 
+     * key which is not less than from.
+     * @param from start key
+     * @return source
+     */
+    public SequenceSource<Map.Entry<K, V>> scan(K from) {
+        if(count == 0) return new Scanner(-1, null);
+        return new Scanner(findBlock(from) - 1, from);
+    }
+
+    private class Block {
+        int index = -1;
+        DbByteArrayInputStream is;
+        DataInputStream dis;
+
+        Block() {
+            is = new DbByteArrayInputStream(new byte[1]);
+            is.count(0);
+            dis = new DataInputStream(is);
+        }
+        
+        boolean hasNext() {
+            return is.pos() < is.count();
+        }
+        
+        K key() throws IOException {
+            int sz = dis.readInt();
+            int end = is.pos() + sz;
+            int blockEnd = is.count();
+            is.count(end);
+            K rv = keydeserializer.deserialize(dis);
+            is.count(blockEnd);
+            is.pos(end);
+            return rv;
+        }
+        
+        V value() throws IOException {
+            int sz = dis.readInt();
+            int end = is.pos() + sz;
+            int blockEnd = is.count();
+            is.count(end);
+            V rv = deserializer.deserialize(dis);
+            is.count(blockEnd);
+            is.pos(end);
+            return rv;
+        }
+        
+        void skipValue() throws IOException {
+            int sz = dis.readInt();
+            is.pos(is.pos() + sz);
+        }
+    }
+    
+    private class Scanner implements SequenceSource<Map.Entry<K, V>> {
+        private Block block = new Block();
+        private K from;
+
+        Scanner(int index, K from) {
+            block.index = index;
+            this.from = from;
+        }
+        
+        @Override
+        public Map.Entry<K, V> next() {
+            try {
+                while(!block.hasNext()) {
+                    if(block.index + 1 >= firstKeys.length) return null;
+                    loadBlock(block.index + 1, block);
+                }
+                K key = block.key();
+                while(from != null) {
+                    if(compare(key, from) >= 0) {
+                        from = null;
+                        break;
+                    }
+                    block.skipValue();
+                    while(!block.hasNext()) {
+                        if(block.index + 1 >= firstKeys.length) return null;
+                        loadBlock(block.index + 1, block);
+                    }
+                    key = block.key();
+                }
+                return new AbstractMap.SimpleImmutableEntry<K, V>(key, block.value());
+            } catch(Exception e) {
+                throw new TempDbException("Unable to read random access file from " + dbfile, e);
+            }
+        }
+    }
+}
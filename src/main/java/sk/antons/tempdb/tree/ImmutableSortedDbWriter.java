@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.util.Comparator;
+import java.util.List;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.AbstractDb;
+import sk.antons.tempdb.base.DbByteArrayOutputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.KeyComparison;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * Writer for immutable sorted database file. Keys must be added in sorted 
+ * order (same key can be added more times). Keys and values are stored 
+ * sequentially in blocks. First key and position of each block is stored 
+ * in index at the end of file. Such file can be then used by ImmutableSortedDb.
+ * <pre>
+ * file:   [block]* [index entry]* [footer]
+ * block:  [int key length, key, int value length, value]*
+ * index:  long block position, int block length, int key length, first key of block 
+ * footer: long tag, long count, long index position, int block count, int magic
+ * </pre>
+ * Tag is a value defined by user of file (like version of data the file 
+ * was created from).
+ * @author antons
+ */
+public class ImmutableSortedDbWriter<K, V> extends AbstractDb {
+    public static final int MAGIC = 0x54444253;
+    public static final int FOOTER_SIZE = 8 + 8 + 8 + 4 + 4;
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    
+    protected BytesSerializer<K> keyserializer;
+    protected BytesSerializer<V> serializer;
+    protected Comparator<K> comparator;
+    protected OutputStream os;
+    protected DataOutputStream dos;
+    protected int blockSize;
+    protected long position = 0;
+    protected long count = 0;
+    protected long tag = 0;
+    private int blockLength = 0;
+    private int blockCount = 0;
+    private K lastKey;
+    private byte[] firstKey;
+    private DbByteArrayOutputStream indexos;
+    private DataOutputStream indexdos;
+    private DbByteArrayOutputStream keyos;
+    private DataOutputStream keydos;
+    private DbByteArrayOutputStream valueos;
+    private DataOutputStream valuedos;
+    
+    /**
+     * Creates new writer.
+     * @param dbfile
+     * @param keyserializer
+     * @param serializer
+     * @param comparator comparator of keys (natural order is used if null)
+     * @param blockSize minimal size of block
+     */
+    public ImmutableSortedDbWriter(DbFile dbfile
+            , BytesSerializer<K> keyserializer, BytesSerializer<V> serializer
+            , Comparator<K> comparator, int blockSize
+            ) {
+        super(dbfile);
+        if(blockSize < 1) throw new TempDbException("Block size must be positive " + blockSize);
+        this.keyserializer = keyserializer;
+        this.serializer = serializer;
+        this.comparator = comparator;
+        this.blockSize = blockSize;
+        os = dbfile.outputStream();
+        try {
+            dos = new DataOutputStream(os);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to create output stream from " + dbfile, e);
+        }
+        indexos = new DbByteArrayOutputStream();
+        indexdos = new DataOutputStream(indexos);
+        keyos = new DbByteArrayOutputStream();
+        keydos = new DataOutputStream(keyos);
+        valueos = new DbByteArrayOutputStream();
+        valuedos = new DataOutputStream(valueos);
+    }
+
+    /**
+     * Writes last block, index and footer and closes file.
+     */
+    @Override
+    public void close() {
+        try {
+            finishBlock();
+            long indexPosition = position;
+            dos.write(indexos.buff(), 0, indexos.count());
+            dos.writeLong(tag);
+            dos.writeLong(count);
+            dos.writeLong(indexPosition);
+            dos.writeInt(blockCount);
+            dos.writeInt(MAGIC);
+            dos.flush();
+            os.flush();
+            os.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close output stream from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Adds value with key. Key must not be less than previously added key.
+     * @param key
+     * @param value 
+     */
+    public synchronized void put(K key, V value) {
+        if((lastKey != null) && (KeyComparison.compare(comparator, lastKey, key) > 0)) {
+            throw new TempDbException("Key " + key + " is less than previous key " + lastKey + " in " + dbfile);
+        }
+        lastKey = key;
+        try {
+            keyos.reset();
+            keyserializer.serialize(key, keydos);
+            int keysz = keyos.count();
+            valueos.reset();
+            serializer.serialize(value, valuedos);
+            int sz = valueos.count();
+            if(blockLength == 0) {
+                firstKey = new byte[keysz];
+                System.arraycopy(keyos.buff(), 0, firstKey, 0, keysz);
+            }
+            dos.writeInt(keysz);
+            dos.write(keyos.buff(), 0, keysz);
+            dos.writeInt(sz);
+            dos.write(valueos.buff(), 0, sz);
+            blockLength = blockLength + 4 + keysz + 4 + sz;
+            count++;
+            if(blockLength >= blockSize) finishBlock();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write to output stream from " + dbfile, e);
+        }
+    }
+    
+    /**
+     * Adds all values from map tree db. (In order of its keys)
+     * @param db source database
+     */
+    public void putAll(MapTreeDb<K, V> db) {
+        for(K key : db.keys()) {
+            List<V> values = db.get(key);
+            for(V value : values) {
+                put(key, value);
+            }
+        }
+    }
+
+    private void finishBlock() throws Exception {
+        if(blockLength == 0) return;
+        indexdos.writeLong(position);
+        indexdos.writeInt(blockLength);
+        indexdos.writeInt(firstKey.length);
+        indexdos.write(firstKey);
+        blockCount++;
+        position = position + blockLength;
+        blockLength = 0;
+    }
+
+    /**
+     * Sets tag stored in footer of file. 
+     * @param tag user defined value (default 0)
+     * @return this
+     */
+    public synchronized ImmutableSortedDbWriter<K, V> tag(long tag) {
+        this.tag = tag;
+        return this;
+    }
+    
+    /**
+     * Number of values written to database
+     * @return count
+     */
+    public synchronized long count() { return count; }
+    
+}
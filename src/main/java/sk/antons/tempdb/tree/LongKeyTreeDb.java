@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.DbByteArrayInputStream;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.serialization.BufferDeserializer;
+import sk.antons.tempdb.serialization.BufferSerialization;
+import sk.antons.tempdb.serialization.BufferSerializer;
+import sk.antons.tempdb.serialization.BytesDeserializer;
+import sk.antons.tempdb.serialization.BytesSerializer;
+
+/**
+ * AVL map like database stored in file with primitive long keys. 
+ * Key is stored inline in node header, so keys are compared as 
+ * primitives without boxing and without loading of key data.
+ * @author antons
+ */
+public class LongKeyTreeDb<V> extends AbstractAvlTreeDb {
+    private static final int NODE_HEADER_SIZE = 8 + 8 + 8 + 4 + 8 + 4;
+    protected BufferSerializer<V> serializer;
+    protected BufferDeserializer<V> deserializer;
+    private ByteBuffer os = ByteBuffer.allocate(1024);
+    private DbByteArrayInputStream is ;
+    private ByteBuffer dis;
+    private ByteBuffer header = ByteBuffer.allocate(NODE_HEADER_SIZE);
+    private long insertedKey;
+    
+    public LongKeyTreeDb(DbFile dbfile, BytesSerializer<V> serializer, BytesDeserializer<V> deserializer) {
+        this(dbfile, BufferSerialization.serializer(serializer), BufferSerialization.deserializer(deserializer));
+    }
+    
+    public LongKeyTreeDb(DbFile dbfile, BufferSerializer<V> serializer, BufferDeserializer<V> deserializer) {
+        super(dbfile);
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        is = new DbByteArrayInputStream(new byte[1]);
+        dis = ByteBuffer.wrap(is.buff());
+    }
+
+    @Override
+    public void close() {
+        try {
+            raf.close();
+        } catch(Exception e) {
+            throw new TempDbException("Unable to close random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * add new value to database
+     * @param key
+     * @param value 
+     */    
+    public synchronized void put(long key, V value) {
+        try {
+            boolean first = false;
+            if(size == 0) {
+                raf.writeLong(8l);
+                size = 8;
+                first = true;
+            }
+            
+            Node node = new Node();
+            node.id = size;
+            node.key = key;
+            
+            os = BufferSerialization.serialize(serializer, value, os, NODE_HEADER_SIZE);
+            int sz = os.position() - NODE_HEADER_SIZE;
+            node.valueSize = sz;
+            os.putLong(0, node.left);
+            os.putLong(8, node.right);
+            os.putLong(16, node.next);
+            os.putInt(24, node.height);
+            os.putLong(28, node.key);
+            os.putInt(36, node.valueSize);
+
+            raf.seek(size);
+            raf.write(os.array(), 0, NODE_HEADER_SIZE + sz);
+            size = size + NODE_HEADER_SIZE + sz;
+            
+            if(first) return;
+            insertedKey = key;
+            link(node.id);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write to random access file from " + dbfile, e);
+        }
+    }
+    
+    /**
+     * reads values from database identified by key
+     * @param key
+     * @return List of values
+     */
+    public synchronized List<V> get(long key) {
+        List<V> list = new ArrayList<V>();
+        if(size == 0) return list;
+        try {
+            Node node = findNode(rootId(), key);
+            if(node != null) node = loadNode(node.id, true);
+            while(node != null) {
+                list.add(deserializer.deserialize(dis));
+                node = loadNode(node.next, true);
+            }
+            return list;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Reads first value stored with key. If deserializer supports it value 
+     * is read to given instance.
+     * @param key
+     * @param reuse instance to be reused (can be null)
+     * @return value or null if key is not stored
+     */
+    public synchronized V first(long key, V reuse) {
+        if(size == 0) return null;
+        try {
+            Node node = findNode(rootId(), key);
+            if(node == null) return null;
+            loadNode(node.id, true);
+            return BufferSerialization.deserialize(deserializer, dis, reuse);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Checks if there is value with given key
+     * @param key
+     * @return true if key is stored in database
+     */
+    public synchronized boolean contains(long key) {
+        if(size == 0) return false;
+        try {
+            return findNode(rootId(), key) != null;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read random access file from " + dbfile, e);
+        }
+    }
+
+    private Node findNode(long id, long key) throws IOException {
+        while(true) {
+            Node node = loadNode(id, false);
+            if(node == null) return null;
+            if(node.key == key) return node;
+            id = (key < node.key) ? node.left : node.right;
+        }
+    }
+
+    private Node loadNode(long id, boolean loadValue) throws IOException {
+        if(id <= 0) return null;
+        raf.seek(id);
+        raf.readFully(header.array(), 0, NODE_HEADER_SIZE);
+        Node node = new Node();
+        node.id = id;
+        node.left = header.getLong(0);
+        node.right = header.getLong(8);
+        node.next = header.getLong(16);
+        node.height = header.getInt(24);
+        node.key = header.getLong(28);
+        node.valueSize = header.getInt(36);
+        if(loadValue) {
+            is.allocate(node.valueSize);
+            raf.readFully(is.buff(), 0, node.valueSize);
+            is.count(node.valueSize);
+            if(dis.array() != is.buff()) dis = ByteBuffer.wrap(is.buff());
+            dis.clear();
+            dis.limit(node.valueSize);
+        }
+        return node;
+    }
+
+    @Override
+    protected AbstractAvlTreeDb.Node node(long id, boolean loadKey) throws IOException {
+        return loadNode(id, false);
+    }
+
+    @Override
+    protected int direction(AbstractAvlTreeDb.Node node) {
+        long key = ((Node)node).key;
+        if(insertedKey == key) return 0;
+        return (insertedKey < key) ? -1 : 1;
+    }
+
+    private static class Node extends AbstractAvlTreeDb.Node {
+        protected long key;
+        protected int valueSize;
+
+        @Override
+        public String toString() {
+            return "Node{" + "id=" + id + ", left=" + left + ", right=" + right + ", next=" + next + ", height=" + height + ", key=" + key + ", valueSize=" + valueSize + '}';
+        }
+    }
+}
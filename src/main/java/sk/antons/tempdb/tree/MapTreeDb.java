@@ -16,18 +16,24 @@
 package sk.antons.tempdb.tree;
 
 import java.io.IOException;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import sk.antons.tempdb.TempDbException;
 import sk.antons.tempdb.base.AbstractDb;
 import sk.antons.tempdb.base.DbByteArrayInputStream;
-import sk.antons.tempdb.base.DbByteArrayOutputStream;
 import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.base.DbRandomAccess;
+import sk.antons.tempdb.sequence.SequenceSource;
+import sk.antons.tempdb.serialization.BufferDeserializer;
+import sk.antons.tempdb.serialization.BufferSerialization;
+import sk.antons.tempdb.serialization.BufferSerializer;
 import sk.antons.tempdb.serialization.BytesDeserializer;
 import sk.antons.tempdb.serialization.BytesSerializer;
 
@@ -37,23 +43,44 @@ import sk.antons.tempdb.serialization.BytesSerializer;
  */
 public class MapTreeDb<K, V> extends AbstractDb {
     Map<K, List<Long>> keymap = new TreeMap<K, List<Long>>();
-    protected BytesSerializer<V> serializer;
-    protected BytesDeserializer<V> deserializer;
-    protected RandomAccessFile raf;
+    protected BufferSerializer<V> serializer;
+    protected BufferDeserializer<V> deserializer;
+    protected DbRandomAccess raf;
     protected long index = 0;
     protected long size = 0;
-    private DbByteArrayOutputStream os ;
-    private DataOutputStream dos;
+    private ByteBuffer os = ByteBuffer.allocate(1024);
     private DbByteArrayInputStream is ;
-    private DataInputStream dis;
+    private ByteBuffer dis;
+    private ValueCompression compression;
     
     public MapTreeDb(DbFile dbfile
             , BytesSerializer<V> serializer, BytesDeserializer<V> deserializer
             ) {
+        this(dbfile, BufferSerialization.serializer(serializer), BufferSerialization.deserializer(deserializer));
+    }
+    
+    public MapTreeDb(DbFile dbfile
+            , BufferSerializer<V> serializer, BufferDeserializer<V> deserializer
+            ) {
+        this(dbfile, serializer, deserializer, null);
+    }
+    
+    /**
+     * Creates database with compression of values.
+     * @param dbfile
+     * @param serializer
+     * @param deserializer
+     * @param compression value compression (can be null)
+     */
+    public MapTreeDb(DbFile dbfile
+            , BufferSerializer<V> serializer, BufferDeserializer<V> deserializer
+            , ValueCompression compression
+            ) {
         super(dbfile);
+        this.compression = compression;
         this.serializer = serializer;
         this.deserializer = deserializer;
-        raf = dbfile.randomAccessFile();
+        raf = dbfile.randomAccess();
         if(dbfile.exists()) {
             try {
                 this.size = raf.length();
@@ -62,18 +89,22 @@ public class MapTreeDb<K, V> extends AbstractDb {
             }
         }
         
-        os = new DbByteArrayOutputStream();
-        try {
-            dos = new DataOutputStream(os);
-        } catch(Exception e) {
-            throw new TempDbException("Unable to create temporary output stream from " + dbfile, e);
-        }
-
-        is = new DbByteArrayInputStream(new byte[1]);
-        try {
-            dis = new DataInputStream(is);
-        } catch(Exception e) {
-            throw new TempDbException("Unable to create temporary input stream from " + dbfile, e);
+        is = new DbByteArrayInputStream(new byte[4]);
+        dis = ByteBuffer.wrap(is.buff());
+        
+        if(compression != null) {
+            try {
+                if(size == 0) {
+                    compression.writeHeader(raf, 0);
+                    size = compression.headerSize();
+                    index = -1;
+                } else {
+                    compression.readHeader(raf, 0);
+                    index = -1;
+                }
+            } catch(IOException e) {
+                throw new TempDbException("Unable to initialize compression header in " + dbfile, e);
+            }
         }
 
     }
@@ -84,6 +115,8 @@ public class MapTreeDb<K, V> extends AbstractDb {
             raf.close();
         } catch(Exception e) {
             throw new TempDbException("Unable to close random access file from " + dbfile, e);
+        } finally {
+            if(compression != null) compression.release();
         }
     }
 
@@ -94,38 +127,84 @@ public class MapTreeDb<K, V> extends AbstractDb {
      */
     public synchronized void put(K key, V value) {
         try {
-            if(size != index) raf.seek(size);
-            
-            List<Long> ids = keymap.get(key);
-            if(ids == null) {
-                ids = new ArrayList<Long>(2);
-                keymap.put(key, ids);
-            }
-            ids.add(size);
-            
-            os.reset();
-            serializer.serialize(value, dos);
-            int sz = os.count();
-
-            raf.writeInt(sz);
-            raf.write(os.buff(), 0, sz);
-            size = size + 4 + sz;
-            index = size;
-            
+            os = BufferSerialization.serialize(serializer, value, os, 4);
+            write(key);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to write to random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Add already serialized value to database. Bytes must be in format 
+     * produced by value serializer.
+     * @param key
+     * @param value serialized value (remaining bytes are used)
+     */
+    public synchronized void putBytes(K key, ByteBuffer value) {
+        try {
+            os = BufferSerialization.copy(value, os, 4);
+            write(key);
         } catch(Exception e) {
             throw new TempDbException("Unable to write to random access file from " + dbfile, e);
         }
     }
+    
+    /**
+     * Writes value from os to end of file.
+     */
+    private void write(K key) throws IOException {
+        ByteBuffer stored = os;
+        boolean compressed = false;
+        if(compression != null) {
+            stored = compression.encode(os, 4, raf, 0);
+            compressed = compression.encoded();
+            index = -1;
+        }
+        if(size != index) raf.seek(size);
+
+        List<Long> ids = keymap.get(key);
+        if(ids == null) {
+            ids = new ArrayList<Long>(2);
+            keymap.put(key, ids);
+        }
+        ids.add(size);
+
+        int sz = stored.position() - 4;
+        stored.putInt(0, compressed ? -sz : sz);
+
+        raf.write(stored.array(), 0, sz + 4);
+        size = size + 4 + sz;
+        index = size;
+    }
 
     private V read(long id) throws IOException {
+        return read(id, null);
+    }
+    
+    private V read(long id, V reuse) throws IOException {
+        load(id);
+        return BufferSerialization.deserialize(deserializer, dis, reuse);
+    }
+    
+    private void load(long id) throws IOException {
         if(id != index) raf.seek(id);
-        int sz = raf.readInt();
+        is.allocate(4);
+        raf.readFully(is.buff(), 0, 4);
+        byte[] b = is.buff();
+        int sz = ((b[0] & 0xff) << 24) | ((b[1] & 0xff) << 16) | ((b[2] & 0xff) << 8) | (b[3] & 0xff);
+        boolean compressed = sz < 0;
+        if(compressed) sz = -sz;
         is.allocate(sz);
-        int n = raf.read(is.buff(), 0, sz);
-        is.count(n);
-        V rv = deserializer.deserialize(dis);
-        index = id + 4 + n;
-        return rv;
+        raf.readFully(is.buff(), 0, sz);
+        is.count(sz);
+        index = id + 4 + sz;
+        if(compressed) {
+            dis = compression.decode(is.buff(), sz);
+            return;
+        }
+        if(dis.array() != is.buff()) dis = ByteBuffer.wrap(is.buff());
+        dis.clear();
+        dis.limit(sz);
     }
 
     /**
@@ -147,4 +226,79 @@ public class MapTreeDb<K, V> extends AbstractDb {
         }
     }
 
+    /**
+     * Reads serialized values from database stored with key.
+     * @param key
+     * @return List of read only buffers with serialized values
+     */
+    public synchronized List<ByteBuffer> getBytes(K key) {
+        try {
+            List<ByteBuffer> rv = new ArrayList<ByteBuffer>();
+            List<Long> list = keymap.get(key);
+            if((list == null) || list.isEmpty()) return rv;
+            for(Long long1 : list) {
+                load(long1);
+                rv.add(BufferSerialization.readOnlyCopy(dis.array(), 0, dis.limit()));
+            }
+            return rv;
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read to random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Reads first value stored with key. If deserializer supports it value 
+     * is read to given instance.
+     * @param key
+     * @param reuse instance to be reused (can be null)
+     * @return value or null if key is not stored
+     */
+    public synchronized V first(K key, V reuse) {
+        try {
+            List<Long> list = keymap.get(key);
+            if((list == null) || list.isEmpty()) return null;
+            return read(list.get(0), reuse);
+        } catch(Exception e) {
+            throw new TempDbException("Unable to read to random access file from " + dbfile, e);
+        }
+    }
+
+    /**
+     * Returns all keys stored in database (in natural order).
+     * @return keys
+     */
+    public synchronized Set<K> keys() {
+        return Collections.unmodifiableSet(keymap.keySet());
+    }
+
+    /**
+     * Creates source of all key value pairs in key order. Database must not 
+     * be changed while source is used.
+     * @return source
+     */
+    public SequenceSource<Map.Entry<K, V>> scan() {
+        final Iterator<Map.Entry<K, List<Long>>> keys = keymap.entrySet().iterator();
+        return new SequenceSource<Map.Entry<K, V>>() {
+            private K key;
+            private Iterator<Long> ids;
+            
+            @Override
+            public Map.Entry<K, V> next() {
+                synchronized(MapTreeDb.this) {
+                    while((ids == null) || !ids.hasNext()) {
+                        if(!keys.hasNext()) return null;
+                        Map.Entry<K, List<Long>> entry = keys.next();
+                        key = entry.getKey();
+                        ids = entry.getValue().iterator();
+                    }
+                    try {
+                        return new AbstractMap.SimpleImmutableEntry<K, V>(key, read(ids.next()));
+                    } catch(Exception e) {
+                        throw new TempDbException("Unable to read to random access file from " + dbfile, e);
+                    }
+                }
+            }
+        };
+    }
+
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.DbRandomAccess;
+import sk.antons.tempdb.compression.BlockCodec;
+import sk.antons.tempdb.compression.DeflateCodec;
+
+/**
+ * Compression of serialized values of tree databases. Values are compressed 
+ * individually so random access is preserved. Only values with size at 
+ * least threshold are compressed and only if compressed data are smaller. 
+ * Compressed value is stored as raw length followed by compressed data 
+ * and database marks it by negative stored size.
+ * 
+ * Codec mode: values are compressed by given codec.
+ * 
+ * Dictionary mode: first values are stored uncompressed and used as 
+ * samples for deflate dictionary. Dictionary is stored in reserved header 
+ * of db file and all next values are compressed with it.
+ * @author antons
+ */
+public class ValueCompression {
+    private static final int MAGIC = 0x54444443;
+    static final int HEADER_SIZE = 4 + 4 + DeflateCodec.MAX_DICTIONARY_SIZE;
+    
+    private int samples = 0;
+    private int threshold = 0;
+    private List<byte[]> sampleData;
+    private BlockCodec codec;
+    private ByteBuffer out = ByteBuffer.allocate(1024);
+    private ByteBuffer raw = ByteBuffer.allocate(1024);
+    private boolean encoded = false;
+
+    private ValueCompression() {}
+
+    /**
+     * Creates dictionary compression. Instance can be used only by one 
+     * database.
+     * @param samples number of first values used for dictionary training
+     * @return compression
+     */
+    public static ValueCompression dictionary(int samples) {
+        return dictionary(samples, 0);
+    }
+
+    /**
+     * Creates dictionary compression of values with given min size. 
+     * Instance can be used only by one database.
+     * @param samples number of first values used for dictionary training
+     * @param threshold min size of compressed value
+     * @return compression
+     */
+    public static ValueCompression dictionary(int samples, int threshold) {
+        if(samples < 1) throw new TempDbException("Number of dictionary samples must be positive " + samples);
+        ValueCompression rv = new ValueCompression();
+        rv.samples = samples;
+        rv.threshold = threshold;
+        rv.sampleData = new ArrayList<byte[]>(samples);
+        return rv;
+    }
+    
+    /**
+     * Creates compression of values with given min size using given codec.
+     * @param codec codec
+     * @param threshold min size of compressed value
+     * @return compression
+     */
+    public static ValueCompression codec(BlockCodec codec, int threshold) {
+        if(codec == null) throw new TempDbException("No codec defined for value compression");
+        ValueCompression rv = new ValueCompression();
+        rv.codec = codec;
+        rv.threshold = threshold;
+        return rv;
+    }
+
+    /**
+     * Size of reserved header in db file
+     */
+    int headerSize() {
+        return samples > 0 ? HEADER_SIZE : 0;
+    }
+    
+    /**
+     * Writes empty header to new db file.
+     */
+    void writeHeader(DbRandomAccess raf, long position) throws IOException {
+        if(samples == 0) return;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(0, MAGIC);
+        header.putInt(4, 0);
+        raf.seek(position);
+        raf.write(header.array());
+    }
+    
+    /**
+     * Reads header of existing db file.
+     */
+    void readHeader(DbRandomAccess raf, long position) throws IOException {
+        if(samples == 0) return;
+        raf.seek(position);
+        if(raf.readInt() != MAGIC) throw new TempDbException("Db file has no compression header");
+        int length = raf.readInt();
+        if(length > 0) {
+            byte[] dictionary = new byte[length];
+            raf.readFully(dictionary);
+            codec = new DeflateCodec(Deflater.DEFAULT_COMPRESSION, dictionary);
+        }
+    }
+    
+    /**
+     * Encodes value stored in buffer from offset to position. 
+     * @return buffer with stored data from offset to position
+     */
+    ByteBuffer encode(ByteBuffer buffer, int offset, DbRandomAccess raf, long headerPosition) throws IOException {
+        encoded = false;
+        int length = buffer.position() - offset;
+        if(codec == null) {
+            byte[] sample = new byte[length];
+            System.arraycopy(buffer.array(), offset, sample, 0, length);
+            sampleData.add(sample);
+            if(sampleData.size() >= samples) train(raf, headerPosition);
+            return buffer;
+        }
+        if(length < threshold) return buffer;
+        int max = offset + 4 + length;
+        if(out.capacity() < max) out = ByteBuffer.allocate(Math.max(max, out.capacity() * 2));
+        int n = codec.compress(buffer.array(), offset, length, out.array(), offset + 4, length);
+        if(n < 0) return buffer;
+        out.clear();
+        out.putInt(offset, length);
+        out.position(offset + 4 + n);
+        encoded = true;
+        return out;
+    }
+    
+    /**
+     * True if last encoded value was compressed.
+     */
+    boolean encoded() {
+        return encoded;
+    }
+
+    /**
+     * Decodes compressed value.
+     * @return buffer with raw value from 0 to limit
+     */
+    ByteBuffer decode(byte[] data, int length) throws IOException {
+        if(codec == null) throw new TempDbException("Compressed value without compression dictionary");
+        int rawLength = ((data[0] & 0xff) << 24) | ((data[1] & 0xff) << 16) | ((data[2] & 0xff) << 8) | (data[3] & 0xff);
+        if(raw.capacity() < rawLength) raw = ByteBuffer.allocate(Math.max(rawLength, raw.capacity() * 2));
+        codec.decompress(data, 4, length - 4, raw.array(), 0, rawLength);
+        raw.clear();
+        raw.limit(rawLength);
+        return raw;
+    }
+    
+    private void train(DbRandomAccess raf, long headerPosition) throws IOException {
+        byte[] dictionary = DeflateCodec.trainDictionary(sampleData, DeflateCodec.MAX_DICTIONARY_SIZE);
+        sampleData = null;
+        raf.seek(headerPosition + 4);
+        raf.writeInt(dictionary.length);
+        raf.write(dictionary);
+        codec = new DeflateCodec(Deflater.DEFAULT_COMPRESSION, dictionary);
+    }
+    
+    /**
+     * Releases codec resources held for current thread.
+     */
+    void release() {
+        if(codec != null) codec.release();
+    }
+    
+}
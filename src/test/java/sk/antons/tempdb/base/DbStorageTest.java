@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.base;
+
+
+import java.io.File;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.SequenceDbBuilder;
+import sk.antons.tempdb.TreeDbBuilder;
+import sk.antons.tempdb.sequence.FramedSequenceDbReader;
+import sk.antons.tempdb.sequence.FramedSequenceDbWriter;
+import sk.antons.tempdb.sequence.SequenceDb;
+import sk.antons.tempdb.sequence.SequenceDbReader;
+import sk.antons.tempdb.sequence.SequenceDbWriter;
+import sk.antons.tempdb.serialization.StringSerialization;
+import sk.antons.tempdb.tree.AvlTreeDb;
+import sk.antons.tempdb.tree.MapTreeDb;
+
+/**
+ *
+ * @author antons
+ */
+public class DbStorageTest {
+	private static Logger log = Logger.getLogger(DbStorageTest.class.getName());
+
+    private static DbFile temporary(DbStorage.Type type) {
+        if(type.isMemory()) return DbFile.memory(type == DbStorage.Type.DIRECT);
+        if(type == DbStorage.Type.HYBRID) return DbFile.temporary("test", ".db", true).hybrid(64 * 1024);
+        return DbFile.temporary("test", ".db", true).storage(type);
+    }
+    
+    @Test
+	public void treeTest() throws Exception {
+        for(DbStorage.Type type : DbStorage.Type.values()) {
+            TreeDbBuilder<String, String> builder = TreeDbBuilder.instance(String.class, String.class)
+                .keyserializer(StringSerialization.serializer())
+                .keydeserializer(StringSerialization.deserializer())
+                .serializer(StringSerialization.serializer())
+                .deserializer(StringSerialization.deserializer());
+            AvlTreeDb<String, String> avl = builder.dbfile(temporary(type)).avlTreeDb();
+            MapTreeDb<String, String> map = builder.dbfile(temporary(type)).mapTreeDb();
+            for(int i = 0; i < 3000; i++) {
+                avl.put("key" + i, "value" + i);
+                map.put("key" + i, "value" + i);
+            }
+            avl.close();
+            avl = builder.dbfile(avl.dbfile()).avlTreeDb();
+            for(int i = 0; i < 3000; i++) {
+                Assert.assertEquals(type.toString(), "value" + i, avl.get("key" + i).get(0));
+                Assert.assertEquals(type.toString(), "value" + i, map.get("key" + i).get(0));
+            }
+            Assert.assertTrue(avl.get("none").isEmpty());
+            avl.close();
+            map.close();
+            avl.delete();
+            map.delete();
+            Assert.assertFalse(avl.dbfile().exists());
+        }
+    }
+    
+    @Test
+	public void sequenceTest() throws Exception {
+        for(DbStorage.Type type : DbStorage.Type.values()) {
+            SequenceDbBuilder<String> builder = SequenceDbBuilder.instance(String.class)
+                .serializer(StringSerialization.serializer())
+                .deserializer(StringSerialization.deserializer())
+                .dbfile(temporary(type));
+            SequenceDbWriter<String> writer = builder.sequenceDbWriter();
+            for(int i = 0; i < 1000; i++) writer.add("value" + i);
+            writer.close();
+            SequenceDbReader<String> reader = builder.sequenceDbReader();
+            for(int i = 0; i < 1000; i++) Assert.assertEquals(type.toString(), "value" + i, reader.next());
+            Assert.assertNull(reader.next());
+            reader.close();
+            reader.delete();
+        }
+    }
+    
+    @Test
+	public void mappedTest() throws Exception {
+        File file = File.createTempFile("test", ".db");
+        file.deleteOnExit();
+        byte[] data = new byte[10000];
+        for(int i = 0; i < data.length; i++) data[i] = (byte)i;
+        MappedFileStorage storage = new MappedFileStorage(file, 12);
+        storage.write(100, data, 0, data.length);
+        Assert.assertEquals(10100, storage.size());
+        storage.close();
+        Assert.assertEquals(10100, file.length());
+        
+        DbRandomAccess raf = new DbRandomAccess(new MappedFileStorage(file, 12), true);
+        raf.seek(100);
+        byte[] read = new byte[data.length];
+        raf.readFully(read);
+        Assert.assertArrayEquals(data, read);
+        Assert.assertEquals(-1, raf.read(read));
+        raf.seek(4090);
+        raf.writeLong(-1234567890123L);
+        raf.writeInt(-42);
+        raf.seek(4090);
+        Assert.assertEquals(-1234567890123L, raf.readLong());
+        Assert.assertEquals(-42, raf.readInt());
+        raf.close();
+    }
+    
+    @Test
+	public void mappedCrashTest() throws Exception {
+        File file = File.createTempFile("test", ".db");
+        file.deleteOnExit();
+        byte[] data = new byte[10000];
+        for(int i = 0; i < data.length; i++) data[i] = (byte)i;
+        MappedFileStorage storage = new MappedFileStorage(file, 12);
+        storage.write(0, data, 0, data.length);
+        storage.truncate(9000);
+        storage.sync();
+        // not closed - file stays extended to mapped segments
+        Assert.assertEquals(12288, file.length());
+        
+        MappedFileStorage reopened = new MappedFileStorage(file, 12);
+        Assert.assertEquals(9000, reopened.size());
+        Assert.assertEquals(9000, file.length());
+        byte[] read = new byte[9000];
+        Assert.assertEquals(9000, reopened.read(0, read, 0, read.length));
+        Assert.assertEquals(data[8999], read[8999]);
+        reopened.close();
+        Assert.assertEquals(9000, file.length());
+    }
+    
+    private static DbFile mapped(int num) {
+        DbFile dbfile = DbFile.temporary("test", ".db", true).storage(DbStorage.Type.MAPPED);
+        FramedSequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .serializer(StringSerialization.serializer())
+            .indexStep(7)
+            .dbfile(dbfile)
+            .framedSequenceDbWriter();
+        for(int i = 0; i < num; i++) writer.add("value" + i);
+        writer.close();
+        return dbfile;
+    }
+    
+    private static FramedSequenceDbReader<String> reader(DbFile dbfile) {
+        return SequenceDbBuilder.instance(String.class)
+            .deserializer(StringSerialization.deserializer())
+            .dbfile(dbfile)
+            .framedSequenceDbReader();
+    }
+    
+    @Test
+	public void mappedReadersTest() throws Exception {
+        DbFile dbfile = mapped(1000);
+        FramedSequenceDbReader<String> first = reader(dbfile);
+        FramedSequenceDbReader<String> second = reader(dbfile);
+        for(int i = 0; i < 1000; i++) {
+            Assert.assertEquals("value" + i, first.next());
+            Assert.assertEquals("value" + i, second.next());
+        }
+        first.close();
+        Assert.assertEquals("value500", second.get(500));
+        second.close();
+        long size = dbfile.openStorage().size();
+        dbfile.release();
+        Assert.assertEquals(size, dbfile.file().length());
+        
+        FramedSequenceDbReader<String> reader = reader(dbfile);
+        Assert.assertEquals("value999", reader.get(999));
+        reader.close();
+        // read only mapping does not extend file
+        Assert.assertEquals(size, dbfile.file().length());
+        dbfile.delete();
+        Assert.assertFalse(dbfile.file().exists());
+    }
+    
+    @Test
+	public void mappedSplitTest() throws Exception {
+        DbFile dbfile = mapped(1000);
+        FramedSequenceDbReader<String> reader = reader(dbfile);
+        List<FramedSequenceDbReader<String>> readers = reader.split(4);
+        reader.close();
+        int i = 0;
+        for(FramedSequenceDbReader<String> r : readers) {
+            String value = r.next();
+            while(value != null) {
+                Assert.assertEquals("value" + i, value);
+                i++;
+                value = r.next();
+            }
+            r.close();
+        }
+        Assert.assertEquals(1000, i);
+        long size = dbfile.openStorage().size();
+        dbfile.release();
+        Assert.assertEquals(size, dbfile.file().length());
+        dbfile.delete();
+    }
+    
+    @Test
+	public void siblingReleaseTest() throws Exception {
+        DbFile dbfile = DbFile.memory();
+        DbStorage sibling = dbfile.sibling(".idx").openStorage();
+        sibling.write(0, new byte[100], 0, 100);
+        dbfile.delete();
+        Assert.assertEquals(0, sibling.size());
+        Assert.assertFalse(dbfile.sibling(".idx").exists());
+    }
+    
+    @Test
+	public void memoryTest() throws Exception {
+        MemoryStorage storage = new MemoryStorage(true, 10);
+        byte[] data = new byte[5000];
+        for(int i = 0; i < data.length; i++) data[i] = (byte)(i * 7);
+        storage.write(0, data, 0, data.length);
+        storage.truncate(3000);
+        Assert.assertEquals(3000, storage.size());
+        byte[] read = new byte[5000];
+        Assert.assertEquals(3000, storage.read(0, read, 0, read.length));
+        for(int i = 0; i < 3000; i++) Assert.assertEquals(data[i], read[i]);
+        Assert.assertEquals(-1, storage.read(3000, read, 0, 10));
+        storage.close();
+        Assert.assertEquals(0, storage.size());
+    }
+    
+    @Test
+	public void hybridTest() throws Exception {
+        SequenceDbBuilder<String> sbuilder = SequenceDbBuilder.instance(String.class)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer());
+        TreeDbBuilder<String, String> tbuilder = TreeDbBuilder.instance(String.class, String.class)
+            .keyserializer(StringSerialization.serializer())
+            .keydeserializer(StringSerialization.deserializer())
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer());
+        for(int count : new int[] {100, 20000}) {
+            SequenceDb<String> seq = sbuilder.tempfile("test", ".db", true).hybrid(100000).sequenceDb();
+            AvlTreeDb<String, String> avl = tbuilder.tempfile("test", ".db", true).hybrid(100000).avlTreeDb();
+            MapTreeDb<String, String> map = tbuilder.tempfile("test", ".db", true).hybrid(100000).mapTreeDb();
+            for(int i = 0; i < count; i++) {
+                seq.add("value" + i);
+                avl.put("key" + i, "value" + i);
+                map.put("key" + i, "value" + i);
+            }
+            for(int i = 0; i < count; i++) {
+                Assert.assertEquals("value" + i, seq.next());
+                Assert.assertEquals("value" + i, avl.get("key" + i).get(0));
+                Assert.assertEquals("value" + i, map.get("key" + i).get(0));
+            }
+            Assert.assertNull(seq.next());
+            boolean spill = count > 100;
+            for(DbFile dbfile : new DbFile[] {seq.dbfile(), avl.dbfile(), map.dbfile()}) {
+                HybridStorage storage = (HybridStorage)dbfile.openStorage();
+                log.info(dbfile + " size: " + storage.size() + " spilled: " + storage.spilled());
+                Assert.assertEquals(spill, storage.spilled());
+                if(spill) Assert.assertEquals(storage.size(), dbfile.file().length());
+                else Assert.assertFalse(dbfile.file().exists());
+            }
+            seq.close();
+            avl.close();
+            map.close();
+            seq.delete();
+            avl.delete();
+            map.delete();
+        }
+    }
+    
+    @Test
+	public void hybridBudgetTest() throws Exception {
+        DbFile dbfile = DbFile.temporary("test", ".db", true).hybrid(10000);
+        byte[] data = new byte[6000];
+        HybridStorage storage = (HybridStorage)dbfile.openStorage();
+        storage.write(0, data, 0, data.length);
+        Assert.assertFalse(storage.spilled());
+        HybridStorage part = (HybridStorage)dbfile.part(0).openStorage();
+        part.write(0, data, 0, data.length);
+        Assert.assertTrue(part.spilled());
+        Assert.assertEquals(6000, dbfile.part(0).file().length());
+        Assert.assertFalse(dbfile.file().exists());
+        dbfile.part(0).delete();
+        
+        HybridStorage sibling = (HybridStorage)dbfile.sibling(".idx").openStorage();
+        sibling.write(0, data, 0, 4000);
+        Assert.assertFalse(sibling.spilled());
+        storage.truncate(1000);
+        sibling.write(4000, data, 0, 4000);
+        Assert.assertFalse(sibling.spilled());
+        dbfile.sibling(".idx").delete();
+        dbfile.delete();
+    }
+    
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.SequenceDbBuilder;
+import sk.antons.tempdb.serialization.StringSerialization;
+
+/**
+ *
+ * @author antons
+ */
+public class PriorityDbTest {
+	private static Logger log = Logger.getLogger(PriorityDbTest.class.getName());
+
+    private static Comparator<String> comparator = new Comparator<String>() {
+        @Override
+        public int compare(String o1, String o2) {
+            return o1.compareTo(o2);
+        }
+    };
+    
+    @Test
+	public void baseTest() throws Exception {
+        PriorityDb<String> db = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .memorySize(10)
+            .priorityDb(comparator);
+        PriorityQueue<String> expected = new PriorityQueue<String>();
+        Random random = new Random(1);
+        for(int i = 0; i < 2000; i++) {
+            String value = "value" + (1000 + random.nextInt(1000));
+            db.add(value);
+            expected.add(value);
+            if(i % 3 == 0) {
+                Assert.assertEquals(expected.peek(), db.peek());
+                Assert.assertEquals(expected.poll(), db.poll());
+            }
+        }
+        Assert.assertEquals(expected.size(), db.size());
+        while(!expected.isEmpty()) {
+            Assert.assertEquals(expected.poll(), db.poll());
+        }
+        Assert.assertNull(db.peek());
+        Assert.assertNull(db.poll());
+        Assert.assertEquals(0, db.size());
+        db.close();
+    }
+    
+    @Test
+	public void tieredTest() throws Exception {
+        PriorityDb<String> db = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .memorySize(10)
+            .priorityDb(comparator);
+        PriorityQueue<String> expected = new PriorityQueue<String>();
+        Random random = new Random(2);
+        for(int i = 0; i < 20000; i++) {
+            String value = "value" + (100000 + random.nextInt(100000));
+            db.add(value);
+            expected.add(value);
+        }
+        // 2000 spills are kept in two levels of runs
+        Assert.assertTrue(db.runs.size() < 2 * PriorityDb.MERGE_WIDTH);
+        while(!expected.isEmpty()) {
+            Assert.assertEquals(expected.poll(), db.poll());
+        }
+        Assert.assertNull(db.poll());
+        db.close();
+    }
+    
+}
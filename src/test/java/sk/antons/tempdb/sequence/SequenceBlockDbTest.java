@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.SequenceDbBuilder;
+import sk.antons.tempdb.compression.BlockCodec;
+import sk.antons.tempdb.compression.DeflateCodec;
+import sk.antons.tempdb.compression.LzCodec;
+import sk.antons.tempdb.serialization.StringSerialization;
+
+/**
+ *
+ * @author antons
+ */
+public class SequenceBlockDbTest {
+	private static Logger log = Logger.getLogger(SequenceBlockDbTest.class.getName());
+
+    private static String value(int i) {
+        return "{\"id\":" + i + ",\"name\":\"value" + i + "\",\"type\":\"PERSON\"}";
+    }
+    
+    private static BlockSequenceDbReader<String> write(int num, BlockCodec codec) {
+        BlockSequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .codec(codec)
+            .blockSize(1000)
+            .blockSequenceDbWriter();
+        for(int i = 0; i < num; i++) {
+            writer.add(value(i));
+        }
+        writer.close();
+        return SequenceDbBuilder.instance(String.class)
+            .dbfile(writer.dbfile())
+            .deserializer(StringSerialization.deserializer())
+            .codec(codec)
+            .blockSequenceDbReader();
+    }
+
+    private static void checkAll(BlockCodec codec) {
+        BlockSequenceDbReader<String> reader = write(1000, codec);
+        Assert.assertEquals(1000, reader.size());
+        for(int i = 0; i < 1000; i++) {
+            Assert.assertEquals(value(i), reader.next());
+        }
+        Assert.assertNull(reader.next());
+        Assert.assertEquals(value(500), reader.get(500));
+        Assert.assertEquals(value(7), reader.get(7));
+        reader.skip(3);
+        Assert.assertEquals(value(11), reader.next());
+        reader.close();
+    }
+    
+    @Test
+	public void deflateTest() throws Exception {
+        checkAll(DeflateCodec.instance());
+        // native resources were released by close(), codec is still usable
+        checkAll(DeflateCodec.instance());
+    }
+    
+    @Test
+	public void lzTest() throws Exception {
+        checkAll(LzCodec.instance());
+    }
+    
+    @Test
+	public void splitTest() throws Exception {
+        BlockSequenceDbReader<String> reader = write(1000, LzCodec.instance());
+        List<BlockSequenceDbReader<String>> readers = reader.split(3);
+        int i = 0;
+        for(BlockSequenceDbReader<String> r : readers) {
+            String value = r.next();
+            while(value != null) {
+                Assert.assertEquals(value(i), value);
+                i++;
+                value = r.next();
+            }
+            r.close();
+        }
+        Assert.assertEquals(1000, i);
+        reader.close();
+    }
+    
+    @Test
+	public void parallelDeflateTest() throws Exception {
+        BlockSequenceDbReader<String> reader = write(1000, DeflateCodec.instance());
+        final List<BlockSequenceDbReader<String>> readers = reader.split(3);
+        final AtomicInteger count = new AtomicInteger();
+        Thread[] threads = new Thread[readers.size()];
+        for(int t = 0; t < threads.length; t++) {
+            final BlockSequenceDbReader<String> r = readers.get(t);
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    while(r.next() != null) count.incrementAndGet();
+                    r.close();
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread : threads) thread.join();
+        reader.close();
+        Assert.assertEquals(1000, count.get());
+        // inflaters used by other threads were released too, codec is still usable
+        checkAll(DeflateCodec.instance());
+    }
+    
+    @Test
+	public void nullTest() throws Exception {
+        BlockSequenceDbReader<String> reader = write(0, LzCodec.instance());
+        Assert.assertNull(reader.next());
+        Assert.assertEquals(0, reader.split(3).size());
+        reader.close();
+    }
+    
+}
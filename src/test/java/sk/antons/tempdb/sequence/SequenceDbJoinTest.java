@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.TreeDbBuilder;
+import sk.antons.tempdb.serialization.StringSerialization;
+import sk.antons.tempdb.tree.MapTreeDb;
+
+/**
+ *
+ * @author antons
+ */
+public class SequenceDbJoinTest {
+	private static Logger log = Logger.getLogger(SequenceDbJoinTest.class.getName());
+
+    private static KeyExtractor<String, String> extractor = new KeyExtractor<String, String>() {
+        @Override
+        public String key(String value) {
+            return value.substring(0, value.indexOf(':'));
+        }
+    };
+    
+    private static SequenceSource<String> source(String... values) {
+        final List<String> list = Arrays.asList(values);
+        return new SequenceSource<String>() {
+            int index = 0;
+            @Override
+            public String next() {
+                return (index < list.size()) ? list.get(index++) : null;
+            }
+        };
+    }
+
+    private static class Collector implements JoinProcessor<String, String> {
+        List<String> list = new ArrayList<String>();
+        @Override
+        public void process(String left, String right) throws Exception {
+            list.add(left + "|" + right);
+        }
+    }
+    
+    @Test
+	public void innerTest() throws Exception {
+        Collector collector = new Collector();
+        long count = new SequenceDbJoin<String, String, String>(extractor, extractor, null)
+            .spill(StringSerialization.serializer(), StringSerialization.deserializer(), 1)
+            .inner(source("a:1", "b:1", "b:2", "d:1")
+                , source("b:x", "b:y", "b:z", "c:x", "d:x")
+                , collector);
+        Assert.assertEquals(7, count);
+        Assert.assertEquals(Arrays.asList("b:1|b:x", "b:1|b:y", "b:1|b:z", "b:2|b:x", "b:2|b:y", "b:2|b:z", "d:1|d:x"), collector.list);
+    }
+    
+    @Test
+	public void leftTest() throws Exception {
+        Collector collector = new Collector();
+        long count = new SequenceDbJoin<String, String, String>(extractor, extractor, null)
+            .left(source("a:1", "b:1", "e:1")
+                , source("b:x", "c:x", "d:x")
+                , collector);
+        Assert.assertEquals(3, count);
+        Assert.assertEquals(Arrays.asList("a:1|null", "b:1|b:x", "e:1|null"), collector.list);
+    }
+    
+    private static SequenceSource<String> hot(final int count) {
+        return new SequenceSource<String>() {
+            int index = 0;
+            @Override
+            public String next() {
+                return (index < count) ? "b:" + (index++) : null;
+            }
+        };
+    }
+    
+    @Test
+	public void boundedTest() throws Exception {
+        int count = SequenceDbJoin.DEFAULT_BUFFER_SIZE + 100;
+        Collector collector = new Collector();
+        Assert.assertEquals(count, new SequenceDbJoin<String, String, String>(extractor, extractor, null
+                , StringSerialization.serializer(), StringSerialization.deserializer())
+            .inner(source("b:1"), hot(count), collector));
+        Assert.assertEquals("b:1|b:" + (count - 1), collector.list.get(count - 1));
+        try {
+            new SequenceDbJoin<String, String, String>(extractor, extractor, null)
+                .inner(source("b:1"), hot(count), new Collector());
+            Assert.fail("unbounded buffer used");
+        } catch(TempDbException e) {
+            log.info(e.getMessage());
+        }
+    }
+    
+    @Test
+	public void treeTest() throws Exception {
+        MapTreeDb<String, String> db = TreeDbBuilder.instance(String.class, String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .mapTreeDb();
+        db.put("c", "c:x");
+        db.put("a", "a:x");
+        
+        final List<String> list = new ArrayList<String>();
+        new SequenceDbJoin<String, Map.Entry<String, String>, String>(extractor
+                , new KeyExtractor<Map.Entry<String, String>, String>() {
+                    @Override
+                    public String key(Map.Entry<String, String> value) {
+                        return value.getKey();
+                    }
+                }, null)
+            .inner(source("a:1", "b:1", "c:1"), db.scan(), new JoinProcessor<String, Map.Entry<String, String>>() {
+                @Override
+                public void process(String left, Map.Entry<String, String> right) throws Exception {
+                    list.add(left + "|" + right.getValue());
+                }
+            });
+        Assert.assertEquals(Arrays.asList("a:1|a:x", "c:1|c:x"), list);
+        db.close();
+    }
+    
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.SequenceDbBuilder;
+import sk.antons.tempdb.serialization.StringSerialization;
+
+/**
+ *
+ * @author antons
+ */
+public class SequenceDbSorterTest {
+	private static Logger log = Logger.getLogger(SequenceDbSorterTest.class.getName());
+
+    private static Comparator<String> comparator = new Comparator<String>() {
+        @Override
+        public int compare(String o1, String o2) {
+            return o1.compareTo(o2);
+        }
+    };
+    
+    private static SequenceDbReader<String> unsorted(int num) {
+        SequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .sequenceDbWriter();
+        Random random = new Random(1);
+        for(int i = 0; i < num; i++) {
+            writer.add("value" + (100000 + random.nextInt(num)));
+        }
+        writer.close();
+        return SequenceDbBuilder.instance(String.class)
+            .dbfile(writer.dbfile())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDbReader();
+    }
+
+    private static void check(SequenceDbSorter<String> sorter, int num) {
+        SequenceDbReader<String> source = unsorted(num);
+        SequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .sequenceDbWriter();
+        Assert.assertEquals(num, sorter.sort(source, writer));
+        source.close();
+        writer.close();
+        
+        SequenceDbReader<String> reader = SequenceDbBuilder.instance(String.class)
+            .dbfile(writer.dbfile())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDbReader();
+        String last = reader.next();
+        int count = (last == null) ? 0 : 1;
+        String value = reader.next();
+        while(value != null) {
+            Assert.assertTrue(last.compareTo(value) <= 0);
+            count++;
+            last = value;
+            value = reader.next();
+        }
+        Assert.assertEquals(num, count);
+        reader.close();
+    }
+    
+    private static SequenceDbSorter<String> sorter() {
+        return SequenceDbBuilder.instance(String.class)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDbSorter(comparator);
+    }
+    
+    @Test
+	public void memoryTest() throws Exception {
+        check(sorter(), 1000);
+        check(sorter(), 0);
+    }
+    
+    @Test
+	public void externalTest() throws Exception {
+        check(sorter().runSize(100), 1000);
+        check(sorter().runSize(10).mergeWidth(3), 1000);
+    }
+    
+    @Test
+	public void parallelTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        check(sorter().runSize(100).executor(executor, 3), 1000);
+        executor.shutdown();
+    }
+    
+}
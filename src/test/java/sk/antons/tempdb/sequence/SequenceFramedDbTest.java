@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.SequenceDbBuilder;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.serialization.StringSerialization;
+
+/**
+ *
+ * @author antons
+ */
+public class SequenceFramedDbTest {
+	private static Logger log = Logger.getLogger(SequenceFramedDbTest.class.getName());
+
+    private static FramedSequenceDbWriter<String> write(int num, int step) {
+        FramedSequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .indexStep(step)
+            .framedSequenceDbWriter();
+        for(int i = 0; i < num; i++) {
+            writer.add("value" + i);
+        }
+        writer.close();
+        return writer;
+    }
+    
+    private static FramedSequenceDbReader<String> reader(FramedSequenceDbWriter<String> writer) {
+        return SequenceDbBuilder.instance(String.class)
+            .dbfile(writer.dbfile())
+            .deserializer(StringSerialization.deserializer())
+            .framedSequenceDbReader();
+    }
+
+    @Test
+	public void baseTest() throws Exception {
+        FramedSequenceDbReader<String> reader = reader(write(3, 2));
+        Assert.assertEquals(3, reader.size());
+        Assert.assertEquals("value0", reader.next());
+        Assert.assertEquals("value1", reader.next());
+        Assert.assertEquals("value2", reader.next());
+        Assert.assertNull(reader.next());
+        reader.close();
+    }
+    
+    @Test
+	public void seekTest() throws Exception {
+        FramedSequenceDbReader<String> reader = reader(write(1000, 7));
+        Assert.assertEquals("value500", reader.get(500));
+        Assert.assertEquals("value3", reader.get(3));
+        Assert.assertEquals("value999", reader.get(999));
+        Assert.assertNull(reader.get(1000));
+        reader.seek(10);
+        reader.skip(5);
+        Assert.assertEquals(15, reader.ordinal());
+        Assert.assertEquals("value15", reader.next());
+        Assert.assertEquals("value16", reader.next());
+        reader.close();
+    }
+    
+    @Test
+	public void nullTest() throws Exception {
+        FramedSequenceDbReader<String> reader = reader(write(0, 2));
+        Assert.assertEquals(0, reader.size());
+        Assert.assertNull(reader.next());
+        Assert.assertNull(reader.get(0));
+        reader.close();
+    }
+    
+    @Test
+	public void splitTest() throws Exception {
+        FramedSequenceDbReader<String> reader = reader(write(1000, 7));
+        List<FramedSequenceDbReader<String>> readers = reader.split(4);
+        Assert.assertEquals(4, readers.size());
+        int i = 0;
+        for(FramedSequenceDbReader<String> r : readers) {
+            String value = r.next();
+            while(value != null) {
+                Assert.assertEquals("value" + i, value);
+                i++;
+                value = r.next();
+            }
+            r.close();
+        }
+        Assert.assertEquals(1000, i);
+        reader.close();
+    }
+    
+    @Test
+	public void scanTest() throws Exception {
+        FramedSequenceDbReader<String> reader = reader(write(1000, 7));
+        final AtomicLong sum = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        reader.scan(executor, 5, new ValueProcessor<String>() {
+            @Override
+            public void process(String value) throws Exception {
+                sum.addAndGet(Long.parseLong(value.substring(5)));
+            }
+        });
+        executor.shutdown();
+        Assert.assertEquals(999 * 1000 / 2, sum.get());
+        reader.close();
+    }
+    
+    private static FramedSequenceDbIndex<String, String> index(DbFile dbfile) {
+        return SequenceDbBuilder.instance(String.class)
+            .dbfile(dbfile)
+            .deserializer(StringSerialization.deserializer())
+            .framedSequenceDbIndex(new KeyExtractor<String, String>() {
+                @Override
+                public String key(String value) {
+                    if(value.endsWith("3")) return null;
+                    return value.substring(value.length() - 1);
+                }
+            }, StringSerialization.serializer(), StringSerialization.deserializer(), null);
+    }
+    
+    @Test
+	public void indexTest() throws Exception {
+        FramedSequenceDbWriter<String> writer = write(1000, 7);
+        FramedSequenceDbIndex<String, String> index = index(writer.dbfile());
+        Assert.assertEquals(9, index.keyCount());
+        Assert.assertEquals(900, index.size());
+        List<String> list = index.get("7");
+        Assert.assertEquals(100, list.size());
+        Assert.assertEquals("value7", list.get(0));
+        Assert.assertEquals("value997", list.get(99));
+        Assert.assertTrue(index.get("x").isEmpty());
+        Assert.assertTrue(index.get("3").isEmpty());
+        Assert.assertTrue(index.get(null).isEmpty());
+        index.close();
+        
+        long modified = index.indexfile().file().lastModified();
+        Assert.assertTrue(index.indexfile().exists());
+        index = index(writer.dbfile());
+        Assert.assertEquals(modified, index.indexfile().file().lastModified());
+        Assert.assertEquals("value997", index.get("7").get(99));
+        index.close();
+        
+        // incomplete index file (crash while building) is built again
+        RandomAccessFile raf = new RandomAccessFile(index.indexfile().file(), "rw");
+        raf.setLength(raf.length() / 2);
+        raf.close();
+        index = index(writer.dbfile());
+        Assert.assertEquals(900, index.size());
+        Assert.assertEquals("value997", index.get("7").get(99));
+        index.close();
+        index.delete();
+        Assert.assertFalse(index.indexfile().exists());
+    }
+    
+}
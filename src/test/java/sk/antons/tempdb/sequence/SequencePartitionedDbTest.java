@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.SequenceDbBuilder;
+import sk.antons.tempdb.serialization.StringSerialization;
+
+/**
+ *
+ * @author antons
+ */
+public class SequencePartitionedDbTest {
+	private static Logger log = Logger.getLogger(SequencePartitionedDbTest.class.getName());
+
+    private static KeyExtractor<String, String> extractor = new KeyExtractor<String, String>() {
+        @Override
+        public String key(String value) {
+            return value.substring(0, value.indexOf(':'));
+        }
+    };
+    
+    @Test
+	public void baseTest() throws Exception {
+        PartitionedSequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .partitions(4)
+            .partitionedSequenceDbWriter(extractor);
+        for(int i = 0; i < 1000; i++) {
+            writer.add("key" + (i % 30) + ":" + i);
+        }
+        writer.close();
+        
+        PartitionedSequenceDbReader<String> reader = SequenceDbBuilder.instance(String.class)
+            .dbfile(writer.dbfile())
+            .deserializer(StringSerialization.deserializer())
+            .partitionedSequenceDbReader();
+        Assert.assertEquals(4, reader.partitions());
+        
+        Map<String, Integer> keyPartitions = new HashMap<String, Integer>();
+        int count = 0;
+        int partitions = 0;
+        SequenceDbReader<String> partition = reader.nextPartition();
+        while(partition != null) {
+            String value = partition.next();
+            while(value != null) {
+                Integer previous = keyPartitions.put(extractor.key(value), partitions);
+                Assert.assertTrue((previous == null) || (previous == partitions));
+                count++;
+                value = partition.next();
+            }
+            partition.close();
+            partitions++;
+            partition = reader.nextPartition();
+        }
+        Assert.assertEquals(4, partitions);
+        Assert.assertEquals(1000, count);
+        Assert.assertEquals(30, keyPartitions.size());
+        reader.delete();
+    }
+    
+    @Test
+	public void deleteTest() throws Exception {
+        PartitionedSequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .partitions(4)
+            .partitionedSequenceDbWriter(extractor);
+        for(int i = 0; i < 100; i++) {
+            writer.add("key" + (i % 30) + ":" + i);
+        }
+        writer.close();
+        Assert.assertTrue(writer.dbfile().part(3).exists());
+        writer.delete();
+        Assert.assertFalse(writer.dbfile().exists());
+        for(int i = 0; i < 4; i++) {
+            Assert.assertFalse(writer.dbfile().part(i).exists());
+        }
+    }
+    
+    private static SequenceDbReader<String> distinct(boolean keepLast, int memorySize, Map<String, String> expected) {
+        SequenceDb<String> source = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDb();
+        for(int i = 0; i < 1000; i++) {
+            String value = "key" + (i % 30) + ":" + i;
+            source.add(value);
+            if(keepLast || !expected.containsKey(extractor.key(value))) expected.put(extractor.key(value), value);
+        }
+        SequenceDbWriter<String> target = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .sequenceDbWriter();
+        SequenceDbDistinct.Result result = SequenceDbBuilder.instance(String.class)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .partitions(4)
+            .memorySize(memorySize)
+            .sequenceDbDistinct(extractor)
+            .keepLast(keepLast)
+            .distinct(source, target);
+        source.close();
+        target.close();
+        Assert.assertEquals(1000, result.read());
+        Assert.assertEquals(30, result.written());
+        Assert.assertEquals(970, result.duplicates());
+        return SequenceDbBuilder.instance(String.class)
+            .dbfile(target.dbfile())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDbReader();
+    }
+    
+    @Test
+	public void distinctTest() throws Exception {
+        for(int memorySize : new int[] {100000, 20}) {
+            for(boolean keepLast : new boolean[] {false, true}) {
+                Map<String, String> expected = new HashMap<String, String>();
+                SequenceDbReader<String> reader = distinct(keepLast, memorySize, expected);
+                Set<String> values = new HashSet<String>();
+                for(String value = reader.next(); value != null; value = reader.next()) {
+                    values.add(value);
+                }
+                reader.close();
+                Assert.assertEquals(new HashSet<String>(expected.values()), values);
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.sequence;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.SequenceDbBuilder;
+import sk.antons.tempdb.serialization.StringSerialization;
+
+/**
+ *
+ * @author antons
+ */
+public class SequencePublisherTest {
+	private static Logger log = Logger.getLogger(SequencePublisherTest.class.getName());
+
+    private static SequenceDbReader<String> reader(int count) {
+        SequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .sequenceDbWriter();
+        for(int i = 0; i < count; i++) {
+            writer.add("value" + i);
+        }
+        writer.close();
+        return SequenceDbBuilder.instance(String.class)
+            .dbfile(writer.dbfile())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDbReader();
+    }
+    
+    private static class CountingSource implements SequenceSource<String> {
+        private SequenceSource<String> source;
+        private AtomicInteger read = new AtomicInteger();
+        public CountingSource(SequenceSource<String> source) { this.source = source; }
+        public String next() {
+            String value = source.next();
+            if(value != null) read.incrementAndGet();
+            return value;
+        }
+    }
+    
+    private static class TestSubscriber implements SequenceSubscriber<String> {
+        private List<String> values = new ArrayList<String>();
+        private CountDownLatch finished = new CountDownLatch(1);
+        private SequenceSubscription subscription;
+        private boolean completed = false;
+        private Throwable error;
+        private int step;
+        
+        public TestSubscriber(int step) { this.step = step; }
+        
+        public void onSubscribe(SequenceSubscription subscription) {
+            this.subscription = subscription;
+            subscription.request(step);
+        }
+        public void onNext(String value) {
+            values.add(value);
+            if(values.size() % step == 0) subscription.request(step);
+        }
+        public void onError(Throwable error) {
+            this.error = error;
+            finished.countDown();
+        }
+        public void onComplete() {
+            completed = true;
+            finished.countDown();
+        }
+    }
+    
+    @Test
+	public void publishTest() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        SequenceDbReader<String> reader = reader(10000);
+        SequencePublisher<String> publisher = new SequencePublisher<String>(reader, executor, 100);
+        TestSubscriber subscriber = new TestSubscriber(7);
+        publisher.subscribe(subscriber);
+        Assert.assertTrue(subscriber.finished.await(10, TimeUnit.SECONDS));
+        reader.close();
+        Assert.assertTrue(subscriber.completed);
+        Assert.assertNull(subscriber.error);
+        Assert.assertEquals(10000, subscriber.values.size());
+        for(int i = 0; i < 10000; i++) {
+            Assert.assertEquals("value" + i, subscriber.values.get(i));
+        }
+        
+        TestSubscriber second = new TestSubscriber(1);
+        publisher.subscribe(second);
+        Assert.assertTrue(second.finished.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(second.error instanceof IllegalStateException);
+        executor.shutdown();
+    }
+    
+    @Test
+	public void backpressureTest() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        SequenceDbReader<String> reader = reader(1000);
+        CountingSource source = new CountingSource(reader);
+        SequencePublisher<String> publisher = new SequencePublisher<String>(source, executor, 100);
+        final List<String> values = new ArrayList<String>();
+        final SequenceSubscription[] subscriptions = new SequenceSubscription[1];
+        publisher.subscribe(new SequenceSubscriber<String>() {
+            public void onSubscribe(SequenceSubscription subscription) { subscriptions[0] = subscription; }
+            public void onNext(String value) { synchronized(values) { values.add(value); } }
+            public void onError(Throwable error) { }
+            public void onComplete() { }
+        });
+        subscriptions[0].request(5);
+        executor.submit(new Runnable() { public void run() { } }).get();
+        Assert.assertEquals(5, source.read.get());
+        Assert.assertEquals(5, values.size());
+        subscriptions[0].request(150);
+        executor.submit(new Runnable() { public void run() { } }).get();
+        Assert.assertEquals(155, source.read.get());
+        Assert.assertEquals(155, values.size());
+        subscriptions[0].cancel();
+        subscriptions[0].request(10);
+        executor.submit(new Runnable() { public void run() { } }).get();
+        Assert.assertEquals(155, source.read.get());
+        Assert.assertEquals(155, values.size());
+        reader.close();
+        executor.shutdown();
+    }
+    
+    @Test
+	public void exactDemandTest() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        SequenceDbReader<String> reader = reader(100);
+        SequencePublisher<String> publisher = new SequencePublisher<String>(reader, executor, 30);
+        final List<String> values = new ArrayList<String>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        final SequenceSubscription[] subscriptions = new SequenceSubscription[1];
+        publisher.subscribe(new SequenceSubscriber<String>() {
+            public void onSubscribe(SequenceSubscription subscription) { 
+                subscriptions[0] = subscription; 
+                subscription.request(100); 
+            }
+            public void onNext(String value) { values.add(value); }
+            public void onError(Throwable error) { }
+            public void onComplete() { completed.countDown(); }
+        });
+        executor.submit(new Runnable() { public void run() { } }).get();
+        Assert.assertEquals(100, values.size());
+        // nothing is read beyond demand, end is found by next request
+        Assert.assertEquals(1, completed.getCount());
+        subscriptions[0].request(1);
+        Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(100, values.size());
+        reader.close();
+        executor.shutdown();
+    }
+    
+}
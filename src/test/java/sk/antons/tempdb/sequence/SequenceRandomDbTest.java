@@ -16,12 +16,18 @@
 package sk.antons.tempdb.sequence;
 
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
 import org.junit.Assert;
 import org.junit.Test;
 import sk.antons.tempdb.SequenceDbBuilder;
 import sk.antons.tempdb.sequence.SequenceDb;
+import sk.antons.tempdb.serialization.BytesSerializer;
+import sk.antons.tempdb.serialization.ReusingBytesDeserializer;
 import sk.antons.tempdb.serialization.StringSerialization;
 
 /**
@@ -85,4 +91,147 @@ public class SequenceRandomDbTest {
 
     }
     
+    @Test
+	public void cursorTest() throws Exception {
+        SequenceDb<String> db = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDb();
+
+        db.add("jano");
+        db.add("fero");
+        
+        SequenceDbCursor<String> indexer = db.cursor("indexer");
+        SequenceDbCursor<String> exporter = db.cursor("exporter");
+        Assert.assertSame(indexer, db.cursor("indexer"));
+        
+        Assert.assertEquals("jano", indexer.next());
+        Assert.assertEquals("fero", indexer.next());
+        Assert.assertNull(indexer.next());
+        Assert.assertEquals("jano", exporter.next());
+        db.add("ferowww");
+        Assert.assertEquals("ferowww", indexer.next());
+        Assert.assertEquals("fero", exporter.next());
+        Assert.assertEquals("ferowww", exporter.next());
+        Assert.assertNull(exporter.next());
+        Assert.assertEquals("jano", db.next());
+
+        db.close();
+    }
+    
+    @Test
+	public void distantCursorTest() throws Exception {
+        SequenceDb<String> db = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDb();
+        for(int i = 0; i < 50000; i++) db.add("value" + i);
+        
+        SequenceDbCursor<String> first = db.cursor("first");
+        SequenceDbCursor<String> second = db.cursor("second");
+        for(int i = 0; i < 25000; i++) second.next();
+        for(int i = 0; i < 25000; i++) {
+            Assert.assertEquals("value" + i, first.next());
+            Assert.assertEquals("value" + (i + 25000), second.next());
+            Assert.assertEquals("value" + i, db.next());
+        }
+        Assert.assertNull(second.next());
+        Assert.assertEquals("value25000", first.next());
+        db.close();
+    }
+    
+    private static class Point {
+        private int x;
+        private int y;
+    }
+    
+    private static class PointSerialization implements BytesSerializer<Point>, ReusingBytesDeserializer<Point> {
+        public void serialize(Point value, DataOutputStream dos) throws IOException {
+            dos.writeInt(value.x);
+            dos.writeInt(value.y);
+        }
+        public Point deserialize(DataInputStream dis) throws IOException {
+            return deserialize(dis, new Point());
+        }
+        public Point deserialize(DataInputStream dis, Point reuse) throws IOException {
+            if(reuse == null) reuse = new Point();
+            reuse.x = dis.readInt();
+            reuse.y = dis.readInt();
+            return reuse;
+        }
+    }
+    
+    @Test
+	public void reuseTest() throws Exception {
+        PointSerialization serialization = new PointSerialization();
+        SequenceDb<Point> db = SequenceDbBuilder.instance(Point.class)
+            .tempfile("test", ".db", true)
+            .serializer(serialization)
+            .deserializer(serialization)
+            .sequenceDb();
+        SequenceDbWriter<Point> writer = SequenceDbBuilder.instance(Point.class)
+            .tempfile("test", ".db", true)
+            .serializer(serialization)
+            .sequenceDbWriter();
+        for(int i = 0; i < 100; i++) {
+            Point p = new Point();
+            p.x = i;
+            p.y = -i;
+            db.add(p);
+            writer.add(p);
+        }
+        writer.close();
+        SequenceDbReader<Point> reader = SequenceDbBuilder.instance(Point.class)
+            .dbfile(writer.dbfile())
+            .deserializer(serialization)
+            .sequenceDbReader();
+        SequenceDbCursor<Point> cursor = db.cursor("c");
+        
+        Point reuse = new Point();
+        for(int i = 0; i < 100; i++) {
+            Assert.assertSame(reuse, db.next(reuse));
+            Assert.assertEquals(i, reuse.x);
+            Assert.assertSame(reuse, cursor.next(reuse));
+            Assert.assertEquals(-i, reuse.y);
+            Assert.assertSame(reuse, reader.next(reuse));
+            Assert.assertEquals(i, reuse.x);
+        }
+        Assert.assertNull(db.next(reuse));
+        Assert.assertNull(cursor.next(reuse));
+        Assert.assertNull(reader.next(reuse));
+        reader.close();
+        db.close();
+    }
+    
+    @Test
+	public void bytesTest() throws Exception {
+        SequenceDb<String> db = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDb();
+        SequenceDb<String> copy = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDb();
+        db.add("jano");
+        db.add("fero");
+        SequenceDbCursor<String> cursor = db.cursor("c");
+        for(ByteBuffer bytes = db.nextBytes(); bytes != null; bytes = db.nextBytes()) {
+            Assert.assertTrue(bytes.isReadOnly());
+            copy.addBytes(bytes);
+        }
+        Assert.assertEquals("jano", copy.next());
+        Assert.assertEquals("fero", copy.next());
+        Assert.assertNull(copy.next());
+        ByteBuffer bytes = cursor.nextBytes();
+        Assert.assertEquals(6, bytes.remaining());
+        Assert.assertEquals('j', bytes.get(2));
+        copy.close();
+        db.close();
+    }
+    
 }
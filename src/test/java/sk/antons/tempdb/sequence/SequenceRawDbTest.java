@@ -16,11 +16,18 @@
 package sk.antons.tempdb.sequence;
 
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.logging.Logger;
 
 import org.junit.Assert;
 import org.junit.Test;
 import sk.antons.tempdb.SequenceDbBuilder;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.base.DbFile;
 import sk.antons.tempdb.serialization.StringSerialization;
 
 /**
@@ -72,4 +79,132 @@ public class SequenceRawDbTest {
 
     }
     
+    @Test
+	public void asyncTest() throws Exception {
+        SequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .async(100, 2)
+            .sequenceDbWriter();
+        
+        Assert.assertTrue(writer instanceof AsyncSequenceDbWriter);
+        for(int i = 0; i < 1000; i++) {
+            writer.add("value" + i);
+        }
+        writer.flush();
+        writer.add("last");
+        writer.close();
+        
+        SequenceDbReader<String> reader = SequenceDbBuilder.instance(String.class)
+            .dbfile(writer.dbfile())
+            .deserializer(StringSerialization.deserializer())
+            .sequenceDbReader();
+        
+        for(int i = 0; i < 1000; i++) {
+            Assert.assertEquals("value" + i, reader.next());
+        }
+        Assert.assertEquals("last", reader.next());
+        Assert.assertNull(reader.next());
+        reader.close();
+    }
+    
+    @Test
+	public void asyncFailureTest() throws Exception {
+        AsyncSequenceDbWriter<String> writer = (AsyncSequenceDbWriter<String>)SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .async(100, 2)
+            .sequenceDbWriter();
+        writer.os = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException { throw new IOException("disk full"); }
+            @Override
+            public void close() throws IOException { throw new IOException("close failed"); }
+        };
+        try {
+            for(int i = 0; i < 1000; i++) {
+                writer.add("value" + i);
+            }
+            writer.flush();
+            Assert.fail("background failure not reported");
+        } catch(TempDbException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+        try {
+            writer.close();
+            Assert.fail("background failure not reported");
+        } catch(TempDbException e) {
+            Assert.assertEquals("disk full", e.getCause().getMessage());
+        }
+        writer.delete();
+    }
+    
+    private static DbFile write(String prefix, int count) {
+        SequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .sequenceDbWriter();
+        for(int i = 0; i < count; i++) {
+            writer.add(prefix + i);
+        }
+        writer.close();
+        return writer.dbfile();
+    }
+    
+    @Test(timeout = 10000)
+	public void exportFullChannelTest() throws Exception {
+        DbFile file = write("a", 100);
+        SequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .sequenceDbWriter();
+        writer.appendFrom(file);
+        long size = writer.exportTo(new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) { return 0; }
+            @Override
+            public boolean isOpen() { return true; }
+            @Override
+            public void close() { }
+        });
+        Assert.assertEquals(0, size);
+        writer.close();
+        writer.delete();
+    }
+    
+    @Test
+	public void appendTest() throws Exception {
+        SequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .sequenceDbWriter();
+        writer.add("first");
+        writer.appendFrom(write("a", 100), write("b", 0), write("c", 5000));
+        writer.add("last");
+        
+        DbFile exported = DbFile.temporary("test", ".db", true);
+        FileOutputStream os = exported.fileOutputStream();
+        long size = writer.exportTo(os.getChannel());
+        os.close();
+        writer.close();
+        Assert.assertTrue(size > 0);
+        
+        for(DbFile file : new DbFile[] {writer.dbfile(), exported}) {
+            SequenceDbReader<String> reader = SequenceDbBuilder.instance(String.class)
+                .dbfile(file)
+                .deserializer(StringSerialization.deserializer())
+                .sequenceDbReader();
+            Assert.assertEquals("first", reader.next());
+            for(int i = 0; i < 100; i++) {
+                Assert.assertEquals("a" + i, reader.next());
+            }
+            for(int i = 0; i < 5000; i++) {
+                Assert.assertEquals("c" + i, reader.next());
+            }
+            Assert.assertEquals("last", reader.next());
+            Assert.assertNull(reader.next());
+            reader.close();
+        }
+    }
+    
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ *
+ * @author antons
+ */
+public class BufferSerializationTest {
+	private static Logger log = Logger.getLogger(BufferSerializationTest.class.getName());
+
+    private static class Holder {
+        long value;
+    }
+    
+    private static class HolderSerialization implements BytesSerializer<Holder>, ReusingBytesDeserializer<Holder> {
+        private Map<Object, Object> streams = new IdentityHashMap<Object, Object>();
+        private int created = 0;
+        
+        public void serialize(Holder value, DataOutputStream dos) throws IOException {
+            streams.put(dos, dos);
+            dos.writeLong(value.value);
+        }
+
+        public Holder deserialize(DataInputStream dis) throws IOException {
+            created++;
+            return deserialize(dis, new Holder());
+        }
+
+        public Holder deserialize(DataInputStream dis, Holder reuse) throws IOException {
+            streams.put(dis, dis);
+            reuse.value = dis.readLong();
+            return reuse;
+        }
+    }
+    
+    @Test
+	public void reuseTest() throws Exception {
+        HolderSerialization serialization = new HolderSerialization();
+        BufferSerializer<Holder> serializer = BufferSerialization.serializer(serialization);
+        BufferDeserializer<Holder> deserializer = BufferSerialization.deserializer(serialization);
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        Holder value = new Holder();
+        Holder reuse = new Holder();
+        for(int i = 0; i < 1000; i++) {
+            value.value = i;
+            buffer = BufferSerialization.serialize(serializer, value, buffer, 4);
+            buffer.flip();
+            buffer.position(4);
+            Assert.assertSame(reuse, BufferSerialization.deserialize(deserializer, buffer, reuse));
+            Assert.assertEquals(i, reuse.value);
+        }
+        Assert.assertEquals(0, serialization.created);
+        Assert.assertEquals(2, serialization.streams.size());
+        Assert.assertEquals(7, deserializer.deserialize(ByteBuffer.wrap(new byte[] {0, 0, 0, 0, 0, 0, 0, 7})).value);
+        Assert.assertEquals(1, serialization.created);
+    }
+    
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.serialization;
+
+
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.SequenceDbBuilder;
+import sk.antons.tempdb.sequence.SequenceDb;
+import sk.antons.tempdb.sequence.SequenceDbReader;
+import sk.antons.tempdb.sequence.SequenceDbWriter;
+
+/**
+ *
+ * @author antons
+ */
+public class Utf8SerializationTest {
+	private static Logger log = Logger.getLogger(Utf8SerializationTest.class.getName());
+
+    private static String[] values() {
+        StringBuilder big = new StringBuilder();
+        for(int i = 0; i < 30000; i++) {
+            big.append("žltý kôň ").append(i);
+        }
+        return new String[] {
+            "jano", "", "žltý kôň", "中文", "emoji 😀 end", big.toString()
+        };
+    }
+    
+    @Test
+	public void streamTest() throws Exception {
+        String[] values = values();
+        SequenceDbWriter<String> writer = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .serializer(Utf8Serialization.serializer())
+            .sequenceDbWriter();
+        for(String value : values) {
+            writer.add(value);
+        }
+        writer.add(null);
+        writer.close();
+        
+        SequenceDbReader<String> reader = SequenceDbBuilder.instance(String.class)
+            .dbfile(writer.dbfile())
+            .deserializer(Utf8Serialization.deserializer())
+            .sequenceDbReader();
+        for(String value : values) {
+            Assert.assertEquals(value, reader.next());
+        }
+        Assert.assertEquals("", reader.next());
+        Assert.assertNull(reader.next());
+        reader.close();
+    }
+    
+    @Test
+	public void bufferTest() throws Exception {
+        String[] values = values();
+        SequenceDb<String> db = SequenceDbBuilder.instance(String.class)
+            .tempfile("test", ".db", true)
+            .bufferserializer(Utf8Serialization.bufferSerializer())
+            .bufferdeserializer(Utf8Serialization.bufferDeserializer())
+            .sequenceDb();
+        for(String value : values) {
+            db.add(value);
+        }
+        for(String value : values) {
+            Assert.assertEquals(value, db.next());
+        }
+        Assert.assertNull(db.next());
+        db.close();
+    }
+    
+    @Test
+	public void encodingTest() throws Exception {
+        for(String value : values()) {
+            byte[] bytes = new byte[Utf8Serialization.encodedLength(value)];
+            Assert.assertEquals(bytes.length, Utf8Serialization.encode(value, bytes, 0));
+            Assert.assertArrayEquals(value.getBytes("UTF-8"), bytes);
+            Assert.assertEquals(value, Utf8Serialization.decode(bytes, 0, bytes.length));
+        }
+    }
+    
+}
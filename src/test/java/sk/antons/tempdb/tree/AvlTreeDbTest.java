@@ -16,11 +16,21 @@
 package sk.antons.tempdb.tree;
 
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.junit.Assert;
 import org.junit.Test;
 import sk.antons.tempdb.TreeDbBuilder;
+import sk.antons.tempdb.sequence.SequenceSource;
+import sk.antons.tempdb.serialization.BufferDeserializer;
+import sk.antons.tempdb.serialization.BufferSerializer;
+import sk.antons.tempdb.serialization.OrderedKeySerialization;
+import sk.antons.tempdb.serialization.PrimitiveSerialization;
 import sk.antons.tempdb.serialization.StringSerialization;
 
 /**
@@ -53,4 +63,172 @@ public class AvlTreeDbTest {
     }
     
     
+    private static class IntSerialization implements BufferSerializer<Integer>, BufferDeserializer<Integer> {
+        public void serialize(Integer value, ByteBuffer buffer) { buffer.putInt(value); }
+        public Integer deserialize(ByteBuffer buffer) { return buffer.getInt(); }
+    }
+    
+    @Test
+	public void bufferTest() throws Exception {
+        IntSerialization keys = new IntSerialization();
+        AvlTreeDb<Integer, String> db = TreeDbBuilder.instance(Integer.class, String.class)
+            .tempfile("test", ".db", true)
+            .bufferkeyserializer(keys)
+            .bufferkeydeserializer(keys)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .avlTreeDb();
+        
+        StringBuilder big = new StringBuilder();
+        for(int i = 0; i < 1000; i++) {
+            big.append("value").append(i);
+        }
+        for(int i = 0; i < 1000; i++) {
+            db.put((i * 7) % 1000, (i % 100 == 0) ? big.toString() + i : "value" + ((i * 7) % 1000));
+        }
+        db.put(5, "second");
+        for(int i = 0; i < 1000; i++) {
+            int key = (i * 7) % 1000;
+            List<String> values = db.get(key);
+            Assert.assertEquals(key == 5 ? 2 : 1, values.size());
+            Assert.assertEquals((i % 100 == 0) ? big.toString() + i : "value" + key, values.get(0));
+        }
+        Assert.assertEquals("second", db.get(5).get(1));
+        Assert.assertTrue(db.get(1000).isEmpty());
+        db.close();
+    }
+    
+    private static <K, V> List<V> values(SequenceSource<Map.Entry<K, V>> source) {
+        List<V> list = new ArrayList<V>();
+        for(Map.Entry<K, V> entry = source.next(); entry != null; entry = source.next()) {
+            list.add(entry.getValue());
+        }
+        return list;
+    }
+    
+    @Test
+	public void rangeTest() throws Exception {
+        AvlTreeDb<Integer, Integer> db = TreeDbBuilder.instance(Integer.class, Integer.class)
+            .tempfile("test", ".db", true)
+            .bufferkeyserializer(OrderedKeySerialization.ints())
+            .bufferkeydeserializer(OrderedKeySerialization.ints())
+            .bufferserializer(PrimitiveSerialization.ints())
+            .bufferdeserializer(PrimitiveSerialization.ints())
+            .avlTreeDb();
+        
+        List<Integer> keys = new ArrayList<Integer>();
+        for(int i = -500; i < 500; i++) {
+            keys.add(i * 1000);
+        }
+        keys.add(Integer.MIN_VALUE);
+        keys.add(Integer.MAX_VALUE);
+        Collections.shuffle(keys, new java.util.Random(1));
+        for(Integer key : keys) {
+            db.put(key, key);
+        }
+        db.put(0, 1);
+        
+        List<Integer> all = values(db.range(null, null));
+        Assert.assertEquals(1003, all.size());
+        Assert.assertEquals(Integer.MIN_VALUE, all.get(0).intValue());
+        Assert.assertEquals(Integer.MAX_VALUE, all.get(all.size() - 1).intValue());
+        for(int i = 1; i < all.size(); i++) {
+            Assert.assertTrue(all.get(i - 1) <= all.get(i));
+        }
+        
+        List<Integer> part = values(db.range(-2500, 3000));
+        Assert.assertEquals("[-2000, -1000, 0, 1, 1000, 2000]", part.toString());
+        db.close();
+    }
+    
+    @Test
+	public void tupleTest() throws Exception {
+        OrderedKeySerialization.TupleKey tuples = OrderedKeySerialization.tuples(
+            OrderedKeySerialization.strings(), OrderedKeySerialization.doubles());
+        AvlTreeDb<Object[], String> db = TreeDbBuilder.instance(Object[].class, String.class)
+            .tempfile("test", ".db", true)
+            .bufferkeyserializer(tuples)
+            .bufferkeydeserializer(tuples)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .avlTreeDb();
+        String[] names = {"b", "a", "ab", "a\u0000", "", "\u017e"};
+        double[] numbers = {-1.5, 2, 0, -0.25, Double.NEGATIVE_INFINITY};
+        for(String name : names) {
+            for(double number : numbers) {
+                db.put(new Object[] {name, number}, name + "/" + number);
+            }
+        }
+        
+        List<String> values = values(db.range(null, null));
+        List<String> expected = new ArrayList<String>();
+        String[] sortedNames = {"", "a", "a\u0000", "ab", "b", "\u017e"};
+        double[] sortedNumbers = {Double.NEGATIVE_INFINITY, -1.5, -0.25, 0, 2};
+        for(String name : sortedNames) {
+            for(double number : sortedNumbers) {
+                expected.add(name + "/" + number);
+            }
+        }
+        Assert.assertEquals(expected, values);
+        Assert.assertEquals("ab/2.0", db.get(new Object[] {"ab", 2.0}).get(0));
+        db.close();
+    }
+    
+    @Test
+	public void bytesTest() throws Exception {
+        AvlTreeDb<String, String> avl = TreeDbBuilder.instance(String.class, String.class)
+            .tempfile("test", ".db", true)
+            .keyserializer(StringSerialization.serializer())
+            .keydeserializer(StringSerialization.deserializer())
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .avlTreeDb();
+        MapTreeDb<String, String> map = TreeDbBuilder.instance(String.class, String.class)
+            .tempfile("test", ".db", true)
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .mapTreeDb();
+        avl.put("jano", "jano");
+        avl.put("jano", "jano2");
+        avl.put("fero", "fero");
+        for(ByteBuffer bytes : avl.getBytes("jano")) {
+            Assert.assertTrue(bytes.isReadOnly());
+            map.putBytes("jano", bytes);
+        }
+        Assert.assertEquals(2, map.get("jano").size());
+        Assert.assertEquals("jano2", map.get("jano").get(1));
+        avl.putBytes("jozo", map.getBytes("jano").get(1));
+        Assert.assertEquals("jano2", avl.get("jozo").get(0));
+        Assert.assertTrue(avl.getBytes("nobody").isEmpty());
+        Assert.assertTrue(map.getBytes("nobody").isEmpty());
+        map.close();
+        avl.close();
+    }
+    
+    @Test
+	public void bigKeyTest() throws Exception {
+        AvlTreeDb<String, String> db = TreeDbBuilder.instance(String.class, String.class)
+            .tempfile("test", ".db", true)
+            .keyserializer(StringSerialization.serializer())
+            .keydeserializer(StringSerialization.deserializer())
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .avlTreeDb();
+        List<String> keys = new ArrayList<String>();
+        for(int i = 0; i < 10; i++) {
+            StringBuilder key = new StringBuilder();
+            for(int j = 0; j < 100 * (i + 9); j++) key.append((char)('a' + i));
+            keys.add(key.toString());
+            db.put(key.toString(), "value" + i);
+            db.putBytes(key.toString(), ByteBuffer.wrap(new byte[] {0, 1, 'x'}));
+        }
+        for(int i = 0; i < keys.size(); i++) {
+            List<String> values = db.get(keys.get(i));
+            Assert.assertEquals(2, values.size());
+            Assert.assertEquals("value" + i, values.get(0));
+            Assert.assertEquals("x", values.get(1));
+        }
+        db.close();
+    }
+    
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.TreeDbBuilder;
+import sk.antons.tempdb.serialization.StringSerialization;
+
+/**
+ *
+ * @author antons
+ */
+public class ConstantHashDbTest {
+	private static Logger log = Logger.getLogger(ConstantHashDbTest.class.getName());
+
+    private static TreeDbBuilder<String, String> builder() {
+        return TreeDbBuilder.instance(String.class, String.class)
+            .tempfile("test", ".db", true)
+            .keyserializer(StringSerialization.serializer())
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer());
+    }
+    
+    private static void check(boolean memoryMapped) {
+        ConstantHashDbWriter<String, String> writer = builder().constantHashDbWriter();
+        for(int i = 0; i < 1000; i++) {
+            writer.put("key" + i, "value" + i);
+        }
+        writer.put("key10", "other10");
+        StringBuilder big = new StringBuilder();
+        for(int i = 0; i < 300; i++) big.append("big").append(i);
+        writer.put("big", big.toString());
+        writer.put(big.toString(), "bigkey");
+        writer.close();
+        
+        ConstantHashDb<String, String> db = builder()
+            .dbfile(writer.dbfile())
+            .memoryMapped(memoryMapped)
+            .constantHashDb();
+        for(int i = 0; i < 1000; i++) {
+            Assert.assertEquals("value" + i, db.get("key" + i).get(0));
+        }
+        List<String> list = db.get("key10");
+        Assert.assertEquals(2, list.size());
+        Assert.assertEquals("other10", list.get(1));
+        Assert.assertTrue(db.get("key1000").isEmpty());
+        Assert.assertTrue(db.get("").isEmpty());
+        Assert.assertEquals(big.toString(), db.get("big").get(0));
+        Assert.assertEquals("bigkey", db.get(big.toString()).get(0));
+        db.close();
+    }
+    
+    @Test
+	public void fileTest() throws Exception {
+        check(false);
+    }
+    
+    @Test
+	public void mappedTest() throws Exception {
+        check(true);
+    }
+    
+    @Test
+	public void nullTest() throws Exception {
+        ConstantHashDbWriter<String, String> writer = builder().constantHashDbWriter();
+        writer.close();
+        ConstantHashDb<String, String> db = builder().dbfile(writer.dbfile()).constantHashDb();
+        Assert.assertTrue(db.get("jano").isEmpty());
+        db.close();
+    }
+    
+}
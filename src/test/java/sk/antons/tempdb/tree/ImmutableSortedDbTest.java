@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.TempDbException;
+import sk.antons.tempdb.TreeDbBuilder;
+import sk.antons.tempdb.sequence.SequenceSource;
+import sk.antons.tempdb.serialization.StringSerialization;
+
+/**
+ *
+ * @author antons
+ */
+public class ImmutableSortedDbTest {
+	private static Logger log = Logger.getLogger(ImmutableSortedDbTest.class.getName());
+
+    private static TreeDbBuilder<String, String> builder() {
+        return TreeDbBuilder.instance(String.class, String.class)
+            .tempfile("test", ".db", true)
+            .keyserializer(StringSerialization.serializer())
+            .keydeserializer(StringSerialization.deserializer())
+            .serializer(StringSerialization.serializer())
+            .deserializer(StringSerialization.deserializer())
+            .blockSize(50);
+    }
+    
+    private static ImmutableSortedDb<String, String> open(ImmutableSortedDbWriter<String, String> writer) {
+        return builder().dbfile(writer.dbfile()).immutableSortedDb();
+    }
+    
+    @Test
+	public void baseTest() throws Exception {
+        ImmutableSortedDbWriter<String, String> writer = builder().immutableSortedDbWriter();
+        for(int i = 100; i < 400; i++) {
+            writer.put("key" + i, "value" + i);
+            if(i % 10 == 0) writer.put("key" + i, "other" + i);
+        }
+        writer.close();
+        
+        ImmutableSortedDb<String, String> db = open(writer);
+        Assert.assertEquals(330, db.size());
+        Assert.assertEquals("value100", db.get("key100").get(0));
+        Assert.assertEquals("value255", db.get("key255").get(0));
+        Assert.assertEquals("value399", db.get("key399").get(0));
+        List<String> list = db.get("key250");
+        Assert.assertEquals(2, list.size());
+        Assert.assertEquals("value250", list.get(0));
+        Assert.assertEquals("other250", list.get(1));
+        Assert.assertTrue(db.get("key").isEmpty());
+        Assert.assertTrue(db.get("key400").isEmpty());
+        Assert.assertTrue(db.get("key2555").isEmpty());
+        db.close();
+    }
+    
+    @Test
+	public void scanTest() throws Exception {
+        ImmutableSortedDbWriter<String, String> writer = builder().immutableSortedDbWriter();
+        for(int i = 100; i < 400; i++) {
+            writer.put("key" + i, "value" + i);
+        }
+        writer.close();
+        
+        ImmutableSortedDb<String, String> db = open(writer);
+        SequenceSource<Map.Entry<String, String>> scan = db.scan();
+        for(int i = 100; i < 400; i++) {
+            Map.Entry<String, String> entry = scan.next();
+            Assert.assertEquals("key" + i, entry.getKey());
+            Assert.assertEquals("value" + i, entry.getValue());
+        }
+        Assert.assertNull(scan.next());
+        
+        scan = db.scan("key2555");
+        Assert.assertEquals("key256", scan.next().getKey());
+        Assert.assertEquals("key257", scan.next().getKey());
+        Assert.assertNull(db.scan("key4").next());
+        Assert.assertEquals("key100", db.scan("a").next().getKey());
+        db.close();
+    }
+    
+    @Test
+	public void mapTest() throws Exception {
+        MapTreeDb<String, String> map = builder().mapTreeDb();
+        map.put("jano", "jano");
+        map.put("fero", "fero");
+        map.put("jano", "jano2");
+        ImmutableSortedDbWriter<String, String> writer = builder().immutableSortedDbWriter();
+        writer.putAll(map);
+        writer.close();
+        map.close();
+        
+        ImmutableSortedDb<String, String> db = open(writer);
+        Assert.assertEquals(3, db.size());
+        Assert.assertEquals("fero", db.get("fero").get(0));
+        Assert.assertEquals("jano2", db.get("jano").get(1));
+        db.close();
+    }
+    
+    @Test(expected = TempDbException.class)
+	public void orderTest() throws Exception {
+        ImmutableSortedDbWriter<String, String> writer = builder().immutableSortedDbWriter();
+        writer.put("jano", "jano");
+        writer.put("fero", "fero");
+    }
+    
+    @Test
+	public void nullTest() throws Exception {
+        ImmutableSortedDbWriter<String, String> writer = builder().immutableSortedDbWriter();
+        writer.close();
+        ImmutableSortedDb<String, String> db = open(writer);
+        Assert.assertTrue(db.get("jano").isEmpty());
+        Assert.assertNull(db.scan().next());
+        Assert.assertNull(db.scan("jano").next());
+        db.close();
+    }
+    
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.TreeDbBuilder;
+import sk.antons.tempdb.serialization.PrimitiveSerialization;
+import sk.antons.tempdb.serialization.Utf8Serialization;
+
+/**
+ *
+ * @author antons
+ */
+public class LongKeyTreeDbTest {
+	private static Logger log = Logger.getLogger(LongKeyTreeDbTest.class.getName());
+
+    @Test
+	public void baseTest() throws Exception {
+        LongKeyTreeDb<String> db = TreeDbBuilder.instance(Long.class, String.class)
+            .tempfile("test", ".db", true)
+            .bufferserializer(Utf8Serialization.bufferSerializer())
+            .bufferdeserializer(Utf8Serialization.bufferDeserializer())
+            .longKeyTreeDb();
+        
+        Random random = new Random(1);
+        long[] keys = new long[2000];
+        for(int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            db.put(keys[i], "value" + keys[i]);
+        }
+        db.put(keys[10], "second");
+        db.put(Long.MIN_VALUE, "min");
+        db.put(Long.MAX_VALUE, "max");
+        
+        for(int i = 0; i < keys.length; i++) {
+            List<String> values = db.get(keys[i]);
+            Assert.assertEquals(i == 10 ? 2 : 1, values.size());
+            Assert.assertEquals("value" + keys[i], values.get(0));
+        }
+        Assert.assertEquals("second", db.get(keys[10]).get(1));
+        Assert.assertEquals("min", db.get(Long.MIN_VALUE).get(0));
+        Assert.assertEquals("max", db.get(Long.MAX_VALUE).get(0));
+        Assert.assertTrue(db.contains(keys[5]));
+        Assert.assertFalse(db.contains(0));
+        Assert.assertTrue(db.get(0).isEmpty());
+        db.close();
+    }
+    
+    @Test
+	public void primitivesTest() throws Exception {
+        LongKeyTreeDb<byte[]> db = TreeDbBuilder.instance(Long.class, byte[].class)
+            .tempfile("test", ".db", true)
+            .bufferserializer(PrimitiveSerialization.bytes())
+            .bufferdeserializer(PrimitiveSerialization.bytes())
+            .longKeyTreeDb();
+        for(int i = 0; i < 100; i++) {
+            db.put(i, new byte[i * 50]);
+        }
+        for(int i = 0; i < 100; i++) {
+            Assert.assertEquals(i * 50, db.get(i).get(0).length);
+        }
+        byte[] reuse = new byte[500];
+        Assert.assertSame(reuse, db.first(10, reuse));
+        Assert.assertNotSame(reuse, db.first(11, reuse));
+        Assert.assertNull(db.first(1000, reuse));
+        db.close();
+        
+        AvlTreeDb<Integer, Double> avl = TreeDbBuilder.instance(Integer.class, Double.class)
+            .tempfile("test", ".db", true)
+            .keyserializer(PrimitiveSerialization.ints())
+            .keydeserializer(PrimitiveSerialization.ints())
+            .bufferserializer(PrimitiveSerialization.doubles())
+            .bufferdeserializer(PrimitiveSerialization.doubles())
+            .avlTreeDb();
+        for(int i = 0; i < 100; i++) {
+            avl.put(i, i / 3.0);
+        }
+        for(int i = 0; i < 100; i++) {
+            Assert.assertEquals(i / 3.0, avl.get(i).get(0), 0);
+        }
+        avl.close();
+    }
+    
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Anton Straka
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package sk.antons.tempdb.tree;
+
+
+import java.io.File;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import sk.antons.tempdb.TreeDbBuilder;
+import sk.antons.tempdb.base.DbFile;
+import sk.antons.tempdb.compression.LzCodec;
+import sk.antons.tempdb.serialization.Utf8Serialization;
+
+/**
+ *
+ * @author antons
+ */
+public class ValueCompressionTest {
+	private static Logger log = Logger.getLogger(ValueCompressionTest.class.getName());
+
+    private static String json(int i) {
+        return "{\"id\":" + i + ",\"type\":\"" + (i % 2 == 0 ? "ORDER_CREATED" : "ORDER_DELIVERED") 
+            + "\",\"customer\":{\"name\":\"customer" + (i % 10) + "\",\"country\":\"SK\"},\"amount\":" + (i * 3) + "}";
+    }
+    
+    private static long length(DbFile dbfile) throws Exception {
+        return dbfile.randomAccessFile().length();
+    }
+    
+    @Test
+	public void dictionaryTest() throws Exception {
+        TreeDbBuilder<String, String> builder = TreeDbBuilder.instance(String.class, String.class)
+            .keyserializer(Utf8Serialization.serializer())
+            .keydeserializer(Utf8Serialization.deserializer())
+            .serializer(Utf8Serialization.serializer())
+            .deserializer(Utf8Serialization.deserializer());
+        AvlTreeDb<String, String> plain = builder.tempfile("test", ".db", true).avlTreeDb();
+        AvlTreeDb<String, String> avl = builder.tempfile("test", ".db", true).dictionarySamples(20).avlTreeDb();
+        MapTreeDb<String, String> map = builder.tempfile("test", ".db", true).dictionarySamples(20).mapTreeDb();
+        for(int i = 0; i < 5000; i++) {
+            plain.put("key" + i, json(i));
+            avl.put("key" + i, json(i));
+            map.put("key" + i, json(i));
+        }
+        for(int i = 0; i < 5000; i++) {
+            Assert.assertEquals(json(i), avl.get("key" + i).get(0));
+            Assert.assertEquals(json(i), map.get("key" + i).get(0));
+        }
+        Assert.assertEquals(json(7), avl.first("key7", null));
+        Assert.assertEquals(json(4000).length() + 1, map.getBytes("key4000").get(0).remaining());
+        
+        long plainSize = length(plain.dbfile());
+        long avlSize = length(avl.dbfile());
+        long mapSize = length(map.dbfile());
+        log.info("plain: " + plainSize + " avl: " + avlSize + " map: " + mapSize);
+        Assert.assertTrue(avlSize < plainSize * 3 / 4);
+        plain.close();
+        map.close();
+        avl.close();
+        
+        AvlTreeDb<String, String> reopened = builder.dbfile(avl.dbfile()).dictionarySamples(20).avlTreeDb();
+        Assert.assertEquals(json(4321), reopened.get("key4321").get(0));
+        Assert.assertEquals(json(3), reopened.get("key3").get(0));
+        reopened.close();
+    }
+    
+    @Test
+	public void thresholdTest() throws Exception {
+        StringBuilder big = new StringBuilder();
+        for(int i = 0; i < 2000; i++) {
+            big.append(json(i));
+        }
+        TreeDbBuilder<String, String> builder = TreeDbBuilder.instance(String.class, String.class)
+            .keyserializer(Utf8Serialization.serializer())
+            .keydeserializer(Utf8Serialization.deserializer())
+            .serializer(Utf8Serialization.serializer())
+            .deserializer(Utf8Serialization.deserializer())
+            .compressionThreshold(1000);
+        AvlTreeDb<String, String> avl = builder.tempfile("test", ".db", true).avlTreeDb();
+        MapTreeDb<String, String> map = builder.tempfile("test", ".db", true).codec(LzCodec.instance()).mapTreeDb();
+        for(int i = 0; i < 100; i++) {
+            String value = (i % 10 == 0) ? big.toString() + i : json(i);
+            avl.put("key" + i, value);
+            map.put("key" + i, value);
+        }
+        for(int i = 0; i < 100; i++) {
+            String value = (i % 10 == 0) ? big.toString() + i : json(i);
+            Assert.assertEquals(value, avl.get("key" + i).get(0));
+            Assert.assertEquals(value, map.get("key" + i).get(0));
+        }
+        long avlSize = length(avl.dbfile());
+        long mapSize = length(map.dbfile());
+        log.info("raw: " + (big.length() * 10) + " avl: " + avlSize + " map: " + mapSize);
+        Assert.assertTrue(avlSize < big.length() * 10 / 2);
+        Assert.assertTrue(mapSize < big.length() * 10 / 2);
+        map.close();
+        avl.close();
+    }
+    
+}